@@ -0,0 +1,60 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Connection admitted by a {@link ConnectionLimit}.
+ * It returns its permit the first time it is closed or aborted.
+ * Otherwise, the calls go directly to the wrapped connection.
+ */
+class AdmittedConnection extends ConnectionWrap {
+    private static final Logger logger=Logger.getLogger(AdmittedConnection.class.getName());
+    private final ConnectionLimit limit;
+    private final AtomicBoolean closed=new AtomicBoolean();
+    
+    AdmittedConnection(Connection connection,ConnectionLimit limit){
+        super(logger,connection,PassThruStep::instance,Set.of());
+        this.limit=limit;
+    }
+    
+    /**
+     * Close the connection, and return the permit.
+     * @throws SQLException if the wrapped connection does.
+     *         The permit is returned anyway.
+     */
+    @Override
+    public void close()
+        throws SQLException
+    {
+        try{
+            super.close();
+        }
+        finally{
+            if (closed.compareAndSet(false,true)) limit.release();
+        }
+    }
+    
+    /**
+     * Abort the connection, and return the permit.
+     * @param executor Passed to the wrapped connection.
+     * @throws SQLException if the wrapped connection does.
+     *         The permit is returned anyway.
+     */
+    @Override
+    public void abort(Executor executor)
+        throws SQLException
+    {
+        try{
+            super.abort(executor);
+        }
+        finally{
+            if (closed.compareAndSet(false,true)) limit.release();
+        }
+    }
+}
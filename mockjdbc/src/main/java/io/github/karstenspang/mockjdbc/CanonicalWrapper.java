@@ -0,0 +1,113 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Wrapper} that returns the same wrap when asked to wrap the same
+ * object with the same step supplier again.
+ * Getters like {@code Statement.getConnection()} or {@code Connection.getMetaData()}
+ * typically return the same object on every call. Wrapping them through this
+ * wrapper gives the same wrap back, so the wraps compare equal with {@code ==},
+ * and no new wrap is created for each call.<p>
+ * Objects are matched by identity. Both the wrapped objects and the wraps are
+ * held weakly, so the wrapper does not keep anything alive. If a wrap is no
+ * longer used, a new one may be created for the same object.
+ * @param <W> The type of both the wrap and the wrapped.
+ */
+public final class CanonicalWrapper<W> implements Wrapper<W> {
+    private final Wrapper<W> wrapper;
+    private final Map<Object,Entry<W>> wraps=new HashMap<>();
+    private final ReferenceQueue<Object> cleared=new ReferenceQueue<>();
+    private final Probe probe=new Probe();
+
+    /**
+     * Create a canonicalizing wrapper.
+     * @param wrapper The wrapper that creates new wraps.
+     * @throws NullPointerException if {@code wrapper} is {@code null}.
+     */
+    public CanonicalWrapper(Wrapper<W> wrapper){
+        this.wrapper=Objects.requireNonNull(wrapper,"wrapper is null");
+    }
+
+    /**
+     * Wrap an object, reusing the wrap from an earlier call if there is one.
+     * @param wrapped Object to be wrapped.
+     * @param stepSupplier The supplier of steps for the wrap.
+     * @return the wrap created the last time {@code wrapped} was wrapped with
+     *         {@code stepSupplier}, if it is still in use, otherwise a new wrap.
+     */
+    @Override
+    public synchronized W wrap(W wrapped,Supplier<Step> stepSupplier){
+        expungeCleared();
+        probe.target=wrapped;
+        Entry<W> entry=wraps.get(probe);
+        probe.target=null;
+        if (entry!=null&&entry.stepSupplier==stepSupplier){
+            W wrap=entry.get();
+            if (wrap!=null) return wrap;
+        }
+        W wrap=wrapper.wrap(wrapped,stepSupplier);
+        wraps.put(new Key(wrapped,cleared),new Entry<>(wrap,stepSupplier));
+        return wrap;
+    }
+
+    /**
+     * Get the number of objects with a wrap remembered
+     * @return the number of objects with a wrap
+     */
+    synchronized int size(){
+        expungeCleared();
+        return wraps.size();
+    }
+
+    private void expungeCleared(){
+        Reference<?> ref;
+        while ((ref=cleared.poll())!=null){
+            wraps.remove(ref);
+        }
+    }
+
+    // Weak reference to a wrapped object, matching by identity.
+    private static final class Key extends WeakReference<Object> {
+        private final int hash;
+        Key(Object wrapped,ReferenceQueue<Object> queue){
+            super(wrapped,queue);
+            hash=System.identityHashCode(wrapped);
+        }
+        @Override
+        public int hashCode(){return hash;}
+        @Override
+        public boolean equals(Object other){
+            if (other==this) return true;
+            if (!(other instanceof Key)) return false;
+            Object referent=get();
+            return referent!=null&&referent==((Key)other).get();
+        }
+    }
+
+    // Lookup key, so that a lookup does not allocate.
+    // Only used while holding the lock of the wrapper.
+    private static final class Probe {
+        private Object target;
+        @Override
+        public int hashCode(){return System.identityHashCode(target);}
+        @Override
+        public boolean equals(Object other){
+            return other instanceof Key&&((Key)other).get()==target;
+        }
+    }
+
+    private static final class Entry<W> extends WeakReference<W> {
+        private final Supplier<Step> stepSupplier;
+        Entry(W wrap,Supplier<Step> stepSupplier){
+            super(wrap);
+            this.stepSupplier=stepSupplier;
+        }
+    }
+}
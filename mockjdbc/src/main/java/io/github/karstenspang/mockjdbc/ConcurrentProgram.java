@@ -0,0 +1,65 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Supplier} returning {@link Step}s
+ * in order from a list passed to the constructor, which can be shared by threads.
+ * Each step is returned exactly once, also when several threads call {@link #get}
+ * at the same time, as the worker threads of a connection pool do.
+ * If the list is exhausted, {@link PassThruStep}s are returned.<p>
+ * The steps are handed out by advancing an atomic cursor over a {@link StepSequence},
+ * so {@link #get} does not lock. Other lists of steps are copied to a sequence
+ * when the program is constructed.
+ * A {@link Program}, on the other hand, uses an {@link java.util.Iterator} of the
+ * list, and must only be used by one thread at a time.
+ */
+public class ConcurrentProgram implements Supplier<Step> {
+    private final StepSequence steps;
+    private final long length;
+    private final AtomicLong cursor=new AtomicLong();
+    
+    /**
+     * Construct the program from steps.
+     * @param steps the steps. If not a {@link StepSequence}, they must be finite.
+     * @throws NullPointerException if {@code steps} is or contains {@code null}.
+     */
+    public ConcurrentProgram(Iterable<Step> steps){
+        this.steps=StepSequence.of(steps);
+        length=this.steps.length();
+    }
+    
+    /**
+     * Get the next step
+     * @return the next step in the list supplied to the constructor.
+     *         If the list is exhausted, return a {@link PassThruStep}.
+     */
+    @Override
+    public Step get(){
+        // Checking first keeps the cursor from growing without bounds when exhausted
+        if (cursor.get()>=length) return PassThruStep.instance();
+        long index=cursor.getAndIncrement();
+        if (index<length) return steps.step(index);
+        return PassThruStep.instance();
+    }
+    
+    /**
+     * Get the number of steps not yet returned.
+     * @return the number of steps left in the list, or {@link StepSequence#INFINITE}
+     *         if the steps do not end.
+     */
+    public long remaining(){
+        if (length==StepSequence.INFINITE) return StepSequence.INFINITE;
+        return Math.max(0,length-cursor.get());
+    }
+    
+    /**
+     * The string represetation of the steps.
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return steps.toString();
+    }
+}
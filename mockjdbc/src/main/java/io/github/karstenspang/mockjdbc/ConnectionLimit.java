@@ -0,0 +1,152 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A limit on the number of open connections, like the maximum number of sessions of a database.
+ * Set it for a mock URL with {@link MockDriver#setConnectionLimit}. Connects above the
+ * limit either fail at once, or wait for a connection to be closed, up to a timeout,
+ * and then fail. For example, to allow 10 connections, and let connects wait up to 1 second:
+ *<pre>
+ *MockDriver.setConnectionLimit("jdbc:mock:h2:mem:x",new ConnectionLimit(10,Duration.ofSeconds(1)));
+ *</pre>
+ * The connections are counted from the time they are admitted until they are closed.
+ * If a connection is not closed, it is counted forever, like a leaked session.<p>
+ * Admission is a compare-and-set on a {@link Semaphore}, so connects are not serialized.
+ * The limit counts the admitted and rejected connects, and the peak number of open connections.
+ */
+public class ConnectionLimit {
+    /** SQLState of the default exception for rejected connects */
+    public static final String rejectedState="08004";
+    
+    private final int maxConnections;
+    private final long timeoutNanos;
+    private final Supplier<? extends SQLException> rejection;
+    private final Semaphore permits;
+    private final AtomicInteger open=new AtomicInteger();
+    private final AtomicInteger peak=new AtomicInteger();
+    private final LongAdder admitted=new LongAdder();
+    private final LongAdder rejected=new LongAdder();
+    
+    /**
+     * Create a limit rejecting connects with an {@link SQLException} with SQLState {@value #rejectedState}.
+     * @param maxConnections The maximum number of open connections.
+     * @param timeout How long a connect waits for a connection to be closed.
+     *        If zero, connects above the limit fail at once.
+     * @throws IllegalArgumentException if {@code maxConnections} or {@code timeout} is negative.
+     * @throws NullPointerException if {@code timeout} is {@code null}.
+     */
+    public ConnectionLimit(int maxConnections,Duration timeout){
+        this(maxConnections,timeout,()->new SQLException("Too many connections: "+maxConnections,rejectedState));
+    }
+    
+    /**
+     * Create a limit
+     * @param maxConnections The maximum number of open connections.
+     * @param timeout How long a connect waits for a connection to be closed.
+     *        If zero, connects above the limit fail at once.
+     * @param rejection Supplier of the exceptions thrown by rejected connects.
+     * @throws IllegalArgumentException if {@code maxConnections} or {@code timeout} is negative.
+     * @throws NullPointerException if {@code timeout} or {@code rejection} is {@code null}.
+     */
+    public ConnectionLimit(int maxConnections,Duration timeout,Supplier<? extends SQLException> rejection){
+        if (maxConnections<0) throw new IllegalArgumentException("maxConnections is negative: "+maxConnections);
+        Objects.requireNonNull(timeout,"timeout is null");
+        if (timeout.isNegative()) throw new IllegalArgumentException("timeout is negative: "+timeout);
+        this.maxConnections=maxConnections;
+        long nanos;
+        try{
+            nanos=timeout.toNanos();
+        }
+        catch(ArithmeticException e){
+            nanos=Long.MAX_VALUE;
+        }
+        timeoutNanos=nanos;
+        this.rejection=Objects.requireNonNull(rejection,"rejection is null");
+        permits=new Semaphore(maxConnections);
+    }
+    
+    /**
+     * Get the limit
+     * @return the maximum number of open connections.
+     */
+    public int maxConnections(){return maxConnections;}
+    
+    /**
+     * Get the number of open connections
+     * @return the number of connections admitted and not yet closed.
+     */
+    public int open(){return open.get();}
+    
+    /**
+     * Get the peak number of open connections
+     * @return the largest number of connections open at the same time.
+     */
+    public int peak(){return peak.get();}
+    
+    /**
+     * Get the number of admitted connects
+     * @return the number of connects admitted.
+     */
+    public long admitted(){return admitted.sum();}
+    
+    /**
+     * Get the number of rejected connects
+     * @return the number of connects rejected because of the limit.
+     */
+    public long rejected(){return rejected.sum();}
+    
+    /**
+     * The string represetation of the limit
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return "ConnectionLimit[maxConnections="+maxConnections+",open="+open()+",peak="+peak()+"]";
+    }
+    
+    // Get a permit for a connection, or throw the rejection
+    void acquire()
+        throws SQLException
+    {
+        boolean acquired;
+        try{
+            acquired=timeoutNanos==0?permits.tryAcquire():permits.tryAcquire(timeoutNanos,TimeUnit.NANOSECONDS);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection",LatencyStep.canceledState,e);
+        }
+        if (!acquired){
+            rejected.increment();
+            throw rejection.get();
+        }
+        admitted.increment();
+        int current=open.incrementAndGet();
+        int max=peak.get();
+        while (current>max&&!peak.compareAndSet(max,current)) max=peak.get();
+    }
+    
+    // Return the permit of a connection
+    void release(){
+        open.decrementAndGet();
+        permits.release();
+    }
+    
+    // Wrap an admitted connection to return the permit when it is closed
+    Connection admitted(Connection connection){
+        if (connection==null){
+            release();
+            return null;
+        }
+        return new AdmittedConnection(connection,this);
+    }
+}
@@ -0,0 +1,352 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of the real connections of a mock URL, like a small connection pool in the driver.
+ * URL's of the form {@code jdbc:mock:pool:restofurl} are pooled with a pool of
+ * {@value #defaultMaxSize} connections, waiting up to 30 seconds for a connection.
+ * Other sizes can be set for any mock URL with {@link MockDriver#setConnectionPool}, for example:
+ *<pre>
+ *ConnectionPool pool=new ConnectionPool(20,Duration.ofSeconds(5));
+ *MockDriver.setConnectionPool("jdbc:mock:h2:mem:x",pool);
+ *</pre>
+ * {@link MockDriver#connect} borrows an idle real connection, or opens a new one if there
+ * are less than {@code maxSize}, or else waits for a connection to be returned, up to
+ * the timeout. Only the real connects get a step from the program. The connections
+ * returned by {@link MockDriver#connect} are wraps whose {@code close} returns the real
+ * connection to the pool. After that, calls to the wrap throw an {@link SQLException}.<p>
+ * When a connection is returned, an open transaction is rolled back, and
+ * the settings changed by {@code setAutoCommit}, {@code setReadOnly},
+ * {@code setTransactionIsolation}, {@code setCatalog}, {@code setSchema},
+ * {@code setHoldability}, {@code setNetworkTimeout} and {@code setTypeMap} are
+ * restored to the values they had before. Statements left open are closed.
+ * Statements and metadata from the borrowed connection return it from
+ * {@code getConnection}, not the real connection.
+ * A connection that is closed, or fails to reset, is discarded.<p>
+ * A free connection is borrowed by a compare-and-set on a {@link Semaphore}, and
+ * the idle connections are kept in a {@link ConcurrentLinkedDeque}, so borrowing
+ * takes no locks unless it has to wait. The most recently returned connection is
+ * borrowed first. The pool counts the borrows, the borrows that had to wait,
+ * the time spent borrowing, and the real connects.
+ */
+public class ConnectionPool {
+    /** The size of the pools of URL's of the form {@code jdbc:mock:pool:restofurl} */
+    public static final int defaultMaxSize=10;
+    /** SQLState of the exception thrown when no connection is returned within the timeout */
+    public static final String timeoutState="08001";
+    
+    private final int maxSize;
+    private final long timeoutNanos;
+    // A permit for each connection that can be borrowed
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Entry> idle=new ConcurrentLinkedDeque<>();
+    private final LongAdder borrows=new LongAdder();
+    private final LongAdder waits=new LongAdder();
+    private final LongAdder timeouts=new LongAdder();
+    private final LongAdder connects=new LongAdder();
+    private final LongAdder discarded=new LongAdder();
+    private final LongAdder borrowNanos=new LongAdder();
+    private final AtomicLong maxBorrowNanos=new AtomicLong();
+    
+    /**
+     * Create a pool
+     * @param maxSize The maximum number of real connections.
+     * @param timeout How long a connect waits for a connection to be returned.
+     *        If zero, connects fail at once when all the connections are borrowed.
+     * @throws IllegalArgumentException if {@code maxSize} is not positive, or {@code timeout} is negative.
+     * @throws NullPointerException if {@code timeout} is {@code null}.
+     */
+    public ConnectionPool(int maxSize,Duration timeout){
+        if (maxSize<=0) throw new IllegalArgumentException("maxSize is not positive: "+maxSize);
+        Objects.requireNonNull(timeout,"timeout is null");
+        if (timeout.isNegative()) throw new IllegalArgumentException("timeout is negative: "+timeout);
+        this.maxSize=maxSize;
+        long nanos;
+        try{
+            nanos=timeout.toNanos();
+        }
+        catch(ArithmeticException e){
+            nanos=Long.MAX_VALUE;
+        }
+        timeoutNanos=nanos;
+        permits=new Semaphore(maxSize);
+    }
+    
+    /**
+     * Get the size
+     * @return the maximum number of real connections.
+     */
+    public int maxSize(){return maxSize;}
+    
+    /**
+     * Get the number of idle connections
+     * @return the number of real connections in the pool, not borrowed.
+     */
+    public int idle(){return idle.size();}
+    
+    /**
+     * Get the number of borrowed connections
+     * @return the number of connections borrowed and not yet closed.
+     */
+    public int active(){return maxSize-permits.availablePermits();}
+    
+    /**
+     * Get the number of borrows
+     * @return the number of connections borrowed.
+     */
+    public long borrows(){return borrows.sum();}
+    
+    /**
+     * Get the number of waits
+     * @return the number of connects that found all the connections borrowed.
+     */
+    public long waits(){return waits.sum();}
+    
+    /**
+     * Get the number of timeouts
+     * @return the number of connects that failed because no connection was returned within the timeout.
+     */
+    public long timeouts(){return timeouts.sum();}
+    
+    /**
+     * Get the number of real connects
+     * @return the number of real connections opened by the pool.
+     */
+    public long connects(){return connects.sum();}
+    
+    /**
+     * Get the number of discarded connections
+     * @return the number of real connections discarded because they were closed, or failed to reset.
+     */
+    public long discarded(){return discarded.sum();}
+    
+    /**
+     * Get the time spent borrowing
+     * @return the total time of all the connects, including waiting and real connects.
+     */
+    public Duration borrowTime(){return Duration.ofNanos(borrowNanos.sum());}
+    
+    /**
+     * Get the longest time spent borrowing
+     * @return the time of the slowest connect.
+     */
+    public Duration maxBorrowTime(){return Duration.ofNanos(maxBorrowNanos.get());}
+    
+    /**
+     * Close the idle connections.
+     * Borrowed connections are closed when they are returned.
+     * @return the number of connections closed.
+     */
+    public int closeIdle(){
+        int count=0;
+        Entry entry;
+        while ((entry=idle.pollFirst())!=null){
+            discard(entry);
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * The string represetation of the pool
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return "ConnectionPool[maxSize="+maxSize+",active="+active()+",idle="+idle()+"]";
+    }
+    
+    // Borrow a connection, opening a real one with opener if none is idle
+    Connection borrow(SQLSupplier<? extends Connection> opener)
+        throws SQLException
+    {
+        long start=System.nanoTime();
+        if (!permits.tryAcquire()){
+            waits.increment();
+            boolean acquired;
+            try{
+                acquired=timeoutNanos>0&&permits.tryAcquire(timeoutNanos,TimeUnit.NANOSECONDS);
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection",LatencyStep.canceledState,e);
+            }
+            if (!acquired){
+                timeouts.increment();
+                throw new SQLTransientConnectionException("No connection available in pool of "+maxSize,timeoutState);
+            }
+        }
+        Entry entry=idle.pollFirst();
+        if (entry==null){
+            Connection connection;
+            try{
+                connection=opener.get();
+            }
+            catch(SQLException|RuntimeException e){
+                permits.release();
+                throw e;
+            }
+            connects.increment();
+            entry=new Entry(connection);
+        }
+        long elapsed=System.nanoTime()-start;
+        borrows.increment();
+        borrowNanos.add(elapsed);
+        long max=maxBorrowNanos.get();
+        while (elapsed>max&&!maxBorrowNanos.compareAndSet(max,elapsed)) max=maxBorrowNanos.get();
+        return new PooledConnection(entry,this);
+    }
+    
+    // Take back a connection, resetting it or discarding it
+    void release(Entry entry){
+        try{
+            if (entry.reset()){
+                idle.offerFirst(entry);
+            }
+            else{
+                discard(entry);
+            }
+        }
+        finally{
+            permits.release();
+        }
+    }
+    
+    // Take back a connection that is not to be reused
+    void abandon(){
+        discarded.increment();
+        permits.release();
+    }
+    
+    private void discard(Entry entry){
+        discarded.increment();
+        try{
+            entry.connection.close();
+        }
+        catch(SQLException|RuntimeException e){
+            // It is being discarded anyway
+        }
+    }
+    
+    // A real connection, with the settings to restore when it is returned
+    static final class Entry {
+        final Connection connection;
+        // Settings changed since the connection was borrowed, and their values before
+        private int changed;
+        private boolean autoCommit;
+        private boolean readOnly;
+        private int isolation;
+        private String catalog;
+        private String schema;
+        private int holdability;
+        private int networkTimeout;
+        private Executor networkTimeoutExecutor;
+        private Map<String,Class<?>> typeMap;
+        
+        Entry(Connection connection){
+            this.connection=connection;
+        }
+        
+        void setAutoCommit(boolean value)
+            throws SQLException
+        {
+            if ((changed&1)==0) autoCommit=connection.getAutoCommit();
+            connection.setAutoCommit(value);
+            changed|=1;
+        }
+        
+        void setReadOnly(boolean value)
+            throws SQLException
+        {
+            if ((changed&2)==0) readOnly=connection.isReadOnly();
+            connection.setReadOnly(value);
+            changed|=2;
+        }
+        
+        void setTransactionIsolation(int value)
+            throws SQLException
+        {
+            if ((changed&4)==0) isolation=connection.getTransactionIsolation();
+            connection.setTransactionIsolation(value);
+            changed|=4;
+        }
+        
+        void setCatalog(String value)
+            throws SQLException
+        {
+            if ((changed&8)==0) catalog=connection.getCatalog();
+            connection.setCatalog(value);
+            changed|=8;
+        }
+        
+        void setSchema(String value)
+            throws SQLException
+        {
+            if ((changed&16)==0) schema=connection.getSchema();
+            connection.setSchema(value);
+            changed|=16;
+        }
+        
+        void setHoldability(int value)
+            throws SQLException
+        {
+            if ((changed&32)==0) holdability=connection.getHoldability();
+            connection.setHoldability(value);
+            changed|=32;
+        }
+        
+        void setNetworkTimeout(Executor executor,int value)
+            throws SQLException
+        {
+            if ((changed&64)==0) networkTimeout=connection.getNetworkTimeout();
+            connection.setNetworkTimeout(executor,value);
+            // Restored with the executor of the latest change
+            networkTimeoutExecutor=executor;
+            changed|=64;
+        }
+        
+        void setTypeMap(Map<String,Class<?>> value)
+            throws SQLException
+        {
+            if ((changed&128)==0) typeMap=connection.getTypeMap();
+            connection.setTypeMap(value);
+            changed|=128;
+        }
+        
+        // Roll back and restore the settings. Return false if the connection cannot be reused.
+        boolean reset(){
+            try{
+                if (connection.isClosed()) return false;
+                if (!connection.getAutoCommit()) connection.rollback();
+                if ((changed&1)!=0) connection.setAutoCommit(autoCommit);
+                if ((changed&2)!=0) connection.setReadOnly(readOnly);
+                if ((changed&4)!=0) connection.setTransactionIsolation(isolation);
+                if ((changed&8)!=0) connection.setCatalog(catalog);
+                if ((changed&16)!=0) connection.setSchema(schema);
+                if ((changed&32)!=0) connection.setHoldability(holdability);
+                if ((changed&64)!=0) connection.setNetworkTimeout(networkTimeoutExecutor,networkTimeout);
+                if ((changed&128)!=0) connection.setTypeMap(typeMap);
+                connection.clearWarnings();
+                changed=0;
+                networkTimeoutExecutor=null;
+                typeMap=null;
+                return true;
+            }
+            catch(SQLException|RuntimeException e){
+                return false;
+            }
+        }
+    }
+}
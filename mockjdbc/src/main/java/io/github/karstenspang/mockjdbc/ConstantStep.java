@@ -29,6 +29,66 @@ public class ConstantStep implements Step {
         return (T)value;
     }
     
+    /**
+     * Return the value supplied to the constructor.
+     * @param method Not used.
+     * @return The value supplied to the constructor.
+     * @throws ClassCastException if the value supplied to the 
+     *         constructor is not {@link Integer}.
+     * @throws NullPointerException if the value supplied to the 
+     *         constructor is {@code null}.
+     */
+    @Override
+    public int applyAsInt(SQLIntSupplier method)
+    {
+        return (Integer)value;
+    }
+    
+    /**
+     * Return the value supplied to the constructor.
+     * @param method Not used.
+     * @return The value supplied to the constructor.
+     * @throws ClassCastException if the value supplied to the 
+     *         constructor is not {@link Long}.
+     * @throws NullPointerException if the value supplied to the 
+     *         constructor is {@code null}.
+     */
+    @Override
+    public long applyAsLong(SQLLongSupplier method)
+    {
+        return (Long)value;
+    }
+    
+    /**
+     * Return the value supplied to the constructor.
+     * @param method Not used.
+     * @return The value supplied to the constructor.
+     * @throws ClassCastException if the value supplied to the 
+     *         constructor is not {@link Double}.
+     * @throws NullPointerException if the value supplied to the 
+     *         constructor is {@code null}.
+     */
+    @Override
+    public double applyAsDouble(SQLDoubleSupplier method)
+    {
+        return (Double)value;
+    }
+    
+    /**
+     * Return the value supplied to the constructor.
+     * @param method Not used.
+     * @return The value supplied to the constructor.
+     * @throws ClassCastException if the value supplied to the 
+     *         constructor is not {@link Boolean}.
+     * @throws NullPointerException if the value supplied to the 
+     *         constructor is {@code null}.
+     */
+    @Override
+    public boolean applyAsBoolean(SQLBooleanSupplier method)
+    {
+        return (Boolean)value;
+    }
+    
     /**
      * Does nothing.
      * @param method not used
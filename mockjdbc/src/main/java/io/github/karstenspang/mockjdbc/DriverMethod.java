@@ -0,0 +1,24 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.Driver;
+import java.util.Properties;
+
+/**
+ * Identifiers of the methods of {@link Driver} intercepted by {@link MockDriver}.
+ */
+public enum DriverMethod implements WrapMethod {
+    /** {@link Driver#connect(String,Properties)} */
+    connect("connect",String.class,Properties.class);
+    private final String methodName;
+    private final Class<?>[] parameterTypes;
+    private DriverMethod(String methodName,Class<?>... parameterTypes){
+        this.methodName=methodName;
+        this.parameterTypes=parameterTypes;
+    }
+    @Override
+    public Class<?> declaringInterface(){return Driver.class;}
+    @Override
+    public String methodName(){return methodName;}
+    @Override
+    public Class<?>[] parameterTypes(){return parameterTypes.clone();}
+}
@@ -10,6 +10,10 @@ import java.util.Objects;
 public class ExceptionStep implements Step {
     private SQLException exception;
     private RuntimeException runtimeException;
+    // The exceptions of stackless steps, created for each throw
+    private final String reason;
+    private final String sqlState;
+    private final int vendorCode;
     
     /**
      * Construct the step
@@ -19,6 +23,9 @@ public class ExceptionStep implements Step {
     {
         this.exception=Objects.requireNonNull(exception,"exception is null");
         this.runtimeException=null;
+        reason=null;
+        sqlState=null;
+        vendorCode=0;
     }
     
     /**
@@ -29,6 +36,44 @@ public class ExceptionStep implements Step {
     {
         this.exception=null;
         this.runtimeException=Objects.requireNonNull(exception,"exception is null");
+        reason=null;
+        sqlState=null;
+        vendorCode=0;
+    }
+    
+    private ExceptionStep(String reason,String sqlState,int vendorCode)
+    {
+        this.exception=null;
+        this.runtimeException=null;
+        this.reason=reason;
+        this.sqlState=sqlState;
+        this.vendorCode=vendorCode;
+    }
+    
+    /**
+     * Get a step throwing exceptions without a stack trace.
+     * A new exception is thrown every time the step is applied, so callers adding
+     * suppressed or chained exceptions to it do not affect other calls. The stack trace
+     * is not filled in, so creating and logging the exception is cheap, which matters
+     * when faults are injected at high rates.
+     * @param reason The description of the exceptions.
+     * @param sqlState The SQLState of the exceptions.
+     * @return A step throwing {@link SQLException}s with an empty stack trace.
+     */
+    public static ExceptionStep stackless(String reason,String sqlState){
+        return new ExceptionStep(reason,sqlState,0);
+    }
+    
+    /**
+     * Get a step throwing exceptions without a stack trace, with a vendor code.
+     * See {@link #stackless(String,String)}.
+     * @param reason The description of the exceptions.
+     * @param sqlState The SQLState of the exceptions.
+     * @param vendorCode The vendor code of the exceptions.
+     * @return A step throwing {@link SQLException}s with an empty stack trace.
+     */
+    public static ExceptionStep stackless(String reason,String sqlState,int vendorCode){
+        return new ExceptionStep(reason,sqlState,vendorCode);
     }
     
     /**
@@ -41,8 +86,64 @@ public class ExceptionStep implements Step {
     public <T> T apply(SQLSupplier<? extends T> method)
         throws SQLException
     {
-        if (exception!=null) throw exception;
-        throw runtimeException;
+        if (runtimeException!=null) throw runtimeException;
+        throw exception();
+    }
+    
+    /**
+     * Throw the exception supplied to the constructor.
+     * @param method Not called
+     * @return None
+     * @throws SQLException as requested.
+     */
+    @Override
+    public int applyAsInt(SQLIntSupplier method)
+        throws SQLException
+    {
+        if (runtimeException!=null) throw runtimeException;
+        throw exception();
+    }
+    
+    /**
+     * Throw the exception supplied to the constructor.
+     * @param method Not called
+     * @return None
+     * @throws SQLException as requested.
+     */
+    @Override
+    public long applyAsLong(SQLLongSupplier method)
+        throws SQLException
+    {
+        if (runtimeException!=null) throw runtimeException;
+        throw exception();
+    }
+    
+    /**
+     * Throw the exception supplied to the constructor.
+     * @param method Not called
+     * @return None
+     * @throws SQLException as requested.
+     */
+    @Override
+    public double applyAsDouble(SQLDoubleSupplier method)
+        throws SQLException
+    {
+        if (runtimeException!=null) throw runtimeException;
+        throw exception();
+    }
+    
+    /**
+     * Throw the exception supplied to the constructor.
+     * @param method Not called
+     * @return None
+     * @throws SQLException as requested.
+     */
+    @Override
+    public boolean applyAsBoolean(SQLBooleanSupplier method)
+        throws SQLException
+    {
+        if (runtimeException!=null) throw runtimeException;
+        throw exception();
     }
     
     /**
@@ -53,8 +154,8 @@ public class ExceptionStep implements Step {
     public void apply(SQLRunnable method)
         throws SQLException
     {
-        if (exception!=null) throw exception;
-        throw runtimeException;
+        if (runtimeException!=null) throw runtimeException;
+        throw exception();
     }
     
     /**
@@ -62,6 +163,32 @@ public class ExceptionStep implements Step {
      * @return the string represetation
      */
     public String toString(){
-        return "ExceptionStep: "+(exception!=null?String.valueOf(exception):String.valueOf(runtimeException));
+        if (runtimeException!=null) return "ExceptionStep: "+String.valueOf(runtimeException);
+        return "ExceptionStep: "+String.valueOf(exception());
+    }
+    
+    private SQLException exception(){
+        return exception!=null?exception:new StacklessException(reason,sqlState,vendorCode);
+    }
+    
+    // Exception thrown by stackless steps. Not filling in the stack trace makes it cheap to create.
+    private static final class StacklessException extends SQLException {
+        private static final long serialVersionUID=1L;
+        
+        StacklessException(String reason,String sqlState,int vendorCode){
+            super(reason,sqlState,vendorCode);
+        }
+        
+        @Override
+        public synchronized Throwable fillInStackTrace(){
+            return this;
+        }
+        
+        // Shown as a plain SQLException
+        @Override
+        public String toString(){
+            String message=getLocalizedMessage();
+            return SQLException.class.getName()+(message!=null?": "+message:"");
+        }
     }
 }
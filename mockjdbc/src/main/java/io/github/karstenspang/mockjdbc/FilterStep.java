@@ -42,6 +42,78 @@ public class FilterStep<F> implements Step {
         return (T)filter.apply((F)method.get());
     }
     
+    /**
+     * Call the method, filter the result, and return the filtered value.
+     * The result is boxed for the filter, so <code>&lt;F&gt;</code> must
+     * be {@link Integer} or a supertype of it.
+     * @param method Called to get the value to filter.
+     * @return filtered value.
+     * @throws SQLException if either {@code supplier} or the filter does.
+     * @throws ClassCastException if the filter does not return an {@link Integer}.
+     * @throws NullPointerException if the filter returns {@code null}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int applyAsInt(SQLIntSupplier method)
+        throws SQLException
+    {
+        return (Integer)filter.apply((F)Integer.valueOf(method.getAsInt()));
+    }
+    
+    /**
+     * Call the method, filter the result, and return the filtered value.
+     * The result is boxed for the filter, so <code>&lt;F&gt;</code> must
+     * be {@link Long} or a supertype of it.
+     * @param method Called to get the value to filter.
+     * @return filtered value.
+     * @throws SQLException if either {@code supplier} or the filter does.
+     * @throws ClassCastException if the filter does not return a {@link Long}.
+     * @throws NullPointerException if the filter returns {@code null}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public long applyAsLong(SQLLongSupplier method)
+        throws SQLException
+    {
+        return (Long)filter.apply((F)Long.valueOf(method.getAsLong()));
+    }
+    
+    /**
+     * Call the method, filter the result, and return the filtered value.
+     * The result is boxed for the filter, so <code>&lt;F&gt;</code> must
+     * be {@link Double} or a supertype of it.
+     * @param method Called to get the value to filter.
+     * @return filtered value.
+     * @throws SQLException if either {@code supplier} or the filter does.
+     * @throws ClassCastException if the filter does not return a {@link Double}.
+     * @throws NullPointerException if the filter returns {@code null}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public double applyAsDouble(SQLDoubleSupplier method)
+        throws SQLException
+    {
+        return (Double)filter.apply((F)Double.valueOf(method.getAsDouble()));
+    }
+    
+    /**
+     * Call the method, filter the result, and return the filtered value.
+     * The result is boxed for the filter, so <code>&lt;F&gt;</code> must
+     * be {@link Boolean} or a supertype of it.
+     * @param method Called to get the value to filter.
+     * @return filtered value.
+     * @throws SQLException if either {@code supplier} or the filter does.
+     * @throws ClassCastException if the filter does not return a {@link Boolean}.
+     * @throws NullPointerException if the filter returns {@code null}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean applyAsBoolean(SQLBooleanSupplier method)
+        throws SQLException
+    {
+        return (Boolean)filter.apply((F)Boolean.valueOf(method.getAsBoolean()));
+    }
+    
     /**
      * Always throws {@link UnsupportedOperationException}, as there is no way to filter {@code void}.
      * @param method not used
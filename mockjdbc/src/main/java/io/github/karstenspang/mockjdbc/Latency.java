@@ -0,0 +1,169 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A distribution of delays, for {@link LatencyStep}.
+ * The static methods create the common distributions. The random numbers
+ * come from {@link ThreadLocalRandom}, so sampling is cheap and thread safe.
+ */
+@FunctionalInterface
+public interface Latency {
+    /**
+     * Draw a delay from the distribution.
+     * @return the delay in nanoseconds. Values less than or equal to 0 mean no delay.
+     */
+    long sampleNanos();
+    
+    /**
+     * No delay
+     * @return A distribution that is always 0.
+     */
+    static Latency none(){
+        return fixed(Duration.ZERO);
+    }
+    
+    /**
+     * A fixed delay
+     * @param delay The delay.
+     * @return A distribution that is always {@code delay}.
+     * @throws IllegalArgumentException if {@code delay} is negative.
+     */
+    static Latency fixed(Duration delay){
+        long nanos=nanos(delay,"delay");
+        return new Latency(){
+            @Override
+            public long sampleNanos(){return nanos;}
+            @Override
+            public String toString(){return "fixed("+delay+")";}
+        };
+    }
+    
+    /**
+     * A uniformly distributed delay
+     * @param min The smallest delay.
+     * @param max The largest delay.
+     * @return A distribution that is uniform between {@code min} and {@code max}.
+     * @throws IllegalArgumentException if {@code min} is negative or greater than {@code max}.
+     */
+    static Latency uniform(Duration min,Duration max){
+        long minNanos=nanos(min,"min");
+        long maxNanos=nanos(max,"max");
+        if (minNanos>maxNanos) throw new IllegalArgumentException("min is greater than max: "+min+" > "+max);
+        return new Latency(){
+            @Override
+            public long sampleNanos(){
+                if (minNanos==maxNanos) return minNanos;
+                // The bound is exclusive, so shift the range down to include maxNanos without overflow
+                if (maxNanos==Long.MAX_VALUE) return ThreadLocalRandom.current().nextLong(minNanos-1,maxNanos)+1;
+                return ThreadLocalRandom.current().nextLong(minNanos,maxNanos+1);
+            }
+            @Override
+            public String toString(){return "uniform("+min+","+max+")";}
+        };
+    }
+    
+    /**
+     * An exponentially distributed delay
+     * @param mean The mean delay.
+     * @return An exponential distribution with mean {@code mean}.
+     * @throws IllegalArgumentException if {@code mean} is negative.
+     */
+    static Latency exponential(Duration mean){
+        long meanNanos=nanos(mean,"mean");
+        return new Latency(){
+            @Override
+            public long sampleNanos(){
+                // 1-nextDouble() is in (0,1], so the logarithm is finite
+                return (long)(-meanNanos*Math.log(1.0-ThreadLocalRandom.current().nextDouble()));
+            }
+            @Override
+            public String toString(){return "exponential("+mean+")";}
+        };
+    }
+    
+    /**
+     * A log-normally distributed delay, typical of service times.
+     * @param median The median delay.
+     * @param sigma The standard deviation of the logarithm of the delay.
+     *        Larger values give a longer tail.
+     * @return A log-normal distribution with median {@code median}.
+     * @throws IllegalArgumentException if {@code median} or {@code sigma} is negative.
+     */
+    static Latency logNormal(Duration median,double sigma){
+        long medianNanos=nanos(median,"median");
+        if (!(sigma>=0.0)) throw new IllegalArgumentException("sigma is negative: "+sigma);
+        return new Latency(){
+            @Override
+            public long sampleNanos(){
+                double sample=medianNanos*Math.exp(sigma*ThreadLocalRandom.current().nextGaussian());
+                return sample>=Long.MAX_VALUE?Long.MAX_VALUE:(long)sample;
+            }
+            @Override
+            public String toString(){return "logNormal("+median+","+sigma+")";}
+        };
+    }
+    
+    /**
+     * A delay drawn from an empirical histogram, such as one measured in production.
+     * Bucket {@code i} covers the delays from {@code bounds[i]} to {@code bounds[i+1]},
+     * and is chosen with a probability proportional to {@code weights[i]}.
+     * Within the bucket, the delay is uniformly distributed.
+     * @param bounds The bounds of the buckets, in increasing order.
+     * @param weights The relative frequencies of the buckets. There must be one
+     *        less weight than bounds.
+     * @return The distribution of the histogram.
+     * @throws IllegalArgumentException if the bounds are negative or not increasing,
+     *         the number of weights does not match, or a weight is negative,
+     *         or all weights are 0.
+     */
+    static Latency histogram(Duration[] bounds,double[] weights){
+        if (bounds.length!=weights.length+1) throw new IllegalArgumentException("There must be one more bound than weights");
+        if (weights.length==0) throw new IllegalArgumentException("No buckets");
+        long[] boundNanos=new long[bounds.length];
+        for (int i=0;i<bounds.length;i++){
+            boundNanos[i]=nanos(bounds[i],"bound");
+            if (i>0&&boundNanos[i]<boundNanos[i-1]) throw new IllegalArgumentException("Bounds are not increasing: "+Arrays.toString(bounds));
+        }
+        double[] cumulative=new double[weights.length];
+        double total=0.0;
+        for (int i=0;i<weights.length;i++){
+            if (!(weights[i]>=0.0)) throw new IllegalArgumentException("Weight is negative: "+weights[i]);
+            total+=weights[i];
+            cumulative[i]=total;
+        }
+        if (!(total>0.0)) throw new IllegalArgumentException("All weights are 0");
+        double sum=total;
+        String description="histogram("+Arrays.toString(bounds)+","+Arrays.toString(weights)+")";
+        return new Latency(){
+            @Override
+            public long sampleNanos(){
+                ThreadLocalRandom random=ThreadLocalRandom.current();
+                double r=random.nextDouble()*sum;
+                int i=Arrays.binarySearch(cumulative,r);
+                // Not found gives the insertion point, found means r is at the upper end of bucket i
+                i=i<0?-i-1:i+1;
+                if (i>=cumulative.length) i=cumulative.length-1;
+                long low=boundNanos[i];
+                long high=boundNanos[i+1];
+                return low==high?low:random.nextLong(low,high);
+            }
+            @Override
+            public String toString(){return description;}
+        };
+    }
+    
+    private static long nanos(Duration duration,String name){
+        Objects.requireNonNull(duration,name+" is null");
+        if (duration.isNegative()) throw new IllegalArgumentException(name+" is negative: "+duration);
+        try{
+            return duration.toNanos();
+        }
+        catch(ArithmeticException e){
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link Step} that makes the call slow.
+ * A delay drawn from one {@link Latency} is waited before the call,
+ * and a delay drawn from another after the call. For example, to make
+ * queries take 50 ms on average, with a long tail:
+ *<pre>
+ *new LatencyStep(Latency.logNormal(Duration.ofMillis(40),0.7))
+ *</pre>
+ * The waiting thread is parked with {@link LockSupport#parkNanos(long)},
+ * and no monitor is held, so virtual threads are not pinned.<p>
+ * If the thread is interrupted while waiting, the interrupt status is kept, and an
+ * {@link SQLException} with SQLState {@code HY008} (operation canceled) is thrown.
+ * The same happens if {@link #cancel()} is called while waiting. To have
+ * {@link java.sql.Statement#cancel()} cancel the waits, give the cancel
+ * calls the step from {@link #canceller()}, for example:
+ *<pre>
+ *LatencyStep slow=new LatencyStep(Latency.fixed(Duration.ofSeconds(30)));
+ *new MethodProgram(
+ *    Map.of(StatementMethod.cancel,StepSequence.forever(slow.canceller())),
+ *    StepSequence.forever(slow));
+ *</pre>
+ * A cancel interrupts all the calls waiting in this step, not only the ones of the
+ * statement being canceled.
+ */
+public class LatencyStep implements Step {
+    /** SQLState of the exception thrown when a wait is interrupted or canceled */
+    public static final String canceledState="HY008";
+    private final Latency before;
+    private final Latency after;
+    private final Set<Thread> waiting=ConcurrentHashMap.newKeySet();
+    private final AtomicLong cancellations=new AtomicLong();
+    private final Step canceller;
+    
+    /**
+     * Construct the step, waiting before the call
+     * @param before The distribution of the delay before the call.
+     * @throws NullPointerException if {@code before} is {@code null}.
+     */
+    public LatencyStep(Latency before){
+        this(before,Latency.none());
+    }
+    
+    /**
+     * Construct the step
+     * @param before The distribution of the delay before the call.
+     * @param after The distribution of the delay after the call.
+     * @throws NullPointerException if {@code before} or {@code after} is {@code null}.
+     */
+    public LatencyStep(Latency before,Latency after){
+        this.before=Objects.requireNonNull(before,"before is null");
+        this.after=Objects.requireNonNull(after,"after is null");
+        canceller=new CancelStep();
+    }
+    
+    /**
+     * Wait, call the method, and wait again.
+     * @param <T> The type of data returned by the step.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if a wait is interrupted or canceled.
+     */
+    @Override
+    public <T> T apply(SQLSupplier<? extends T> method)
+        throws SQLException
+    {
+        delay(before);
+        T result=method.get();
+        delay(after);
+        return result;
+    }
+    
+    /**
+     * Wait, call the method, and wait again.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if a wait is interrupted or canceled.
+     */
+    @Override
+    public int applyAsInt(SQLIntSupplier method)
+        throws SQLException
+    {
+        delay(before);
+        int result=method.getAsInt();
+        delay(after);
+        return result;
+    }
+    
+    /**
+     * Wait, call the method, and wait again.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if a wait is interrupted or canceled.
+     */
+    @Override
+    public long applyAsLong(SQLLongSupplier method)
+        throws SQLException
+    {
+        delay(before);
+        long result=method.getAsLong();
+        delay(after);
+        return result;
+    }
+    
+    /**
+     * Wait, call the method, and wait again.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if a wait is interrupted or canceled.
+     */
+    @Override
+    public double applyAsDouble(SQLDoubleSupplier method)
+        throws SQLException
+    {
+        delay(before);
+        double result=method.getAsDouble();
+        delay(after);
+        return result;
+    }
+    
+    /**
+     * Wait, call the method, and wait again.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if a wait is interrupted or canceled.
+     */
+    @Override
+    public boolean applyAsBoolean(SQLBooleanSupplier method)
+        throws SQLException
+    {
+        delay(before);
+        boolean result=method.getAsBoolean();
+        delay(after);
+        return result;
+    }
+    
+    /**
+     * Wait, call the method, and wait again.
+     * @param method Called to do the work
+     * @throws SQLException if {@code method} does, or if a wait is interrupted or canceled.
+     */
+    @Override
+    public void apply(SQLRunnable method)
+        throws SQLException
+    {
+        delay(before);
+        method.run();
+        delay(after);
+    }
+    
+    /**
+     * Cancel the waits in progress.
+     * The threads waiting in this step stop waiting, and throw an
+     * {@link SQLException} with SQLState {@value #canceledState}.
+     * Calls starting to wait after this are not affected.
+     */
+    public void cancel(){
+        cancellations.incrementAndGet();
+        for (Thread thread:waiting){
+            LockSupport.unpark(thread);
+        }
+    }
+    
+    /**
+     * Get a step that cancels the waits of this step.
+     * @return A step that calls {@link #cancel()}, and then the method.
+     */
+    public Step canceller(){return canceller;}
+    
+    /**
+     * The string represetation of the step
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return "LatencyStep["+before+","+after+"]";
+    }
+    
+    private void delay(Latency latency)
+        throws SQLException
+    {
+        long nanos=latency.sampleNanos();
+        if (nanos<=0) return;
+        long cancellation=cancellations.get();
+        Thread thread=Thread.currentThread();
+        long start=System.nanoTime();
+        waiting.add(thread);
+        try{
+            while (true){
+                if (thread.isInterrupted()) throw new SQLException("Interrupted while delaying the call",canceledState);
+                if (cancellations.get()!=cancellation) throw new SQLException("Canceled while delaying the call",canceledState);
+                // Not start+nanos as a deadline, which overflows for very long delays
+                long remaining=nanos-(System.nanoTime()-start);
+                if (remaining<=0) return;
+                LockSupport.parkNanos(this,remaining);
+            }
+        }
+        finally{
+            waiting.remove(thread);
+        }
+    }
+    
+    private class CancelStep extends PassThruStep {
+        @Override
+        public <T> T apply(SQLSupplier<? extends T> method)
+            throws SQLException
+        {
+            cancel();
+            return method.get();
+        }
+        @Override
+        public void apply(SQLRunnable method)
+            throws SQLException
+        {
+            cancel();
+            method.run();
+        }
+        @Override
+        public int applyAsInt(SQLIntSupplier method)
+            throws SQLException
+        {
+            cancel();
+            return method.getAsInt();
+        }
+        @Override
+        public long applyAsLong(SQLLongSupplier method)
+            throws SQLException
+        {
+            cancel();
+            return method.getAsLong();
+        }
+        @Override
+        public double applyAsDouble(SQLDoubleSupplier method)
+            throws SQLException
+        {
+            cancel();
+            return method.getAsDouble();
+        }
+        @Override
+        public boolean applyAsBoolean(SQLBooleanSupplier method)
+            throws SQLException
+        {
+            cancel();
+            return method.getAsBoolean();
+        }
+        @Override
+        public String toString(){return "CancelStep";}
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lazy connection mode of a mock URL, counting the physical connects it avoids.
+ * Set it for a mock URL with {@link MockDriver#setLazyConnect}. Then {@link MockDriver#connect}
+ * returns a connection at once, and the real connect, with the step of the program,
+ * is done by the first call that needs it. For example:
+ *<pre>
+ *LazyConnect lazy=new LazyConnect();
+ *MockDriver.setLazyConnect("jdbc:mock:h2:mem:x",lazy);
+ *</pre>
+ * Until the real connect, the connection records the calls of {@code setAutoCommit},
+ * {@code setReadOnly}, {@code setTransactionIsolation}, {@code setHoldability},
+ * {@code setCatalog} and {@code setSchema}, and answers the corresponding getters
+ * with the recorded values. The settings are replayed on the real connection when it
+ * is opened, with auto-commit last. {@code close}, {@code abort}, {@code isClosed}, {@code isValid},
+ * {@code getWarnings} and {@code clearWarnings} are answered without connecting,
+ * and so are {@code commit} and {@code rollback()}, as there is nothing to commit or roll back.
+ * All other calls open the real connection, and once it is open, every call goes
+ * directly to it.<p>
+ * The mode counts the connections returned, the real connects, and the connections
+ * closed without a real connect, that is, the connects that a lazy connection pool
+ * or driver would avoid. A connection closed while its real connect is in progress
+ * counts as avoided, and the real connection is closed when the connect returns.
+ */
+public class LazyConnect {
+    private final LongAdder connections=new LongAdder();
+    private final LongAdder physicalConnects=new LongAdder();
+    private final LongAdder avoided=new LongAdder();
+    
+    /**
+     * Create the mode, with the counters at zero.
+     */
+    public LazyConnect(){}
+    
+    /**
+     * Get the number of connections
+     * @return the number of lazy connections returned by {@link MockDriver#connect}.
+     */
+    public long connections(){return connections.sum();}
+    
+    /**
+     * Get the number of physical connects
+     * @return the number of lazy connections that have opened the real connection.
+     */
+    public long physicalConnects(){return physicalConnects.sum();}
+    
+    /**
+     * Get the number of avoided connects
+     * @return the number of lazy connections closed without opening the real connection.
+     */
+    public long avoided(){return avoided.sum();}
+    
+    /**
+     * The string represetation of the mode
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return "LazyConnect[connections="+connections()+",physicalConnects="+physicalConnects()+",avoided="+avoided()+"]";
+    }
+    
+    // Create a connection opening the real one with opener when needed
+    Connection connection(SQLSupplier<? extends Connection> opener){
+        connections.increment();
+        return new LazyConnection(opener,this);
+    }
+    
+    // Count a real connect
+    void countConnect(){
+        physicalConnects.increment();
+    }
+    
+    // Count a connection closed without a real connect
+    void countAvoided(){
+        avoided.increment();
+    }
+}
@@ -0,0 +1,682 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.ShardingKey;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Connection opening the real connection when first needed, see {@link LazyConnect}.
+ * Until then, the settings are recorded in the wrap. Once the real connection is open,
+ * every method calls it directly.
+ */
+class LazyConnection extends ConnectionWrap {
+    private static final Logger logger=Logger.getLogger(LazyConnection.class.getName());
+    // Stands in for the real connection in the wrap. All the methods are overridden.
+    private static final Connection unopened=NoopConnection.instance();
+    // The recorded settings, in the order they are replayed.
+    // Auto-commit is last, so no transaction is open while the others are set.
+    private static final int readOnlySetting=0;
+    private static final int isolationSetting=1;
+    private static final int holdabilitySetting=2;
+    private static final int catalogSetting=3;
+    private static final int schemaSetting=4;
+    private static final int autoCommitSetting=5;
+    private final SQLSupplier<? extends Connection> opener;
+    private final LazyConnect mode;
+    // Guarded by this until the real connection is open
+    private final Object[] values=new Object[6];
+    private final boolean[] recorded=new boolean[6];
+    private volatile Connection physical;
+    private volatile boolean closed;
+    
+    LazyConnection(SQLSupplier<? extends Connection> opener,LazyConnect mode){
+        super(logger,unopened,PassThruStep::instance,Set.of());
+        this.opener=opener;
+        this.mode=mode;
+    }
+    
+    /**
+     * Tell whether the real connection has been opened
+     * @return {@code true} if a call has needed the real connection.
+     */
+    boolean isConnected(){
+        return physical!=null;
+    }
+    
+    // Get the real connection, opening it if needed
+    private Connection connection()
+        throws SQLException
+    {
+        Connection connection=physical;
+        return connection!=null?connection:open();
+    }
+    
+    // Connect without holding the lock, so a slow connect does not block close.
+    // If another thread has opened the connection, or it has been closed, meanwhile,
+    // the new real connection is closed again.
+    private Connection open()
+        throws SQLException
+    {
+        checkOpen();
+        Connection connection=opener.get();
+        Connection winner;
+        try{
+            winner=publish(connection);
+        }
+        catch(SQLException|RuntimeException e){
+            connection.close();
+            throw e;
+        }
+        if (winner==connection) return connection;
+        connection.close();
+        if (winner==null) throw new SQLException("Connection is closed","08003");
+        return winner;
+    }
+    
+    // Replay the settings on connection, and make it the real connection, unless there already is one,
+    // or the connection is closed. The settings are guarded by this, so none recorded meanwhile is lost.
+    // Return the real connection, or null if the connection is closed.
+    private synchronized Connection publish(Connection connection)
+        throws SQLException
+    {
+        if (physical!=null) return physical;
+        if (closed) return null;
+        for (int setting=0;setting<values.length;setting++){
+            if (recorded[setting]) replay(connection,setting,values[setting]);
+        }
+        physical=connection;
+        mode.countConnect();
+        return connection;
+    }
+    
+    private static void replay(Connection connection,int setting,Object value)
+        throws SQLException
+    {
+        switch (setting){
+        case readOnlySetting: connection.setReadOnly((Boolean)value); break;
+        case isolationSetting: connection.setTransactionIsolation((Integer)value); break;
+        case holdabilitySetting: connection.setHoldability((Integer)value); break;
+        case catalogSetting: connection.setCatalog((String)value); break;
+        case schemaSetting: connection.setSchema((String)value); break;
+        default: connection.setAutoCommit((Boolean)value); break;
+        }
+    }
+    
+    // Record a setting, unless the real connection has been opened. Return the real connection, or null.
+    private synchronized Connection record(int setting,Object value)
+        throws SQLException
+    {
+        if (physical!=null) return physical;
+        checkOpen();
+        values[setting]=value;
+        recorded[setting]=true;
+        return null;
+    }
+    
+    // Get the real connection, or null if the setting has been recorded, and it is not open
+    private Connection connectionUnlessRecorded(int setting)
+        throws SQLException
+    {
+        synchronized (this){
+            if (physical!=null) return physical;
+            checkOpen();
+            if (recorded[setting]) return null;
+        }
+        return open();
+    }
+    
+    private synchronized Object recorded(int setting){
+        return values[setting];
+    }
+    
+    // Close without the real connection, unless it has been opened. Return the real connection, or null.
+    private synchronized Connection closeUnopened(){
+        if (physical!=null) return physical;
+        if (!closed){
+            closed=true;
+            mode.countAvoided();
+        }
+        return null;
+    }
+    
+    private void checkOpen()
+        throws SQLException
+    {
+        if (closed) throw new SQLException("Connection is closed","08003");
+    }
+    
+    @Override
+    public void setAutoCommit(boolean autoCommit)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=record(autoCommitSetting,autoCommit))==null) return;
+        connection.setAutoCommit(autoCommit);
+    }
+    
+    @Override
+    public boolean getAutoCommit()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=connectionUnlessRecorded(autoCommitSetting))==null) return (Boolean)recorded(autoCommitSetting);
+        return connection.getAutoCommit();
+    }
+    
+    @Override
+    public void setReadOnly(boolean readOnly)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=record(readOnlySetting,readOnly))==null) return;
+        connection.setReadOnly(readOnly);
+    }
+    
+    @Override
+    public boolean isReadOnly()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=connectionUnlessRecorded(readOnlySetting))==null) return (Boolean)recorded(readOnlySetting);
+        return connection.isReadOnly();
+    }
+    
+    @Override
+    public void setTransactionIsolation(int level)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=record(isolationSetting,level))==null) return;
+        connection.setTransactionIsolation(level);
+    }
+    
+    @Override
+    public int getTransactionIsolation()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=connectionUnlessRecorded(isolationSetting))==null) return (Integer)recorded(isolationSetting);
+        return connection.getTransactionIsolation();
+    }
+    
+    @Override
+    public void setHoldability(int holdability)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=record(holdabilitySetting,holdability))==null) return;
+        connection.setHoldability(holdability);
+    }
+    
+    @Override
+    public int getHoldability()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=connectionUnlessRecorded(holdabilitySetting))==null) return (Integer)recorded(holdabilitySetting);
+        return connection.getHoldability();
+    }
+    
+    @Override
+    public void setCatalog(String catalog)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=record(catalogSetting,catalog))==null) return;
+        connection.setCatalog(catalog);
+    }
+    
+    @Override
+    public String getCatalog()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=connectionUnlessRecorded(catalogSetting))==null) return (String)recorded(catalogSetting);
+        return connection.getCatalog();
+    }
+    
+    @Override
+    public void setSchema(String schema)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=record(schemaSetting,schema))==null) return;
+        connection.setSchema(schema);
+    }
+    
+    @Override
+    public String getSchema()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=connectionUnlessRecorded(schemaSetting))==null) return (String)recorded(schemaSetting);
+        return connection.getSchema();
+    }
+    
+    /**
+     * Close the connection. If the real connection has not been opened,
+     * the connection is counted as avoided.
+     * @throws SQLException if the real connection does.
+     */
+    @Override
+    public void close()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=closeUnopened())==null) return;
+        connection.close();
+    }
+    
+    @Override
+    public void abort(Executor executor)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection==null&&(connection=closeUnopened())==null) return;
+        connection.abort(executor);
+    }
+    
+    @Override
+    public boolean isClosed()
+        throws SQLException
+    {
+        Connection connection=physical;
+        return connection==null?closed:connection.isClosed();
+    }
+    
+    @Override
+    public boolean isValid(int timeout)
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection!=null) return connection.isValid(timeout);
+        if (timeout<0) throw new SQLException("Negative timeout: "+timeout,"HY000");
+        return !closed;
+    }
+    
+    @Override
+    public SQLWarning getWarnings()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection!=null) return connection.getWarnings();
+        checkOpen();
+        return null;
+    }
+    
+    @Override
+    public void clearWarnings()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection!=null) connection.clearWarnings();
+        else checkOpen();
+    }
+    
+    /**
+     * Commit. Without the real connection, there is nothing to commit.
+     * @throws SQLException if the connection is closed, or the real connection throws.
+     */
+    @Override
+    public void commit()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection!=null) connection.commit();
+        else checkOpen();
+    }
+    
+    /**
+     * Roll back. Without the real connection, there is nothing to roll back.
+     * @throws SQLException if the connection is closed, or the real connection throws.
+     */
+    @Override
+    public void rollback()
+        throws SQLException
+    {
+        Connection connection=physical;
+        if (connection!=null) connection.rollback();
+        else checkOpen();
+    }
+    
+    @Override
+    public void setClientInfo(String name,String value)
+        throws SQLClientInfoException
+    {
+        try{
+            connection().setClientInfo(name,value);
+        }
+        catch(SQLClientInfoException e){
+            throw e;
+        }
+        catch(SQLException e){
+            throw new SQLClientInfoException(e.getMessage(),e.getSQLState(),e.getErrorCode(),Map.of(),e);
+        }
+    }
+    
+    @Override
+    public void setClientInfo(Properties properties)
+        throws SQLClientInfoException
+    {
+        try{
+            connection().setClientInfo(properties);
+        }
+        catch(SQLClientInfoException e){
+            throw e;
+        }
+        catch(SQLException e){
+            throw new SQLClientInfoException(e.getMessage(),e.getSQLState(),e.getErrorCode(),Map.of(),e);
+        }
+    }
+    
+    /**
+     * Compare by identity, as the real connection may not be open.
+     * @param other The object to compare with.
+     * @return {@code true} if {@code other} is this connection.
+     */
+    @Override
+    public boolean equals(Object other){return this==other;}
+    
+    /**
+     * Hash code
+     * @return the identity hash code.
+     */
+    @Override
+    public int hashCode(){return System.identityHashCode(this);}
+    
+    /**
+     * Get the string representation
+     * @return the real connection, or whether the connection is closed.
+     */
+    @Override
+    public String toString(){
+        Connection connection=physical;
+        return "LazyConnection["+(connection!=null?connection.toString():closed?"closed":"not connected")+"]";
+    }
+    
+    @Override
+    public void beginRequest()
+        throws SQLException
+    {
+        connection().beginRequest();
+    }
+    
+    @Override
+    public Array createArrayOf(String typeName,Object[] elements)
+        throws SQLException
+    {
+        return connection().createArrayOf(typeName,elements);
+    }
+    
+    @Override
+    public Blob createBlob()
+        throws SQLException
+    {
+        return connection().createBlob();
+    }
+    
+    @Override
+    public Clob createClob()
+        throws SQLException
+    {
+        return connection().createClob();
+    }
+    
+    @Override
+    public NClob createNClob()
+        throws SQLException
+    {
+        return connection().createNClob();
+    }
+    
+    @Override
+    public SQLXML createSQLXML()
+        throws SQLException
+    {
+        return connection().createSQLXML();
+    }
+    
+    @Override
+    public Statement createStatement()
+        throws SQLException
+    {
+        return connection().createStatement();
+    }
+    
+    @Override
+    public Statement createStatement(int type,int concurrency,int holdability)
+        throws SQLException
+    {
+        return connection().createStatement(type,concurrency,holdability);
+    }
+    
+    @Override
+    public Statement createStatement(int type,int concurrency)
+        throws SQLException
+    {
+        return connection().createStatement(type,concurrency);
+    }
+    
+    @Override
+    public Struct createStruct(String typeName,Object[] attributes)
+        throws SQLException
+    {
+        return connection().createStruct(typeName,attributes);
+    }
+    
+    @Override
+    public void endRequest()
+        throws SQLException
+    {
+        connection().endRequest();
+    }
+    
+    @Override
+    public Properties getClientInfo()
+        throws SQLException
+    {
+        return connection().getClientInfo();
+    }
+    
+    @Override
+    public String getClientInfo(String name)
+        throws SQLException
+    {
+        return connection().getClientInfo(name);
+    }
+    
+    @Override
+    public DatabaseMetaData getMetaData()
+        throws SQLException
+    {
+        return connection().getMetaData();
+    }
+    
+    @Override
+    public int getNetworkTimeout()
+        throws SQLException
+    {
+        return connection().getNetworkTimeout();
+    }
+    
+    @Override
+    public Map<String,Class<?>> getTypeMap()
+        throws SQLException
+    {
+        return connection().getTypeMap();
+    }
+    
+    @Override
+    public boolean isWrapperFor(Class<?> iface)
+        throws SQLException
+    {
+        return connection().isWrapperFor(iface);
+    }
+    
+    @Override
+    public String nativeSQL(String sql)
+        throws SQLException
+    {
+        return connection().nativeSQL(sql);
+    }
+    
+    @Override
+    public CallableStatement prepareCall(String sql,int type,int concurrency,int holdability)
+        throws SQLException
+    {
+        return connection().prepareCall(sql,type,concurrency,holdability);
+    }
+    
+    @Override
+    public CallableStatement prepareCall(String sql,int type,int concurrency)
+        throws SQLException
+    {
+        return connection().prepareCall(sql,type,concurrency);
+    }
+    
+    @Override
+    public CallableStatement prepareCall(String sql)
+        throws SQLException
+    {
+        return connection().prepareCall(sql);
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int[] columnIndexes)
+        throws SQLException
+    {
+        return connection().prepareStatement(sql,columnIndexes);
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,String[] columnNames)
+        throws SQLException
+    {
+        return connection().prepareStatement(sql,columnNames);
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int type,int concurrency,int holdability)
+        throws SQLException
+    {
+        return connection().prepareStatement(sql,type,concurrency,holdability);
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int type,int concurrency)
+        throws SQLException
+    {
+        return connection().prepareStatement(sql,type,concurrency);
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int autoGeneratedKeys)
+        throws SQLException
+    {
+        return connection().prepareStatement(sql,autoGeneratedKeys);
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql)
+        throws SQLException
+    {
+        return connection().prepareStatement(sql);
+    }
+    
+    @Override
+    public void releaseSavepoint(Savepoint savepoint)
+        throws SQLException
+    {
+        connection().releaseSavepoint(savepoint);
+    }
+    
+    @Override
+    public void rollback(Savepoint savepoint)
+        throws SQLException
+    {
+        connection().rollback(savepoint);
+    }
+    
+    @Override
+    public void setNetworkTimeout(Executor executor,int milliseconds)
+        throws SQLException
+    {
+        connection().setNetworkTimeout(executor,milliseconds);
+    }
+    
+    @Override
+    public Savepoint setSavepoint()
+        throws SQLException
+    {
+        return connection().setSavepoint();
+    }
+    
+    @Override
+    public Savepoint setSavepoint(String name)
+        throws SQLException
+    {
+        return connection().setSavepoint(name);
+    }
+    
+    @Override
+    public void setShardingKey(ShardingKey shardingKey,ShardingKey superShardingKey)
+        throws SQLException
+    {
+        connection().setShardingKey(shardingKey,superShardingKey);
+    }
+    
+    @Override
+    public void setShardingKey(ShardingKey shardingKey)
+        throws SQLException
+    {
+        connection().setShardingKey(shardingKey);
+    }
+    
+    @Override
+    public boolean setShardingKeyIfValid(ShardingKey shardingKey,int timeout)
+        throws SQLException
+    {
+        return connection().setShardingKeyIfValid(shardingKey,timeout);
+    }
+    
+    @Override
+    public boolean setShardingKeyIfValid(ShardingKey shardingKey,ShardingKey superShardingKey,int timeout)
+        throws SQLException
+    {
+        return connection().setShardingKeyIfValid(shardingKey,superShardingKey,timeout);
+    }
+    
+    @Override
+    public void setTypeMap(Map<String,Class<?>> map)
+        throws SQLException
+    {
+        connection().setTypeMap(map);
+    }
+    
+    @Override
+    public <T> T unwrap(Class<T> iface)
+        throws SQLException
+    {
+        return connection().unwrap(iface);
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A {@link MethodStepSupplier} with a separate program for each method.
+ * Calls to methods without a program of their own get their steps
+ * from a common program. For example, to fail the third
+ * {@link java.sql.Statement#executeQuery(String)} regardless of what else
+ * is called on the statement:
+ *<pre>
+ *new MethodProgram(
+ *    Map.of(StatementMethod.executeQuery,List.of(
+ *        PassThruStep.instance(),
+ *        PassThruStep.instance(),
+ *        new ExceptionStep(new SQLException("Connection reset","08006")))),
+ *    List.of());
+ *</pre>
+ * Note that the methods are identified by the interface declaring them,
+ * so {@link java.sql.PreparedStatement#close()} is
+ * {@link io.github.karstenspang.mockjdbc.wrap.StatementMethod#close}.
+ */
+public class MethodProgram implements MethodStepSupplier {
+    private final Map<WrapMethod,Supplier<Step>> programs;
+    private final Supplier<Step> otherwise;
+    
+    /**
+     * Construct the program from step suppliers.
+     * @param programs The step supplier for each method.
+     * @param otherwise The step supplier for the methods not in {@code programs}.
+     * @throws NullPointerException if {@code programs} or {@code otherwise}
+     *         is {@code null}, or {@code programs} contains {@code null}s.
+     */
+    public MethodProgram(Map<? extends WrapMethod,? extends Supplier<Step>> programs,Supplier<Step> otherwise){
+        this.programs=Map.copyOf(Objects.requireNonNull(programs,"programs is null"));
+        this.otherwise=Objects.requireNonNull(otherwise,"otherwise is null");
+    }
+    
+    /**
+     * Construct the program from lists of steps.
+     * Each list is turned into a {@link Program}.
+     * @param steps The steps for each method.
+     * @param otherwise The steps for the methods not in {@code steps}.
+     * @throws NullPointerException if {@code steps} or {@code otherwise}
+     *         is {@code null}, or {@code steps} contains {@code null}s.
+     */
+    public MethodProgram(Map<? extends WrapMethod,? extends Iterable<Step>> steps,Iterable<Step> otherwise){
+        this(toPrograms(steps),new Program(otherwise));
+    }
+    
+    /**
+     * Get the step for a method call.
+     * @param method The method called
+     * @param args The arguments, ignored.
+     * @return The next step from the program for {@code method}, or
+     *         from the common program, if it does not have one.
+     */
+    @Override
+    public Step get(WrapMethod method,Object[] args){
+        Supplier<Step> program=programs.get(method);
+        return (program==null?otherwise:program).get();
+    }
+    
+    /**
+     * Get the next step of the common program.
+     * @return the next step of the common program.
+     */
+    @Override
+    public Step get(){return otherwise.get();}
+    
+    /**
+     * The string represetation of the programs.
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return "{programs:"+String.valueOf(programs)+",otherwise:"+String.valueOf(otherwise)+"}";
+    }
+    
+    private static Map<WrapMethod,Supplier<Step>> toPrograms(Map<? extends WrapMethod,? extends Iterable<Step>> steps){
+        Map<WrapMethod,Supplier<Step>> programs=new HashMap<>();
+        for (Map.Entry<? extends WrapMethod,? extends Iterable<Step>> entry:Objects.requireNonNull(steps,"steps is null").entrySet()){
+            programs.put(entry.getKey(),new Program(entry.getValue()));
+        }
+        return programs;
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link Supplier}{@code <}{@link Step}{@code >} that is told which method
+ * the step is for, and with which arguments.
+ * When a wrap has a {@link MethodStepSupplier} as its program,
+ * it calls {@link #get(WrapMethod,Object[])} instead of {@link #get()}.
+ * This makes it possible to have different programs for different methods
+ * without counting the calls to all the other methods, see {@link MethodProgram}.
+ */
+public interface MethodStepSupplier extends Supplier<Step> {
+    /**
+     * Get the step to apply to a method call.
+     * @param method The method called, e.g. {@link io.github.karstenspang.mockjdbc.wrap.ConnectionMethod#commit}.
+     * @param args The arguments of the call, with primitives boxed.
+     *        The array must not be modified.
+     * @return The step to apply.
+     */
+    Step get(WrapMethod method,Object[] args);
+    
+    /**
+     * Get a step without knowing the method.
+     * The wraps do not call this method.
+     * @return {@link PassThruStep#instance()}
+     */
+    @Override
+    default Step get(){return PassThruStep.instance();}
+}
@@ -0,0 +1,251 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.wrap.ConnectionPoolDataSourceMethod;
+import io.github.karstenspang.mockjdbc.wrap.DataSourceMethod;
+import io.github.karstenspang.mockjdbc.wrap.XADataSourceMethod;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Wrapper;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.CommonDataSource;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+
+/**
+ * Mock data source delegating to a real data source.
+ * Connections are obtained the same way as with {@link MockDriver}:
+ * the call to the real data source is passed to a {@link Step}
+ * from the program of the current thread, as set with
+ * {@link MockDriver#setStepSupplier} or {@link MockDriver#setProgram}.
+ * Thus, the data source can be configured once for the application, while
+ * each test sets its own program. This does not involve {@link java.sql.DriverManager}.<p>
+ * If the program is a {@link MethodStepSupplier}, the steps are requested with
+ * the identifiers in {@link DataSourceMethod}, {@link ConnectionPoolDataSourceMethod},
+ * and {@link XADataSourceMethod}, e.g. {@link DataSourceMethod#getConnection}.<p>
+ * The mock implements {@link DataSource}, {@link ConnectionPoolDataSource}, and
+ * {@link XADataSource}, but the methods of an interface only work if the real
+ * data source implements it. Otherwise they throw {@link SQLFeatureNotSupportedException}.
+ * The methods of {@link CommonDataSource} are passed directly to the real data source.
+ */
+public class MockDataSource implements DataSource,ConnectionPoolDataSource,XADataSource {
+    private static final Logger logger=Logger.getLogger(MockDataSource.class.getName());
+    private static final Object[] noArgs=new Object[0];
+    private final CommonDataSource dataSource;
+    
+    /**
+     * Create a mock data source.
+     * @param dataSource The real data source.
+     * @throws NullPointerException if {@code dataSource} is {@code null}.
+     */
+    public MockDataSource(CommonDataSource dataSource){
+        this.dataSource=Objects.requireNonNull(dataSource,"dataSource is null");
+    }
+    
+    /**
+     * Get a connection from the real data source, subject to the step of the program.
+     * @return the result from {@link Step#apply(SQLSupplier)}.
+     * @throws SQLException if the step or the real data source does.
+     * @throws SQLFeatureNotSupportedException if the real data source is not a {@link DataSource}.
+     */
+    @Override
+    public Connection getConnection()
+        throws SQLException
+    {
+        DataSource target=target(DataSource.class);
+        return apply(DataSourceMethod.getConnection,noArgs,()->target.getConnection());
+    }
+    
+    /**
+     * Get a connection from the real data source, subject to the step of the program.
+     * @param user User name
+     * @param password Password. It is only logged if enabled with {@link MockDriver#logPassword(boolean)}.
+     * @return the result from {@link Step#apply(SQLSupplier)}.
+     * @throws SQLException if the step or the real data source does.
+     * @throws SQLFeatureNotSupportedException if the real data source is not a {@link DataSource}.
+     */
+    @Override
+    public Connection getConnection(String user,String password)
+        throws SQLException
+    {
+        DataSource target=target(DataSource.class);
+        return apply(DataSourceMethod.getConnection_String_String,new Object[]{user,password},()->target.getConnection(user,password));
+    }
+    
+    /**
+     * Get a pooled connection from the real data source, subject to the step of the program.
+     * @return the result from {@link Step#apply(SQLSupplier)}.
+     * @throws SQLException if the step or the real data source does.
+     * @throws SQLFeatureNotSupportedException if the real data source is not a {@link ConnectionPoolDataSource}.
+     */
+    @Override
+    public PooledConnection getPooledConnection()
+        throws SQLException
+    {
+        ConnectionPoolDataSource target=target(ConnectionPoolDataSource.class);
+        return apply(ConnectionPoolDataSourceMethod.getPooledConnection,noArgs,()->target.getPooledConnection());
+    }
+    
+    /**
+     * Get a pooled connection from the real data source, subject to the step of the program.
+     * @param user User name
+     * @param password Password. It is only logged if enabled with {@link MockDriver#logPassword(boolean)}.
+     * @return the result from {@link Step#apply(SQLSupplier)}.
+     * @throws SQLException if the step or the real data source does.
+     * @throws SQLFeatureNotSupportedException if the real data source is not a {@link ConnectionPoolDataSource}.
+     */
+    @Override
+    public PooledConnection getPooledConnection(String user,String password)
+        throws SQLException
+    {
+        ConnectionPoolDataSource target=target(ConnectionPoolDataSource.class);
+        return apply(ConnectionPoolDataSourceMethod.getPooledConnection_String_String,new Object[]{user,password},()->target.getPooledConnection(user,password));
+    }
+    
+    /**
+     * Get an XA connection from the real data source, subject to the step of the program.
+     * @return the result from {@link Step#apply(SQLSupplier)}.
+     * @throws SQLException if the step or the real data source does.
+     * @throws SQLFeatureNotSupportedException if the real data source is not an {@link XADataSource}.
+     */
+    @Override
+    public XAConnection getXAConnection()
+        throws SQLException
+    {
+        XADataSource target=target(XADataSource.class);
+        return apply(XADataSourceMethod.getXAConnection,noArgs,()->target.getXAConnection());
+    }
+    
+    /**
+     * Get an XA connection from the real data source, subject to the step of the program.
+     * @param user User name
+     * @param password Password. It is only logged if enabled with {@link MockDriver#logPassword(boolean)}.
+     * @return the result from {@link Step#apply(SQLSupplier)}.
+     * @throws SQLException if the step or the real data source does.
+     * @throws SQLFeatureNotSupportedException if the real data source is not an {@link XADataSource}.
+     */
+    @Override
+    public XAConnection getXAConnection(String user,String password)
+        throws SQLException
+    {
+        XADataSource target=target(XADataSource.class);
+        return apply(XADataSourceMethod.getXAConnection_String_String,new Object[]{user,password},()->target.getXAConnection(user,password));
+    }
+    
+    @Override
+    public PrintWriter getLogWriter()
+        throws SQLException
+    {
+        return dataSource.getLogWriter();
+    }
+    @Override
+    public void setLogWriter(PrintWriter out)
+        throws SQLException
+    {
+        dataSource.setLogWriter(out);
+    }
+    @Override
+    public int getLoginTimeout()
+        throws SQLException
+    {
+        return dataSource.getLoginTimeout();
+    }
+    @Override
+    public void setLoginTimeout(int seconds)
+        throws SQLException
+    {
+        dataSource.setLoginTimeout(seconds);
+    }
+    @Override
+    public Logger getParentLogger()
+        throws SQLFeatureNotSupportedException
+    {
+        return dataSource.getParentLogger();
+    }
+    
+    /**
+     * Unwrap
+     * @param iface The interface to unwrap to.
+     * @return this data source if it supports {@code iface}, otherwise the
+     *         real data source or the result of its {@code unwrap}.
+     *         This data source only supports {@link DataSource}, {@link ConnectionPoolDataSource}
+     *         and {@link XADataSource} if the real data source implements them.
+     * @throws SQLException if neither implements {@code iface}.
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface)
+        throws SQLException
+    {
+        if (supports(iface)) return iface.cast(this);
+        if (iface.isInstance(dataSource)) return iface.cast(dataSource);
+        if (dataSource instanceof Wrapper) return ((Wrapper)dataSource).unwrap(iface);
+        throw new SQLException(String.valueOf(dataSource)+" is not a wrapper for "+iface.getName());
+    }
+    
+    /**
+     * Check if {@link #unwrap} will succeed.
+     * @param iface The interface to check.
+     * @return {@code true} if {@link #unwrap} will succeed.
+     * @throws SQLException if the real data source throws it.
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> iface)
+        throws SQLException
+    {
+        if (supports(iface)||iface.isInstance(dataSource)) return true;
+        if (dataSource instanceof Wrapper) return ((Wrapper)dataSource).isWrapperFor(iface);
+        return false;
+    }
+    
+    /**
+     * Get the string representation
+     * @return {@code MockDataSource} followed by the representation of the real data source.
+     */
+    @Override
+    public String toString(){
+        return "MockDataSource:"+String.valueOf(dataSource);
+    }
+    
+    // Whether this can be used as iface, which for the data source interfaces requires the real data source to implement them
+    private boolean supports(Class<?> iface){
+        if (!iface.isInstance(this)) return false;
+        if (iface==DataSource.class||iface==ConnectionPoolDataSource.class||iface==XADataSource.class) return iface.isInstance(dataSource);
+        return true;
+    }
+    
+    private <T> T target(Class<T> iface)
+        throws SQLFeatureNotSupportedException
+    {
+        if (!iface.isInstance(dataSource)) throw new SQLFeatureNotSupportedException(String.valueOf(dataSource)+" is not a "+iface.getName());
+        return iface.cast(dataSource);
+    }
+    
+    // The arguments are none, or user and password
+    private static String describe(WrapMethod method,Object[] args){
+        String call=method.declaringInterface().getSimpleName()+"."+method.methodName();
+        if (args.length==0) return call+"()";
+        Object password=args[1]==null||MockDriver.logPassword()?args[1]:"[HIDDEN]";
+        return call+"("+String.valueOf(args[0])+","+String.valueOf(password)+")";
+    }
+    
+    private static <T> T apply(WrapMethod method,Object[] args,SQLSupplier<T> getter)
+        throws SQLException
+    {
+        Supplier<Step> stepSupplier=MockDriver.stepSupplier();
+        Step step=stepSupplier instanceof MethodStepSupplier?
+            ((MethodStepSupplier)stepSupplier).get(method,args):
+            stepSupplier.get();
+        boolean finest=logger.isLoggable(Level.FINEST);
+        if (finest) logger.finest("Apply "+String.valueOf(step)+" to "+describe(method,args));
+        T result=step.apply(getter);
+        if (finest) logger.finest("Result: "+String.valueOf(result));
+        return result;
+    }
+}
@@ -10,9 +10,13 @@ import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -25,7 +29,8 @@ import java.util.regex.Pattern;
  * unless intercepted.<p>
  * The actions of {@link #connect} is controlled by a program.
  * The program is set using {@link #setStepSupplier} or
- * {@link #setProgram}.
+ * {@link #setProgram}. If the program is a {@link MethodStepSupplier},
+ * the step for {@link #connect} is requested with {@link DriverMethod#connect}.
  * Initially, the program
  * is one that always returns {@link PassThruStep}, in
  * other words, real {@link Connection}s are returned.
@@ -37,18 +42,64 @@ import java.util.regex.Pattern;
  *      the program can be set before creating the thread,
  *      and it will be inherited by the child.</li>
  * </ul>
+ * The child threads share the program with the parent. If they may connect
+ * at the same time, as the threads of a connection pool do, use a thread
+ * safe program, such as a {@link ConcurrentProgram}.
  * Note that the description of {@link InheritableThreadLocal}
  * is somewhat vague. It says that the value is copied in the
  * parent thread when "the child thread is created". Experiments
  * indicate that this means when "the child {@link Thread}
- * is constructed", as you would expect.
+ * is constructed", as you would expect.<p>
+ * The value is copied into every thread created, including virtual threads,
+ * and threads created before the program is set, such as pool threads,
+ * do not see it. Two alternatives avoid this:
+ * <ul>
+ *  <li>{@link #runWith} and {@link #callWith} bind a program for the duration
+ *      of a call, for example the handling of a request. On Java 25 and later,
+ *      the binding is a {@link java.lang.ScopedValue}, which is not copied,
+ *      and is seen by subtasks forked in a {@code StructuredTaskScope}.</li>
+ *  <li>{@link #setGlobalStepSupplier} sets a program for all the threads,
+ *      including existing ones. It must be thread safe.</li>
+ * </ul>
+ * {@link #connect} uses the program bound by {@link #runWith} or {@link #callWith},
+ * if any, otherwise the one set by {@link #setStepSupplier} or {@link #setProgram}
+ * in the thread or its parent, otherwise the global one.<p>
+ * A program can also be selected by the URL, independent of the thread.
+ * An URL of the form {@code jdbc:mock:@name:restofurl} uses the program registered
+ * with {@link #registerStepSupplier} or {@link #registerProgram} under {@code name},
+ * and connects to {@code jdbc:restofurl}. This way, separate connection pools
+ * in the same JVM can have independent programs. If no program is registered under
+ * the name, {@link #connect} throws an {@link SQLException}.<p>
+ * The program can also be written in the URL, in the language of {@link ProgramCompiler},
+ * as {@code jdbc:mock:{program}:restofurl}, for example
+ * {@code jdbc:mock:{pass*3,fail(08001),pass*}:h2:mem:x}. All the connections with
+ * the same URL share one {@link ConcurrentProgram} running the program.
+ * The program ends at the first {@code '}'} that is not in a quoted message or a comment.<p>
+ * An URL of the form {@code jdbc:mock:pool:restofurl} keeps the real connections
+ * in a {@link ConnectionPool} of {@value ConnectionPool#defaultMaxSize} connections,
+ * and the connections returned by {@link #connect} give them back to the pool when closed.
+ * The prefix can be combined with the program selection, as in
+ * {@code jdbc:mock:pool:@name:restofurl}.
  */
 public class MockDriver implements Driver {
     private static final String pomPropertiesFile="META-INF/maven/io.github.karstenspang/mockjdbc/pom.properties";
     private static final Logger logger=Logger.getLogger(MockDriver.class.getName());
     private static final MockDriver instance;
     private static final Supplier<Step> emptySteps;
+    // Limit on the number of parsed URL's cached
+    private static final int urlCacheLimit=1000;
+    // How long connects to URL's of the form jdbc:mock:pool:restofurl wait for a connection
+    private static final Duration defaultPoolTimeout=Duration.ofSeconds(30);
     private InheritableThreadLocal<Supplier<Step>> stepSupplier;
+    private volatile Supplier<Step> globalStepSupplier;
+    private final ConcurrentHashMap<String,Registration> registry=new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,Target> targets=new ConcurrentHashMap<>();
+    // The programs written in URL's, by URL. Not limited like the targets,
+    // so the connections with an URL share the program even when the cache is full.
+    private final ConcurrentHashMap<String,Supplier<Step>> urlPrograms=new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,ConnectionLimit> limits=new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,LazyConnect> lazyConnects=new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,ConnectionPool> pools=new ConcurrentHashMap<>();
     private final int majorVersion;
     private final int minorVersion;
     private boolean logPassword;
@@ -76,18 +127,179 @@ public class MockDriver implements Driver {
     /**
      * Set the step provider of the driver.
      * @param stepSupplier Supplier to use. If {@code null},
-     *        the initial program is reinstated.
+     *        the global step supplier is reinstated.
      */
     public static void setStepSupplier(Supplier<Step> stepSupplier){
         logger.fine("Setting step provider "+String.valueOf(stepSupplier));
         if (stepSupplier==null){
-            instance.stepSupplier.set(emptySteps);
+            instance.stepSupplier.remove();
         }
         else{
             instance.stepSupplier.set(stepSupplier);
         }
     }
     
+    /**
+     * Set the step provider used by the threads that have not set their own.
+     * It is used by all threads, so it must be thread safe, see {@link ConcurrentProgram}.
+     * @param stepSupplier Supplier to use. If {@code null},
+     *        the initial program is reinstated.
+     */
+    public static void setGlobalStepSupplier(Supplier<Step> stepSupplier){
+        logger.fine("Setting global step provider "+String.valueOf(stepSupplier));
+        instance.globalStepSupplier=stepSupplier==null?emptySteps:stepSupplier;
+    }
+    
+    /**
+     * Register a program under a name, for URL's of the form {@code jdbc:mock:@name:restofurl}.
+     * @param name The name of the program.
+     * @param program Program to use. If {@code null}, the name is unregistered.
+     * @throws IllegalArgumentException if {@code name} is empty or contains a colon.
+     */
+    public static void registerProgram(String name,Iterable<Step> program){
+        registerStepSupplier(name,program==null?null:new ConcurrentProgram(program));
+    }
+    
+    /**
+     * Register a step provider under a name, for URL's of the form {@code jdbc:mock:@name:restofurl}.
+     * The step provider may be used by several threads at the same time,
+     * so it must be thread safe, see {@link ConcurrentProgram}.
+     * @param name The name of the step provider.
+     * @param stepSupplier Supplier to use. If {@code null}, the name is unregistered.
+     * @throws IllegalArgumentException if {@code name} is empty or contains a colon.
+     */
+    public static void registerStepSupplier(String name,Supplier<Step> stepSupplier){
+        if (name.isEmpty()||name.indexOf(':')>=0) throw new IllegalArgumentException("Invalid program name: "+name);
+        logger.fine("Registering step provider "+String.valueOf(stepSupplier)+" as "+name);
+        instance.registration(name).stepSupplier=stepSupplier;
+    }
+    
+    /**
+     * Limit the number of open connections with a mock URL.
+     * Connects to {@code url} are admitted by {@code limit} before the step is applied,
+     * and the connections return their permits when closed.
+     * The URL must be the same as the one passed to {@link #connect}.
+     * @param url The mock URL.
+     * @param limit The limit. If {@code null}, the URL is no longer limited.
+     */
+    public static void setConnectionLimit(String url,ConnectionLimit limit){
+        logger.fine("Setting connection limit "+String.valueOf(limit)+" for "+url);
+        if (limit==null){
+            instance.limits.remove(url);
+        }
+        else{
+            instance.limits.put(url,limit);
+        }
+    }
+    
+    /**
+     * Defer the real connects of a mock URL until the connections are used.
+     * {@link #connect} returns a connection at once, and the step is applied when
+     * the connection first needs the real one, see {@link LazyConnect}.
+     * The URL must be the same as the one passed to {@link #connect}.
+     * @param url The mock URL.
+     * @param lazyConnect The mode, counting the connects. If {@code null},
+     *        the connects to the URL are no longer deferred.
+     */
+    public static void setLazyConnect(String url,LazyConnect lazyConnect){
+        logger.fine("Setting lazy connect "+String.valueOf(lazyConnect)+" for "+url);
+        if (lazyConnect==null){
+            instance.lazyConnects.remove(url);
+        }
+        else{
+            instance.lazyConnects.put(url,lazyConnect);
+        }
+    }
+    
+    /**
+     * Pool the real connections of a mock URL.
+     * Connects to {@code url} borrow a connection from {@code pool}, and
+     * closing the connection returns it, see {@link ConnectionPool}.
+     * The URL must be the same as the one passed to {@link #connect}.
+     * Replacing or removing a pool does not close its connections.
+     * @param url The mock URL.
+     * @param pool The pool. If {@code null}, the URL is no longer pooled, unless it
+     *        is of the form {@code jdbc:mock:pool:restofurl}, which gets a new default pool.
+     */
+    public static void setConnectionPool(String url,ConnectionPool pool){
+        logger.fine("Setting connection pool "+String.valueOf(pool)+" for "+url);
+        if (pool==null){
+            instance.pools.remove(url);
+        }
+        else{
+            instance.pools.put(url,pool);
+        }
+    }
+    
+    /**
+     * Get the pool of a mock URL, for example to read its counters.
+     * @param url The mock URL.
+     * @return the pool set with {@link #setConnectionPool}, or the default pool of
+     *         an URL of the form {@code jdbc:mock:pool:restofurl}, once it has been connected to.
+     *         {@code null} if the URL is not pooled.
+     */
+    public static ConnectionPool connectionPool(String url){
+        return instance.pools.get(url);
+    }
+    
+    /**
+     * Run code with a step provider.
+     * The step provider is used by {@link #connect} in the current thread until
+     * {@code body} returns, taking precedence over the other step providers.
+     * Calls can be nested.
+     * @param stepSupplier Supplier to use.
+     * @param body The code to run.
+     * @throws NullPointerException if an argument is {@code null}.
+     * @throws SQLException if {@code body} does.
+     */
+    public static void runWith(Supplier<Step> stepSupplier,SQLRunnable body)
+        throws SQLException
+    {
+        Objects.requireNonNull(body,"body is null");
+        callWith(stepSupplier,()->{
+            body.run();
+            return null;
+        });
+    }
+    
+    /**
+     * Call code with a step provider.
+     * The step provider is used by {@link #connect} in the current thread until
+     * {@code body} returns, taking precedence over the other step providers.
+     * Calls can be nested.
+     * @param <T> The type of result.
+     * @param stepSupplier Supplier to use.
+     * @param body The code to call.
+     * @return the result of {@code body}.
+     * @throws NullPointerException if an argument is {@code null}.
+     * @throws SQLException if {@code body} does.
+     */
+    public static <T> T callWith(Supplier<Step> stepSupplier,SQLSupplier<? extends T> body)
+        throws SQLException
+    {
+        Objects.requireNonNull(stepSupplier,"stepSupplier is null");
+        Objects.requireNonNull(body,"body is null");
+        return ProgramScope.call(stepSupplier,body);
+    }
+    
+    /**
+     * Get the step supplier of the current thread.
+     * @return the supplier bound with {@link #runWith} or {@link #callWith},
+     *         set with {@link #setStepSupplier}, or {@link #setGlobalStepSupplier},
+     *         in that order.
+     */
+    static Supplier<Step> stepSupplier(){
+        return instance.stepSupplierInstance();
+    }
+    
+    private Supplier<Step> stepSupplierInstance(){
+        Supplier<Step> stepSupplier=ProgramScope.current();
+        if (stepSupplier!=null) return stepSupplier;
+        stepSupplier=this.stepSupplier.get();
+        if (stepSupplier!=null) return stepSupplier;
+        return globalStepSupplier;
+    }
+    
     /**
      * Specify whether logging should include the password.
      * @param enable whether to enable password logging.
@@ -127,27 +339,57 @@ public class MockDriver implements Driver {
      * {@link Supplier} associated with the {@link MockDriver}.
      * Takes an URL of the form {@code jdbc:mock:restofurl}, and
      * converts it into {@code jdbc:restofurl}. Then an
-     * {@link SQLSupplier} calling
-     * {@link DriverManager#getConnection(String,Properties)} is passed 
+     * {@link SQLSupplier} connecting to the real driver is passed
      * to {@link Step#apply(SQLSupplier)} for execution.
+     * The real driver is found with {@link DriverManager#getDriver(String)}
+     * the first time, and remembered for the URL, so later connections go
+     * directly to the real driver. If it no longer accepts the URL,
+     * {@link DriverManager#getConnection(String,Properties)} is used.
+     * The parsed URL's are cached too.
+     * If the URL is pooled, see {@link ConnectionPool}, a connection is borrowed from
+     * the pool, and the step is only applied when the pool opens a real connection.
+     * Otherwise, if the URL is set to connect lazily with {@link #setLazyConnect},
+     * a connection is returned at once, and the step is applied when it is first used.
      * @param url The JDBC mock URL.
      * @param info Additional info to be passed to the real driver.
      * @return the result from {@link Step#apply(SQLSupplier)}, or
      *         {@code null} if {@code url} is not of the required form.
      * @throws SQLException if the {@link Step#apply(SQLSupplier)} or
-     *         {@link DriverManager#getConnection(String,Properties)}
-     *         does.
+     *         the real driver does, or if no driver accepts the URL.
      */
     @Override
     public Connection connect​(final String url,final Properties info)
         throws SQLException
     {
         if (!isOurUrl(url)) return null;
-        Supplier<Step> stepSupplier=this.stepSupplier.get();
-        if (stepSupplier==null){
-            this.stepSupplier.set(emptySteps);
-            stepSupplier=emptySteps;
+        Target target=target(url);
+        Supplier<Step> stepSupplier;
+        if (target.program!=null){
+            stepSupplier=target.program;
+        }
+        else if (target.registration==null){
+            stepSupplier=stepSupplierInstance();
         }
+        else{
+            stepSupplier=target.registration.stepSupplier;
+            if (stepSupplier==null) throw new SQLException("No program registered as "+target.registration.name,"08001");
+        }
+        ConnectionPool pool=pools.isEmpty()?null:pools.get(url);
+        if (pool==null&&target.pooled) pool=pools.computeIfAbsent(url,u->new ConnectionPool(ConnectionPool.defaultMaxSize,defaultPoolTimeout));
+        if (pool!=null) return pool.borrow(()->connect(url,stepSupplier,target,info));
+        LazyConnect lazyConnect=lazyConnects.isEmpty()?null:lazyConnects.get(url);
+        if (lazyConnect!=null) return lazyConnect.connection(()->connect(url,stepSupplier,target,info));
+        return connect(url,stepSupplier,target,info);
+    }
+    
+    // Get the step from the program and open the connection
+    private Connection connect(String url,Supplier<Step> stepSupplier,Target target,Properties info)
+        throws SQLException
+    {
+        Step step=stepSupplier instanceof MethodStepSupplier?
+            ((MethodStepSupplier)stepSupplier).get(DriverMethod.connect,new Object[]{url,info}):
+            stepSupplier.get();
+        if (!logger.isLoggable(Level.FINEST)) return open(url,step,target,info);
         Properties logProps;
         if (!logPassword && info!=null && info.getProperty("password")!=null){
             logProps=new Properties();
@@ -157,21 +399,28 @@ public class MockDriver implements Driver {
         else{
             logProps=info;
         }
-        // If there are less than 3 parts, isOurUrl will return false
-        final String newUrl="jdbc:"+url.split(":",3)[2];
+        logger.finest("Apply "+String.valueOf(step)+" to DriverManager.getConnection("+String.valueOf(target.url)+","+String.valueOf(logProps)+")");
+        Connection result=open(url,step,target,info);
+        logger.finest("Result: "+String.valueOf(result));
+        return result;
+    }
+    
+    // Apply the step to the connect, subject to the connection limit of the URL
+    private Connection open(String url,Step step,Target target,Properties info)
+        throws SQLException
+    {
+        ConnectionLimit limit=limits.isEmpty()?null:limits.get(url);
+        if (limit==null) return step.apply(()->target.connect(info));
+        limit.acquire();
+        Connection connection;
         try{
-            // If the no-op driver is used, make sure it is loaded.
-            if ("noop".equals(url.split(":")[2])) Class.forName("io.github.karstenspang.mockjdbc.noop.NoopDriver");
+            connection=step.apply(()->target.connect(info));
         }
-        // Should not happen, as the the NoopDriver is packaged in the same jar file.
-        catch (ClassNotFoundException e){
-            throw new SQLException(e);
+        catch(SQLException|RuntimeException e){
+            limit.release();
+            throw e;
         }
-        Step step=stepSupplier.get();
-        logger.finest("Apply "+String.valueOf(step)+" to DriverManager.getConnection("+String.valueOf(newUrl)+","+String.valueOf(logProps)+")");
-        Connection result=step.apply(()->DriverManager.getConnection(newUrl,info));
-        logger.finest("Result: "+String.valueOf(result));
-        return result;
+        return limit.admitted(connection);
     }
     @Override
     public boolean acceptsURL​(String url){return isOurUrl(url);}
@@ -195,6 +444,7 @@ public class MockDriver implements Driver {
     MockDriver(String propertyFile)
     {
         stepSupplier=new InheritableThreadLocal<>();
+        globalStepSupplier=emptySteps;
         Properties pomProperties;
         try {
             pomProperties=loadProperties(propertyFile);
@@ -211,6 +461,132 @@ public class MockDriver implements Driver {
         logPassword=false;
     }
     
+    private Registration registration(String name){
+        return registry.computeIfAbsent(name,Registration::new);
+    }
+    
+    // Parse the URL, or get the result of parsing it before
+    private Target target(String url)
+        throws SQLException
+    {
+        Target target=targets.get(url);
+        if (target!=null) return target;
+        // If there are less than 3 parts, isOurUrl will return false
+        String rest=url.split(":",3)[2];
+        boolean pooled=rest.startsWith("pool:");
+        if (pooled) rest=rest.substring("pool:".length());
+        Registration registration=null;
+        Supplier<Step> program=null;
+        if (rest.startsWith("{")){
+            int end=programEnd(rest);
+            if (end<0) throw new SQLException("Unterminated program in "+url,"08001");
+            program=urlProgram(url,rest.substring(1,end));
+            rest=rest.substring(end+1);
+            if (rest.startsWith(":")) rest=rest.substring(1);
+        }
+        else if (rest.startsWith("@")){
+            int colon=rest.indexOf(':');
+            String name=colon<0?rest.substring(1):rest.substring(1,colon);
+            if (name.isEmpty()) throw new SQLException("No program name in "+url,"08001");
+            registration=registration(name);
+            rest=colon<0?"":rest.substring(colon+1);
+        }
+        try{
+            // If the no-op driver is used, make sure it is loaded.
+            if ("noop".equals(rest.split(":")[0])) Class.forName("io.github.karstenspang.mockjdbc.noop.NoopDriver");
+        }
+        // Should not happen, as the the NoopDriver is packaged in the same jar file.
+        catch (ClassNotFoundException e){
+            throw new SQLException(e);
+        }
+        target=new Target("jdbc:"+rest,registration,program,pooled);
+        if (targets.size()<urlCacheLimit){
+            // If another thread parsed the URL at the same time, use its target
+            Target existing=targets.putIfAbsent(url,target);
+            if (existing!=null) target=existing;
+        }
+        return target;
+    }
+    
+    // Get the program written in the URL, compiling it the first time
+    // The position of the '}' ending the program at the start of rest, or -1 if there is none.
+    // A '}' in a message or a comment does not end the program.
+    private static int programEnd(String rest){
+        int pos=1;
+        while (pos<rest.length()){
+            char c=rest.charAt(pos);
+            if (c=='}') return pos;
+            if (c=='\''){
+                pos=rest.indexOf('\'',pos+1);
+                if (pos<0) return -1;
+            }
+            else if (c=='#'){
+                pos=rest.indexOf('\n',pos+1);
+                if (pos<0) return -1;
+            }
+            pos++;
+        }
+        return -1;
+    }
+    
+    private Supplier<Step> urlProgram(String url,String source)
+        throws SQLException
+    {
+        Supplier<Step> program=urlPrograms.get(url);
+        if (program!=null) return program;
+        try{
+            program=new ConcurrentProgram(ProgramCompiler.compile(source));
+        }
+        catch(IllegalArgumentException e){
+            throw new SQLException("Invalid program in "+url,"08001",e);
+        }
+        Supplier<Step> existing=urlPrograms.putIfAbsent(url,program);
+        return existing!=null?existing:program;
+    }
+    
+    // A program registered under a name
+    private static final class Registration {
+        final String name;
+        volatile Supplier<Step> stepSupplier;
+        Registration(String name){this.name=name;}
+    }
+    
+    // What a mock URL connects to
+    private static final class Target {
+        final String url;
+        // null if the program is not selected by the URL
+        final Registration registration;
+        // The program written in the URL, or null
+        final Supplier<Step> program;
+        // Whether the URL is of the form jdbc:mock:pool:restofurl
+        final boolean pooled;
+        // The real driver, found by the first successful connect
+        private volatile Driver driver;
+        Target(String url,Registration registration,Supplier<Step> program,boolean pooled){
+            this.url=url;
+            this.registration=registration;
+            this.program=program;
+            this.pooled=pooled;
+        }
+        
+        // Connect directly to the real driver, avoiding the scan of DriverManager
+        Connection connect(Properties info)
+            throws SQLException
+        {
+            Driver driver=this.driver;
+            if (driver==null){
+                driver=DriverManager.getDriver(url);
+                this.driver=driver;
+            }
+            Connection connection=driver.connect(url,info);
+            if (connection!=null) return connection;
+            // The driver no longer accepts the URL. Let DriverManager look again,
+            // and report the error if no driver does.
+            this.driver=null;
+            return DriverManager.getConnection(url,info);
+        }
+    }
+    
     private static boolean isOurUrl(String url){
         return url.startsWith("jdbc:mock:");
     }
@@ -8,7 +8,7 @@ import java.sql.SQLException;
  * method in the real driver.
  */
 public class PassThruStep implements Step {
-    private static PassThruStep instance=new PassThruStep();
+    private static final PassThruStep instance=new PassThruStep();
     
     /**
      * Get (the only) instance.
@@ -32,6 +32,58 @@ public class PassThruStep implements Step {
         return method.get();
     }
     
+    /**
+     * Call the method and return the result.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does.
+     */
+    @Override
+    public int applyAsInt(SQLIntSupplier method)
+        throws SQLException
+    {
+        return method.getAsInt();
+    }
+    
+    /**
+     * Call the method and return the result.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does.
+     */
+    @Override
+    public long applyAsLong(SQLLongSupplier method)
+        throws SQLException
+    {
+        return method.getAsLong();
+    }
+    
+    /**
+     * Call the method and return the result.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does.
+     */
+    @Override
+    public double applyAsDouble(SQLDoubleSupplier method)
+        throws SQLException
+    {
+        return method.getAsDouble();
+    }
+    
+    /**
+     * Call the method and return the result.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does.
+     */
+    @Override
+    public boolean applyAsBoolean(SQLBooleanSupplier method)
+        throws SQLException
+    {
+        return method.getAsBoolean();
+    }
+    
     /**
      * Call the method.
      * @param method Method to call.
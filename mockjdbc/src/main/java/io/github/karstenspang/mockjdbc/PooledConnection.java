@@ -0,0 +1,348 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.wrap.CallableStatementWrap;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.DatabaseMetaDataWrap;
+import io.github.karstenspang.mockjdbc.wrap.PreparedStatementWrap;
+import io.github.karstenspang.mockjdbc.wrap.StatementWrap;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Connection borrowed from a {@link ConnectionPool}.
+ * Closing it returns the real connection to the pool, and after that,
+ * the calls throw an {@link SQLException}. The settings restored by the pool
+ * are changed through the pool entry, so it knows what to restore.
+ * Statements are tracked, so that the ones left open are closed with the connection.
+ * Statements and metadata are wrapped so that {@code getConnection} returns this connection.
+ */
+class PooledConnection extends ConnectionWrap {
+    private static final Logger logger=Logger.getLogger(PooledConnection.class.getName());
+    private static final Step closedStep=ExceptionStep.stackless("Connection is closed","08003");
+    private final ConnectionPool.Entry entry;
+    private final ConnectionPool pool;
+    private final AtomicBoolean closed;
+    // The statements not yet closed
+    private final Set<Statement> statements=ConcurrentHashMap.newKeySet();
+    
+    PooledConnection(ConnectionPool.Entry entry,ConnectionPool pool){
+        this(entry,pool,new AtomicBoolean());
+    }
+    
+    private PooledConnection(ConnectionPool.Entry entry,ConnectionPool pool,AtomicBoolean closed){
+        super(logger,entry.connection,steps(closed),null);
+        this.entry=entry;
+        this.pool=pool;
+        this.closed=closed;
+    }
+    
+    // Pass the calls through until the connection is closed
+    private static Supplier<Step> steps(AtomicBoolean closed){
+        return ()->closed.get()?closedStep:PassThruStep.instance();
+    }
+    
+    /**
+     * Close the statements left open, and return the real connection to the pool.
+     * Closing a closed connection has no effect.
+     */
+    @Override
+    public void close(){
+        if (!closed.compareAndSet(false,true)) return;
+        for (Statement statement:statements){
+            try{
+                statement.close();
+            }
+            catch(SQLException|RuntimeException e){
+                // The connection is returned anyway
+            }
+        }
+        statements.clear();
+        pool.release(entry);
+    }
+    
+    /**
+     * Abort the real connection, and let the pool discard it.
+     * @param executor Passed to the real connection.
+     * @throws SQLException if the real connection does.
+     */
+    @Override
+    public void abort(Executor executor)
+        throws SQLException
+    {
+        if (!closed.compareAndSet(false,true)) return;
+        statements.clear();
+        try{
+            entry.connection.abort(executor);
+        }
+        finally{
+            pool.abandon();
+        }
+    }
+    
+    /**
+     * Tell whether the connection has been closed
+     * @return {@code true} if the connection has been returned to the pool,
+     *         or the real connection is closed.
+     * @throws SQLException if the real connection does.
+     */
+    @Override
+    public boolean isClosed()
+        throws SQLException
+    {
+        return closed.get()||entry.connection.isClosed();
+    }
+    
+    /**
+     * Tell whether the connection is valid
+     * @param timeout Passed to the real connection.
+     * @return {@code false} if the connection has been returned to the pool,
+     *         otherwise the result from the real connection.
+     * @throws SQLException if the real connection does.
+     */
+    @Override
+    public boolean isValid(int timeout)
+        throws SQLException
+    {
+        return !closed.get()&&entry.connection.isValid(timeout);
+    }
+    
+    @Override
+    public void setAutoCommit(boolean autoCommit)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setAutoCommit(autoCommit);
+    }
+    
+    @Override
+    public void setReadOnly(boolean readOnly)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setReadOnly(readOnly);
+    }
+    
+    @Override
+    public void setTransactionIsolation(int level)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setTransactionIsolation(level);
+    }
+    
+    @Override
+    public void setCatalog(String catalog)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setCatalog(catalog);
+    }
+    
+    @Override
+    public void setSchema(String schema)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setSchema(schema);
+    }
+    
+    @Override
+    public void setHoldability(int holdability)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setHoldability(holdability);
+    }
+    
+    @Override
+    public void setNetworkTimeout(Executor executor,int milliseconds)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setNetworkTimeout(executor,milliseconds);
+    }
+    
+    @Override
+    public void setTypeMap(Map<String,Class<?>> map)
+        throws SQLException
+    {
+        checkOpen();
+        entry.setTypeMap(map);
+    }
+    
+    @Override
+    public Statement createStatement()
+        throws SQLException
+    {
+        return track(new PooledStatement(super.createStatement(),this));
+    }
+    
+    @Override
+    public Statement createStatement(int resultSetType,int resultSetConcurrency)
+        throws SQLException
+    {
+        return track(new PooledStatement(super.createStatement(resultSetType,resultSetConcurrency),this));
+    }
+    
+    @Override
+    public Statement createStatement(int resultSetType,int resultSetConcurrency,int resultSetHoldability)
+        throws SQLException
+    {
+        return track(new PooledStatement(super.createStatement(resultSetType,resultSetConcurrency,resultSetHoldability),this));
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql)
+        throws SQLException
+    {
+        return track(new PooledPreparedStatement(super.prepareStatement(sql),this));
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int autoGeneratedKeys)
+        throws SQLException
+    {
+        return track(new PooledPreparedStatement(super.prepareStatement(sql,autoGeneratedKeys),this));
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int[] columnIndexes)
+        throws SQLException
+    {
+        return track(new PooledPreparedStatement(super.prepareStatement(sql,columnIndexes),this));
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,String[] columnNames)
+        throws SQLException
+    {
+        return track(new PooledPreparedStatement(super.prepareStatement(sql,columnNames),this));
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int resultSetType,int resultSetConcurrency)
+        throws SQLException
+    {
+        return track(new PooledPreparedStatement(super.prepareStatement(sql,resultSetType,resultSetConcurrency),this));
+    }
+    
+    @Override
+    public PreparedStatement prepareStatement(String sql,int resultSetType,int resultSetConcurrency,int resultSetHoldability)
+        throws SQLException
+    {
+        return track(new PooledPreparedStatement(super.prepareStatement(sql,resultSetType,resultSetConcurrency,resultSetHoldability),this));
+    }
+    
+    @Override
+    public CallableStatement prepareCall(String sql)
+        throws SQLException
+    {
+        return track(new PooledCallableStatement(super.prepareCall(sql),this));
+    }
+    
+    @Override
+    public CallableStatement prepareCall(String sql,int resultSetType,int resultSetConcurrency)
+        throws SQLException
+    {
+        return track(new PooledCallableStatement(super.prepareCall(sql,resultSetType,resultSetConcurrency),this));
+    }
+    
+    @Override
+    public CallableStatement prepareCall(String sql,int resultSetType,int resultSetConcurrency,int resultSetHoldability)
+        throws SQLException
+    {
+        return track(new PooledCallableStatement(super.prepareCall(sql,resultSetType,resultSetConcurrency,resultSetHoldability),this));
+    }
+    
+    @Override
+    public DatabaseMetaData getMetaData()
+        throws SQLException
+    {
+        return new PooledMetaData(super.getMetaData(),this);
+    }
+    
+    private <T extends Statement> T track(T statement){
+        statements.add(statement);
+        return statement;
+    }
+    
+    private void checkOpen()
+        throws SQLException
+    {
+        if (closed.get()) throw new SQLException("Connection is closed","08003");
+    }
+    
+    // The wraps below pass all calls straight through, except getConnection, and close for the statements
+    
+    private static final class PooledStatement extends StatementWrap {
+        private final PooledConnection connection;
+        PooledStatement(Statement wrapped,PooledConnection connection){
+            super(wrapped,PassThruStep::instance,Set.of());
+            this.connection=connection;
+        }
+        @Override
+        public Connection getConnection(){return connection;}
+        @Override
+        public void close()
+            throws SQLException
+        {
+            connection.statements.remove(this);
+            super.close();
+        }
+    }
+    
+    private static final class PooledPreparedStatement extends PreparedStatementWrap {
+        private final PooledConnection connection;
+        PooledPreparedStatement(PreparedStatement wrapped,PooledConnection connection){
+            super(wrapped,PassThruStep::instance,Set.of());
+            this.connection=connection;
+        }
+        @Override
+        public Connection getConnection(){return connection;}
+        @Override
+        public void close()
+            throws SQLException
+        {
+            connection.statements.remove(this);
+            super.close();
+        }
+    }
+    
+    private static final class PooledCallableStatement extends CallableStatementWrap {
+        private final PooledConnection connection;
+        PooledCallableStatement(CallableStatement wrapped,PooledConnection connection){
+            super(wrapped,PassThruStep::instance,Set.of());
+            this.connection=connection;
+        }
+        @Override
+        public Connection getConnection(){return connection;}
+        @Override
+        public void close()
+            throws SQLException
+        {
+            connection.statements.remove(this);
+            super.close();
+        }
+    }
+    
+    private static final class PooledMetaData extends DatabaseMetaDataWrap {
+        private final Connection connection;
+        PooledMetaData(DatabaseMetaData wrapped,Connection connection){
+            super(wrapped,PassThruStep::instance,Set.of());
+            this.connection=connection;
+        }
+        @Override
+        public Connection getConnection(){return connection;}
+    }
+}
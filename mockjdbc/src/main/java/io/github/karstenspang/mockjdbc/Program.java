@@ -9,6 +9,8 @@ import java.util.function.Supplier;
  * in order from a list passed to the constructor.
  * If the list is exhausted, {@link PassThruStep}s
  * are returned by {@link #get}.
+ * A program is not thread safe. Use {@link ConcurrentProgram}
+ * if several threads get steps from the same program.
  */
 public class Program implements Supplier<Step> {
     private final Iterable<Step> steps;
@@ -0,0 +1,266 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Compiles programs written in a small language into {@link StepSequence}s.
+ * A program is a comma separated list of items, each of which is one of
+ * <dl>
+ *  <dt>{@code pass}</dt>
+ *  <dd>{@link PassThruStep}</dd>
+ *  <dt>{@code fail(}<i>sqlstate</i>{@code )}<br>
+ *      {@code fail(}<i>sqlstate</i>{@code ,}<i>code</i>{@code )}<br>
+ *      {@code fail(}<i>sqlstate</i>{@code ,}<i>code</i>{@code ,'}<i>message</i>{@code ')}</dt>
+ *  <dd>An {@link ExceptionStep} throwing {@link SQLException}s without a stack trace,
+ *      with the given SQLState, vendor code (default 0), and message
+ *      (default {@value #defaultMessage}).</dd>
+ *  <dt>{@code delay(}<i>duration</i>{@code )}<br>
+ *      {@code delay(}<i>min</i>{@code ,}<i>max</i>{@code )}</dt>
+ *  <dd>A {@link LatencyStep} delaying the call by the duration, or by a uniformly
+ *      distributed duration. A duration is a number followed by a unit,
+ *      {@code ns}, {@code us}, {@code ms}, {@code s}, or {@code m}.</dd>
+ *  <dt>{@code (}<i>program</i>{@code )}</dt>
+ *  <dd>A group, to be repeated as a whole.</dd>
+ * </dl>
+ * An item followed by {@code *}<i>n</i> is repeated <i>n</i> times, and an item followed
+ * by {@code *} alone is repeated forever. Spaces are ignored, and so is text
+ * from {@code #} to the end of the line, outside messages. For example:
+ *<pre>
+ *pass*3, fail(08001,12520), delay(50ms), pass*
+ *</pre>
+ * The compiled programs and their steps are cached by their source text, so compiling
+ * the same text again returns the same {@link StepSequence}, without parsing it.
+ * Equal steps, such as {@code fail(08001)} appearing in several programs, are the same
+ * instance. The programs can be passed to {@link MockDriver#setProgram},
+ * {@link ConcurrentProgram}, etc., and used in URL's, see {@link MockDriver}.
+ */
+public final class ProgramCompiler {
+    /** The message of exceptions of {@code fail} without a message */
+    public static final String defaultMessage="Simulated failure";
+    
+    // Limit on the number of programs and steps cached
+    private static final int cacheLimit=1000;
+    private static final Map<String,StepSequence> programs=new ConcurrentHashMap<>();
+    private static final Map<String,Step> steps=new ConcurrentHashMap<>();
+    
+    private ProgramCompiler(){}
+    
+    /**
+     * Compile a program
+     * @param source The text of the program.
+     * @return the program.
+     * @throws IllegalArgumentException if {@code source} is not a valid program.
+     */
+    public static StepSequence compile(String source){
+        StepSequence program=programs.get(source);
+        if (program!=null) return program;
+        program=new Parser(source).parse();
+        if (programs.size()<cacheLimit) programs.put(source,program);
+        return program;
+    }
+    
+    /**
+     * Load and compile a program from a file
+     * @param file The file, encoded as UTF-8.
+     * @return the program.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if the file does not contain a valid program.
+     */
+    public static StepSequence load(Path file)
+        throws IOException
+    {
+        return compile(Files.readString(file,StandardCharsets.UTF_8));
+    }
+    
+    private static Step step(String key,Supplier<Step> creator){
+        Step step=steps.get(key);
+        if (step!=null) return step;
+        step=creator.get();
+        if (steps.size()<cacheLimit){
+            Step existing=steps.putIfAbsent(key,step);
+            if (existing!=null) step=existing;
+        }
+        return step;
+    }
+    
+    private static final class Parser {
+        private final String source;
+        private int pos;
+        
+        Parser(String source){
+            this.source=source;
+            pos=0;
+        }
+        
+        StepSequence parse(){
+            skipSpace();
+            if (pos==source.length()) return StepSequence.of();
+            StepSequence program=sequence();
+            if (pos<source.length()) throw error("Unexpected '"+source.charAt(pos)+"'");
+            return program;
+        }
+        
+        private StepSequence sequence(){
+            List<StepSequence> items=new ArrayList<>();
+            items.add(item());
+            while (accept(',')) items.add(item());
+            return StepSequence.concat(items.toArray(new StepSequence[0]));
+        }
+        
+        private StepSequence item(){
+            StepSequence atom=atom();
+            if (!accept('*')) return atom;
+            if (!Character.isDigit(peek())) return StepSequence.cycle(atom);
+            return StepSequence.repeat(atom,number());
+        }
+        
+        private StepSequence atom(){
+            if (accept('(')){
+                StepSequence group=sequence();
+                expect(')');
+                return group;
+            }
+            String word=word();
+            switch (word){
+            case "pass":
+                return StepSequence.of(PassThruStep.instance());
+            case "fail":
+                return StepSequence.of(fail());
+            case "delay":
+                return StepSequence.of(delay());
+            default:
+                throw error("Unknown step '"+word+"'");
+            }
+        }
+        
+        private Step fail(){
+            expect('(');
+            String sqlState=token();
+            int code=0;
+            String message=defaultMessage;
+            if (accept(',')){
+                long number=number();
+                if (number>Integer.MAX_VALUE) throw error("Vendor code too large");
+                code=(int)number;
+                if (accept(',')) message=quoted();
+            }
+            expect(')');
+            final int vendorCode=code;
+            final String reason=message;
+            return step("fail("+sqlState+","+code+","+message+")",()->ExceptionStep.stackless(reason,sqlState,vendorCode));
+        }
+        
+        private Step delay(){
+            expect('(');
+            Duration min=duration();
+            Duration max=accept(',')?duration():min;
+            expect(')');
+            if (min.compareTo(max)>0) throw error("Minimum delay is greater than maximum");
+            return step("delay("+min+","+max+")",()->new LatencyStep(
+                min.equals(max)?Latency.fixed(min):Latency.uniform(min,max)));
+        }
+        
+        private Duration duration(){
+            long amount=number();
+            String unit=word();
+            try{
+                switch (unit){
+                case "ns": return Duration.of(amount,ChronoUnit.NANOS);
+                case "us": return Duration.of(amount,ChronoUnit.MICROS);
+                case "ms": return Duration.ofMillis(amount);
+                case "s": return Duration.ofSeconds(amount);
+                case "m": return Duration.ofMinutes(amount);
+                default: throw error("Unknown time unit '"+unit+"'");
+                }
+            }
+            catch(ArithmeticException e){
+                throw error("Duration too large");
+            }
+        }
+        
+        private long number(){
+            skipSpace();
+            int start=pos;
+            while (pos<source.length()&&Character.isDigit(source.charAt(pos))) pos++;
+            if (start==pos) throw error("Number expected");
+            try{
+                return Long.parseLong(source.substring(start,pos));
+            }
+            catch(NumberFormatException e){
+                throw error("Number too large");
+            }
+        }
+        
+        private String word(){
+            skipSpace();
+            int start=pos;
+            while (pos<source.length()&&Character.isLetter(source.charAt(pos))) pos++;
+            if (start==pos) throw error("Name expected");
+            return source.substring(start,pos);
+        }
+        
+        // Letters and digits, such as an SQLState
+        private String token(){
+            skipSpace();
+            int start=pos;
+            while (pos<source.length()&&Character.isLetterOrDigit(source.charAt(pos))) pos++;
+            if (start==pos) throw error("SQLState expected");
+            return source.substring(start,pos);
+        }
+        
+        private String quoted(){
+            expect('\'');
+            int end=source.indexOf('\'',pos);
+            if (end<0) throw error("Unterminated message");
+            String text=source.substring(pos,end);
+            pos=end+1;
+            return text;
+        }
+        
+        private char peek(){
+            skipSpace();
+            return pos<source.length()?source.charAt(pos):'\0';
+        }
+        
+        private boolean accept(char c){
+            if (peek()!=c) return false;
+            pos++;
+            return true;
+        }
+        
+        private void expect(char c){
+            if (!accept(c)) throw error("'"+c+"' expected");
+        }
+        
+        // Skip spaces and comments
+        private void skipSpace(){
+            while (pos<source.length()){
+                char c=source.charAt(pos);
+                if (c=='#'){
+                    while (pos<source.length()&&source.charAt(pos)!='\n') pos++;
+                }
+                else if (Character.isWhitespace(c)){
+                    pos++;
+                }
+                else{
+                    break;
+                }
+            }
+        }
+        
+        private IllegalArgumentException error(String message){
+            return new IllegalArgumentException(message+" at position "+pos+" in program: "+source);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * The step supplier bound by {@link MockDriver#callWith} and {@link MockDriver#runWith}.
+ * This version keeps the binding in a {@link ThreadLocal} that is not inherited.
+ * On Java 25 and later, the multi-release jar has a version using a
+ * {@link java.lang.ScopedValue} instead, which is also seen by subtasks
+ * forked in a {@code StructuredTaskScope}.
+ */
+final class ProgramScope {
+    private static final ThreadLocal<Supplier<Step>> current=new ThreadLocal<>();
+    
+    private ProgramScope(){}
+    
+    /**
+     * Get the bound step supplier
+     * @return the step supplier bound in the current thread, or {@code null} if none is.
+     */
+    static Supplier<Step> current(){
+        return current.get();
+    }
+    
+    /**
+     * Call {@code body} with {@code stepSupplier} bound.
+     * @param <T> The type of result.
+     * @param stepSupplier The step supplier to bind.
+     * @param body The code to call.
+     * @return the result of {@code body}.
+     * @throws SQLException if {@code body} does.
+     */
+    static <T> T call(Supplier<Step> stepSupplier,SQLSupplier<? extends T> body)
+        throws SQLException
+    {
+        Supplier<Step> previous=current.get();
+        current.set(stepSupplier);
+        try{
+            return body.get();
+        }
+        finally{
+            if (previous==null) current.remove();
+            else current.set(previous);
+        }
+    }
+}
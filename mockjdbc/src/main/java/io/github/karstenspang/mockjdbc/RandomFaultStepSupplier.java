@@ -0,0 +1,147 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Supplier of steps that fail a fraction of the calls at random.
+ * Each kind of fault has a probability, and a step to use for it, typically
+ * throwing an exception with a SQLState specific to the fault. For example,
+ * to fail 1% of the calls with a connection failure, and 0.1% with a deadlock:
+ *<pre>
+ *new RandomFaultStepSupplier(42L,List.of(
+ *    RandomFaultStepSupplier.Fault.of(0.01,"Connection reset","08006"),
+ *    RandomFaultStepSupplier.Fault.of(0.001,"Deadlock detected","40P01")));
+ *</pre>
+ * The other calls get a {@link PassThruStep}.
+ * The supplier can be passed to {@link MockDriver#setStepSupplier} and the
+ * constructors of the wraps.<p>
+ * The random numbers are drawn from a {@link SplittableRandom} per thread, split off
+ * from one created with the seed, so threads do not contend for the random numbers.
+ * The sequence of faults seen by a thread is determined by the seed and the number of
+ * threads that used the supplier before it. In particular, a single thread
+ * sees the same faults every time for the same seed.
+ */
+public class RandomFaultStepSupplier implements Supplier<Step> {
+    private final long seed;
+    private final List<Fault> faults;
+    private final Step[] steps;
+    // Upper limit of the random number for each fault
+    private final double[] limits;
+    private final SplittableRandom root;
+    private final ThreadLocal<SplittableRandom> random;
+    
+    /**
+     * A kind of fault, with its probability.
+     */
+    public static final class Fault {
+        private final double probability;
+        private final Step step;
+    
+        /**
+         * Create a fault
+         * @param probability The probability that a call gets this fault.
+         * @param step The step to apply for the fault.
+         * @throws IllegalArgumentException if {@code probability} is not between 0 and 1.
+         * @throws NullPointerException if {@code step} is {@code null}.
+         */
+        public Fault(double probability,Step step){
+            if (!(probability>=0.0&&probability<=1.0)) throw new IllegalArgumentException("probability must be between 0 and 1: "+probability);
+            this.probability=probability;
+            this.step=Objects.requireNonNull(step,"step is null");
+        }
+    
+        /**
+         * Create a fault throwing exceptions without a stack trace, a new one for each call.
+         * See {@link ExceptionStep#stackless(String,String)}.
+         * @param probability The probability that a call gets this fault.
+         * @param reason The description of the exception.
+         * @param sqlState The SQLState of the exception.
+         * @return the fault
+         * @throws IllegalArgumentException if {@code probability} is not between 0 and 1.
+         */
+        public static Fault of(double probability,String reason,String sqlState){
+            return new Fault(probability,ExceptionStep.stackless(reason,sqlState));
+        }
+    
+        /**
+         * Get the probability
+         * @return the probability that a call gets this fault.
+         */
+        public double probability(){return probability;}
+    
+        /**
+         * Get the step
+         * @return the step to apply for the fault.
+         */
+        public Step step(){return step;}
+    
+        /**
+         * Get the string representation
+         * @return the probability and the step.
+         */
+        @Override
+        public String toString(){
+            return probability+":"+step;
+        }
+    }
+    
+    /**
+     * Create the supplier
+     * @param seed The seed of the random numbers.
+     * @param faults The kinds of faults.
+     * @throws NullPointerException if {@code faults} is or contains {@code null}.
+     * @throws IllegalArgumentException if the sum of the probabilities exceeds 1.
+     */
+    public RandomFaultStepSupplier(long seed,List<Fault> faults){
+        this.seed=seed;
+        this.faults=List.copyOf(Objects.requireNonNull(faults,"faults is null"));
+        steps=new Step[this.faults.size()];
+        limits=new double[this.faults.size()];
+        double limit=0.0;
+        for (int i=0;i<steps.length;i++){
+            Fault fault=this.faults.get(i);
+            limit+=fault.probability;
+            steps[i]=fault.step;
+            limits[i]=limit;
+        }
+        // Allow for rounding
+        if (limit>1.0+1e-9) throw new IllegalArgumentException("The sum of the probabilities exceeds 1: "+limit);
+        root=new SplittableRandom(seed);
+        random=ThreadLocal.withInitial(this::split);
+    }
+    
+    /**
+     * Get the next step
+     * @return the step of a fault, with the probability of the fault,
+     *         otherwise {@link PassThruStep}.
+     */
+    @Override
+    public Step get(){
+        double r=random.get().nextDouble();
+        for (int i=0;i<limits.length;i++){
+            if (r<limits[i]) return steps[i];
+        }
+        return PassThruStep.instance();
+    }
+    
+    /**
+     * Get the string representation
+     * @return the seed and the faults.
+     */
+    @Override
+    public String toString(){
+        return "RandomFaultStepSupplier[seed="+seed+",faults="+
+            faults.stream().map(Fault::toString).collect(Collectors.joining(",","[","]"))+"]";
+    }
+    
+    // SplittableRandom is not thread safe, so splitting is synchronized.
+    private SplittableRandom split(){
+        synchronized (root){
+            return root.split();
+        }
+    }
+}
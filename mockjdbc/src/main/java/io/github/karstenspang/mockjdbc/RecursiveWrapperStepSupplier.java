@@ -1,10 +1,12 @@
 package io.github.karstenspang.mockjdbc;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -16,33 +18,78 @@ import java.util.stream.Collectors;
  * that all calls will be logged with level {@link Level#FINEST}, corresponding
  * to {@code TRACE} in most logging backends. If you configure your backend to
  * log {@code io.github.karstenspang.mockjdbc} at trace level, you will get a
- * complete log of all JDBC calls, including arguments and returned results.
+ * complete log of all JDBC calls, including arguments and returned results.<p>
+ * Vendor specific interfaces, such as {@code org.postgresql.PGConnection},
+ * can be included using {@link #with(Class[])}.
+ * Use {@link #canonicalizing()} to get the same wrap for the same object.
  */
 public class RecursiveWrapperStepSupplier implements Supplier<Step> {
-    private static final RecursiveWrapperStepSupplier instance=new RecursiveWrapperStepSupplier();
-    private static final RecursiveWrapperStep stepInstance=new RecursiveWrapperStep();
+    private static final Logger logger=Logger.getLogger(RecursiveWrapperStepSupplier.class.getName());
+    private final List<Class<?>> vendorInterfaces;
+    private final RecursiveWrapperStep step;
+    private final boolean canonical;
+    private final ClassValue<Wrapper<Object>> wrappers;
     
     /**
      * Get the instance
-     * @return (the only) instance
+     * @return (the only) instance without vendor interfaces
      */
     public static RecursiveWrapperStepSupplier instance(){return instance;}
     
+    /**
+     * Get a supplier that also wraps vendor interfaces.
+     * Results implementing any of the vendor interfaces are wrapped with a
+     * wrap from {@link RuntimeWrapGenerator}, implementing the vendor interfaces
+     * as well as the {@link java.sql} interface of the result, if any. This keeps
+     * calls such as {@code conn.unwrap(PGConnection.class)} in the wrapped world.
+     * Without a Java compiler, as on a JRE, a warning is logged, and the results
+     * are wrapped as if there were no vendor interfaces.
+     * @param vendorInterfaces The vendor interfaces to wrap, e.g. {@code PGConnection.class}.
+     * @return A new supplier.
+     * @throws IllegalArgumentException if any of {@code vendorInterfaces} is not an interface.
+     */
+    public static RecursiveWrapperStepSupplier with(Class<?>... vendorInterfaces){
+        for (Class<?> vendorInterface:vendorInterfaces){
+            if (!vendorInterface.isInterface()) throw new IllegalArgumentException(vendorInterface.getName()+" is not an interface");
+        }
+        return new RecursiveWrapperStepSupplier(List.of(vendorInterfaces),false);
+    }
+    
+    /**
+     * Get a supplier that wraps the same results as this one, but returns the
+     * same wrap when the same object is returned again.
+     * For example, {@code stmt.getConnection()} will then return the wrap of the
+     * connection that created the statement, and {@code conn.getMetaData()} returns
+     * the same wrap every time, as long as the driver returns the same object.
+     * See {@link CanonicalWrapper}.
+     * @return A new supplier, or this supplier if it already canonicalizes.
+     */
+    public RecursiveWrapperStepSupplier canonicalizing(){
+        if (canonical) return this;
+        return new RecursiveWrapperStepSupplier(vendorInterfaces,true);
+    }
+    
     /**
      * Get the step
-     * @return (the only) step instance
+     * @return the step instance of this supplier
      */
     @Override
-    public Step get(){return stepInstance;}
+    public Step get(){return step;}
     
     /**
      * Get the string representation
      * @return the string representation
      */
     @Override
-    public String toString(){return "RecursiveWrapperStepSupplier";}
+    public String toString(){
+        String name=canonical?"CanonicalRecursiveWrapperStepSupplier":"RecursiveWrapperStepSupplier";
+        if (vendorInterfaces.isEmpty()) return name;
+        return name+vendorInterfaces.stream().map(Class::getSimpleName).collect(Collectors.toList());
+    }
     
-    // Important that CallableStatement, PreparedStatement, and Statement come in that order. The same applies to NClob and Clob.
+    // Important that CallableStatement, PreparedStatement, and Statement come in that order. The same applies to NClob and Clob,
+    // XAConnection and PooledConnection, and the data sources and CommonDataSource. DataSource comes first of the data sources,
+    // as that is the one a data source implementing more than one of them is most likely to be used as.
     private static final ClassWrapper<?>[] classWrappers={
         new ClassWrapper<java.sql.Array            >(java.sql.Array.class            ,io.github.karstenspang.mockjdbc.wrap.ArrayWrap::new            ),
         new ClassWrapper<java.sql.Blob             >(java.sql.Blob.class             ,io.github.karstenspang.mockjdbc.wrap.BlobWrap::new             ),
@@ -64,9 +111,19 @@ public class RecursiveWrapperStepSupplier implements Supplier<Step> {
         new ClassWrapper<java.sql.SQLType          >(java.sql.SQLType.class          ,io.github.karstenspang.mockjdbc.wrap.SQLTypeWrap::new          ),
         new ClassWrapper<java.sql.SQLXML           >(java.sql.SQLXML.class           ,io.github.karstenspang.mockjdbc.wrap.SQLXMLWrap::new           ),
         new ClassWrapper<java.sql.Statement        >(java.sql.Statement.class        ,io.github.karstenspang.mockjdbc.wrap.StatementWrap::new        ),
-        new ClassWrapper<java.sql.Struct           >(java.sql.Struct.class           ,io.github.karstenspang.mockjdbc.wrap.StructWrap::new           )
+        new ClassWrapper<java.sql.Struct           >(java.sql.Struct.class           ,io.github.karstenspang.mockjdbc.wrap.StructWrap::new           ),
+        new ClassWrapper<javax.sql.DataSource              >(javax.sql.DataSource.class              ,io.github.karstenspang.mockjdbc.wrap.DataSourceWrap::new              ),
+        new ClassWrapper<javax.sql.ConnectionPoolDataSource>(javax.sql.ConnectionPoolDataSource.class,io.github.karstenspang.mockjdbc.wrap.ConnectionPoolDataSourceWrap::new),
+        new ClassWrapper<javax.sql.XADataSource            >(javax.sql.XADataSource.class            ,io.github.karstenspang.mockjdbc.wrap.XADataSourceWrap::new            ),
+        new ClassWrapper<javax.sql.CommonDataSource        >(javax.sql.CommonDataSource.class        ,io.github.karstenspang.mockjdbc.wrap.CommonDataSourceWrap::new        ),
+        new ClassWrapper<javax.sql.XAConnection            >(javax.sql.XAConnection.class            ,io.github.karstenspang.mockjdbc.wrap.XAConnectionWrap::new            ),
+        new ClassWrapper<javax.sql.PooledConnection        >(javax.sql.PooledConnection.class        ,io.github.karstenspang.mockjdbc.wrap.PooledConnectionWrap::new        )
     };
     
+    // In the order of classWrappers
+    private static final Class<?>[] dataSourceInterfaces={
+        javax.sql.DataSource.class,javax.sql.ConnectionPoolDataSource.class,javax.sql.XADataSource.class};
+    
     private static class ClassWrapper<T> {
         private final Class<T> clazz;
         private final Wrapper<T> wrapper;
@@ -75,39 +132,104 @@ public class RecursiveWrapperStepSupplier implements Supplier<Step> {
             this.clazz=clazz;
             this.wrapper=wrapper;
         }
-        public T wrapIfMatch(Object o){
-            T wrapped;
-            try{
-                wrapped=clazz.cast(o);
+        // Only called for objects known to be instances of clazz
+        public Wrapper<Object> forObjects(){
+            return (o,stepSupplier)->wrapper.wrap(clazz.cast(o),stepSupplier);
+        }
+    }
+    
+    // The wrapper of the first interface in classWrappers implemented by the class,
+    // or null if it implements none of them. A data source implementing more than one of
+    // the data source interfaces gets a wrap implementing all of them, if a compiler is available.
+    private static final ClassValue<Wrapper<Object>> sqlWrappers=new ClassValue<>(){
+        @Override
+        protected Wrapper<Object> computeValue(Class<?> type){
+            List<Class<?>> implemented=Arrays.stream(dataSourceInterfaces).filter(iface->iface.isAssignableFrom(type)).collect(Collectors.toList());
+            if (implemented.size()>1){
+                try{
+                    return RuntimeWrapGenerator.wrapper(implemented);
+                }
+                catch(UnsupportedOperationException e){
+                    logger.warning("Cannot wrap all the data source interfaces of "+type.getName()+": "+e.getMessage());
+                }
             }
-            catch(ClassCastException e){
-                return null;
+            for (ClassWrapper<?> classWrapper:classWrappers){
+                if (classWrapper.clazz.isAssignableFrom(type)) return classWrapper.forObjects();
             }
-            return wrapper.wrap(wrapped,instance);
+            return null;
         }
-    }
+    };
     
-    private static class RecursiveWrapperStep extends PassThruStep {
+    // Must come after sqlWrappers, which the constructor uses
+    private static final RecursiveWrapperStepSupplier instance=new RecursiveWrapperStepSupplier(List.of(),false);
+    
+    private class RecursiveWrapperStep extends PassThruStep {
         @Override
         public <T> T apply(SQLSupplier<? extends T> method)
             throws SQLException
         {
             T result=method.get();
             if (result==null) return null;
-            for (ClassWrapper<?> classWrapper:classWrappers){
-                @SuppressWarnings("unchecked")
-                T wrap=(T)classWrapper.wrapIfMatch(result);
-                if (wrap!=null) return wrap;
-            }
-            return result;
+            Wrapper<Object> wrapper=wrappers.get(result.getClass());
+            if (wrapper==null) return result;
+            @SuppressWarnings("unchecked")
+            T wrap=(T)wrapper.wrap(result,RecursiveWrapperStepSupplier.this);
+            return wrap;
         }
         @Override
         public String toString(){return "RecursiveWrapperStep";}
     }
     
-    private RecursiveWrapperStepSupplier(){}
+    private RecursiveWrapperStepSupplier(List<Class<?>> vendorInterfaces,boolean canonical){
+        this.vendorInterfaces=vendorInterfaces;
+        this.canonical=canonical;
+        step=new RecursiveWrapperStep();
+        ClassValue<Wrapper<Object>> plainWrappers=vendorInterfaces.isEmpty()?sqlWrappers:vendorWrappers(vendorInterfaces);
+        if (!canonical){
+            wrappers=plainWrappers;
+            return;
+        }
+        wrappers=new ClassValue<>(){
+            // Each class gets its own canonicalizing wrapper
+            @Override
+            protected Wrapper<Object> computeValue(Class<?> type){
+                Wrapper<Object> wrapper=plainWrappers.get(type);
+                return wrapper==null?null:new CanonicalWrapper<>(wrapper);
+            }
+        };
+    }
+    
+    // The runtime wrapper for the vendor interfaces implemented by the class,
+    // together with its java.sql interface, if it implements any of them.
+    // Otherwise the java.sql wrapper, if any.
+    private static ClassValue<Wrapper<Object>> vendorWrappers(List<Class<?>> vendorInterfaces){
+        return new ClassValue<>(){
+            @Override
+            protected Wrapper<Object> computeValue(Class<?> type){
+                List<Class<?>> interfaces=new ArrayList<>();
+                for (Class<?> vendorInterface:vendorInterfaces){
+                    if (vendorInterface.isAssignableFrom(type)) interfaces.add(vendorInterface);
+                }
+                if (interfaces.isEmpty()) return sqlWrappers.get(type);
+                for (ClassWrapper<?> classWrapper:classWrappers){
+                    if (classWrapper.clazz.isAssignableFrom(type)){
+                        if (interfaces.stream().noneMatch(classWrapper.clazz::isAssignableFrom)) interfaces.add(0,classWrapper.clazz);
+                        break;
+                    }
+                }
+                try{
+                    return RuntimeWrapGenerator.wrapper(interfaces);
+                }
+                catch(UnsupportedOperationException e){
+                    // No compiler, e.g. on a JRE. The calls are still wrapped, without the vendor interfaces.
+                    logger.warning("Cannot wrap vendor interfaces of "+type.getName()+": "+e.getMessage());
+                    return sqlWrappers.get(type);
+                }
+            }
+        };
+    }
     
-    // For test purposes
+    // In priority order, more specific interfaces first
     static List<Class<?>> wrappedInterfaces(){
         return Arrays.stream(classWrappers).map(w->w.clazz).collect(Collectors.toList());
     }
@@ -0,0 +1,364 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Step supplier that retries calls failing with transient exceptions, like a driver
+ * with built-in retry. Each attempt gets its step from another supplier, so the
+ * retries use up steps from the program, just as real retries meet the failures
+ * of the database. For example, to retry connections failing with
+ * ORA-12520 up to 5 times:
+ *<pre>
+ *MockDriver.setStepSupplier(new RetryingStepSupplier(
+ *    new ConcurrentProgram(program),
+ *    RetryingStepSupplier.retryOn(Set.of(),Set.of(12520)),
+ *    5,Duration.ofMillis(10),Duration.ofSeconds(1)));
+ *</pre>
+ * The supplier can also be given to the wraps, to retry statements etc.<p>
+ * Between the attempts, the thread waits for a random time between 0 and
+ * {@code baseDelay} times 2 to the power of the number of retries so far, but at most
+ * {@code maxDelay}. If the thread is interrupted while waiting, the last exception is
+ * thrown, and the interrupt status is kept.<p>
+ * The supplier counts the calls, the number of calls by the number of retries they needed,
+ * up to {@value #countedRetries} retries, the calls that failed after all the retries,
+ * and the time spent waiting between attempts. A call ending with a {@link RuntimeException}
+ * is counted, but not retried.
+ * The supplier is thread safe if the supplier of the attempts is.
+ */
+public class RetryingStepSupplier implements MethodStepSupplier {
+    /** The largest number of retries with a separate count in {@link #calls(int)} */
+    public static final int countedRetries=100;
+    
+    private final Supplier<Step> stepSupplier;
+    private final MethodStepSupplier methodStepSupplier;
+    private final Predicate<? super SQLException> retryable;
+    private final int maxRetries;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Step step;
+    // Element i counts the calls that returned or threw after i retries, up to countedRetries
+    private final LongAdder[] callsByRetries;
+    // The calls with more retries, and their total retries
+    private final LongAdder uncountedCalls=new LongAdder();
+    private final LongAdder uncountedRetries=new LongAdder();
+    private final LongAdder exhausted=new LongAdder();
+    private final LongAdder waitNanos=new LongAdder();
+    
+    /**
+     * Create the supplier
+     * @param stepSupplier The supplier of the steps of the attempts.
+     *        If it is a {@link MethodStepSupplier}, it is passed the method and arguments.
+     * @param retryable Whether an exception is transient, so the call is retried.
+     * @param maxRetries The maximum number of retries of a call.
+     * @param baseDelay The delay before the first retry is random up to this.
+     * @param maxDelay The largest delay between attempts.
+     * @throws NullPointerException if an argument is {@code null}.
+     * @throws IllegalArgumentException if {@code maxRetries} or a delay is negative.
+     */
+    public RetryingStepSupplier(Supplier<Step> stepSupplier,Predicate<? super SQLException> retryable,int maxRetries,Duration baseDelay,Duration maxDelay){
+        this.stepSupplier=Objects.requireNonNull(stepSupplier,"stepSupplier is null");
+        this.retryable=Objects.requireNonNull(retryable,"retryable is null");
+        if (maxRetries<0) throw new IllegalArgumentException("maxRetries is negative: "+maxRetries);
+        this.maxRetries=maxRetries;
+        this.baseDelay=nanos(baseDelay,"baseDelay");
+        this.maxDelay=nanos(maxDelay,"maxDelay");
+        methodStepSupplier=stepSupplier instanceof MethodStepSupplier?(MethodStepSupplier)stepSupplier:null;
+        step=methodStepSupplier==null?new RetryStep(null,null):null;
+        callsByRetries=new LongAdder[Math.min(maxRetries,countedRetries)+1];
+        for (int i=0;i<callsByRetries.length;i++) callsByRetries[i]=new LongAdder();
+    }
+    
+    /**
+     * Get a predicate for transient exceptions.
+     * An exception is transient if it is an {@link SQLTransientException}, or
+     * if its SQLState or vendor code is one of the given ones.
+     * @param sqlStates The transient SQLStates.
+     * @param vendorCodes The transient vendor codes.
+     * @return the predicate.
+     * @throws NullPointerException if an argument is or contains {@code null}.
+     */
+    public static Predicate<SQLException> retryOn(Set<String> sqlStates,Set<Integer> vendorCodes){
+        Set<String> states=Set.copyOf(sqlStates);
+        Set<Integer> codes=Set.copyOf(vendorCodes);
+        return e->e instanceof SQLTransientException||
+            (e.getSQLState()!=null&&states.contains(e.getSQLState()))||
+            codes.contains(e.getErrorCode());
+    }
+    
+    /**
+     * Get a step retrying the calls.
+     * @return a step getting the step of each attempt from the supplier.
+     */
+    @Override
+    public Step get(){
+        return step!=null?step:new RetryStep(null,null);
+    }
+    
+    /**
+     * Get a step retrying a call.
+     * @param method The method called.
+     * @param args The arguments of the call.
+     * @return a step getting the step of each attempt from the supplier.
+     */
+    @Override
+    public Step get(WrapMethod method,Object[] args){
+        return step!=null?step:new RetryStep(method,args);
+    }
+    
+    /**
+     * Get the number of calls
+     * @return the number of calls that have returned or thrown.
+     */
+    public long calls(){
+        long sum=0;
+        for (LongAdder count:callsByRetries) sum+=count.sum();
+        return sum+uncountedCalls.sum();
+    }
+    
+    /**
+     * Get the number of calls by number of retries
+     * @param retries The number of retries.
+     * @return the number of calls that returned or threw after {@code retries} retries,
+     *         or 0 if {@code retries} is greater than {@link #countedRetries}.
+     */
+    public long calls(int retries){
+        return retries>=0&&retries<callsByRetries.length?callsByRetries[retries].sum():0;
+    }
+    
+    /**
+     * Get the number of calls with more retries than counted separately
+     * @return the number of calls that returned or threw after more than {@link #countedRetries} retries.
+     */
+    public long uncountedCalls(){return uncountedCalls.sum();}
+    
+    /**
+     * Get the number of retries
+     * @return the total number of retries of all the calls.
+     */
+    public long retries(){
+        long sum=0;
+        for (int i=1;i<callsByRetries.length;i++) sum+=i*callsByRetries[i].sum();
+        return sum+uncountedRetries.sum();
+    }
+    
+    /**
+     * Get the number of calls that failed with a transient exception
+     * after the maximum number of retries, or when interrupted.
+     * @return the number of calls.
+     */
+    public long exhausted(){return exhausted.sum();}
+    
+    /**
+     * Get the time spent waiting between attempts
+     * @return the total time of all the calls.
+     */
+    public Duration retryTime(){return Duration.ofNanos(waitNanos.sum());}
+    
+    /**
+     * The string represetation of the supplier
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return "RetryingStepSupplier[stepSupplier="+stepSupplier+",maxRetries="+maxRetries+"]";
+    }
+    
+    // Count a call that has ended
+    private void done(int retries){
+        if (retries<callsByRetries.length){
+            callsByRetries[retries].increment();
+        }
+        else{
+            uncountedCalls.increment();
+            uncountedRetries.add(retries);
+        }
+    }
+    
+    // Wait before the next attempt, or throw e if the call is not to be retried
+    private void retryOrThrow(SQLException e,int retries)
+        throws SQLException
+    {
+        if (!retryable.test(e)){
+            done(retries);
+            throw e;
+        }
+        if (retries>=maxRetries){
+            done(retries);
+            exhausted.increment();
+            throw e;
+        }
+        long limit=retries<63&&baseDelay<=(maxDelay>>>retries)?baseDelay<<retries:maxDelay;
+        long delay=limit==0?0:ThreadLocalRandom.current().nextLong(limit);
+        long start=System.nanoTime();
+        Thread thread=Thread.currentThread();
+        long remaining;
+        // Not start+delay as a deadline, which overflows for delays near Long.MAX_VALUE
+        while ((remaining=delay-(System.nanoTime()-start))>0&&!thread.isInterrupted()){
+            LockSupport.parkNanos(this,remaining);
+        }
+        waitNanos.add(System.nanoTime()-start);
+        if (thread.isInterrupted()){
+            done(retries);
+            exhausted.increment();
+            throw e;
+        }
+    }
+    
+    private static long nanos(Duration duration,String name){
+        Objects.requireNonNull(duration,name+" is null");
+        if (duration.isNegative()) throw new IllegalArgumentException(name+" is negative: "+duration);
+        try{
+            return duration.toNanos();
+        }
+        catch(ArithmeticException e){
+            return Long.MAX_VALUE;
+        }
+    }
+    
+    private class RetryStep implements Step {
+        private final WrapMethod wrapMethod;
+        private final Object[] args;
+        
+        RetryStep(WrapMethod wrapMethod,Object[] args){
+            this.wrapMethod=wrapMethod;
+            this.args=args;
+        }
+        
+        private Step attempt(){
+            if (methodStepSupplier==null) return stepSupplier.get();
+            return wrapMethod==null?methodStepSupplier.get():methodStepSupplier.get(wrapMethod,args);
+        }
+        
+        @Override
+        public <T> T apply(SQLSupplier<? extends T> method)
+            throws SQLException
+        {
+            for (int retries=0;;retries++){
+                try{
+                    T result=attempt().apply(method);
+                    done(retries);
+                    return result;
+                }
+                catch(SQLException e){
+                    retryOrThrow(e,retries);
+                }
+                catch(RuntimeException e){
+                    done(retries);
+                    throw e;
+                }
+            }
+        }
+        
+        @Override
+        public void apply(SQLRunnable method)
+            throws SQLException
+        {
+            for (int retries=0;;retries++){
+                try{
+                    attempt().apply(method);
+                    done(retries);
+                    return;
+                }
+                catch(SQLException e){
+                    retryOrThrow(e,retries);
+                }
+                catch(RuntimeException e){
+                    done(retries);
+                    throw e;
+                }
+            }
+        }
+        
+        @Override
+        public int applyAsInt(SQLIntSupplier method)
+            throws SQLException
+        {
+            for (int retries=0;;retries++){
+                try{
+                    int result=attempt().applyAsInt(method);
+                    done(retries);
+                    return result;
+                }
+                catch(SQLException e){
+                    retryOrThrow(e,retries);
+                }
+                catch(RuntimeException e){
+                    done(retries);
+                    throw e;
+                }
+            }
+        }
+        
+        @Override
+        public long applyAsLong(SQLLongSupplier method)
+            throws SQLException
+        {
+            for (int retries=0;;retries++){
+                try{
+                    long result=attempt().applyAsLong(method);
+                    done(retries);
+                    return result;
+                }
+                catch(SQLException e){
+                    retryOrThrow(e,retries);
+                }
+                catch(RuntimeException e){
+                    done(retries);
+                    throw e;
+                }
+            }
+        }
+        
+        @Override
+        public double applyAsDouble(SQLDoubleSupplier method)
+            throws SQLException
+        {
+            for (int retries=0;;retries++){
+                try{
+                    double result=attempt().applyAsDouble(method);
+                    done(retries);
+                    return result;
+                }
+                catch(SQLException e){
+                    retryOrThrow(e,retries);
+                }
+                catch(RuntimeException e){
+                    done(retries);
+                    throw e;
+                }
+            }
+        }
+        
+        @Override
+        public boolean applyAsBoolean(SQLBooleanSupplier method)
+            throws SQLException
+        {
+            for (int retries=0;;retries++){
+                try{
+                    boolean result=attempt().applyAsBoolean(method);
+                    done(retries);
+                    return result;
+                }
+                catch(SQLException e){
+                    retryOrThrow(e,retries);
+                }
+                catch(RuntimeException e){
+                    done(retries);
+                    throw e;
+                }
+            }
+        }
+        
+        @Override
+        public String toString(){return "RetryStep";}
+    }
+}
@@ -0,0 +1,672 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates wraps at run time for interfaces not known when mockjdbc was built,
+ * typically the extension interfaces of JDBC drivers, such as
+ * {@code org.postgresql.PGConnection}.<p>
+ * The generated wraps work like the ones in {@link io.github.karstenspang.mockjdbc.wrap}:
+ * every method call has a {@link Step} from the step supplier applied, calls are logged
+ * with level {@link java.util.logging.Level#FINEST}, and a {@link MethodStepSupplier}
+ * is passed the method identifier and the arguments. The identifiers of the methods of an
+ * interface are available from {@link #methods(Class)}.
+ * A wrap extends the generated wrap of the most specific interface in {@link java.sql}
+ * that the wrapped interfaces extend, if any, otherwise {@link Wrap}. For example, the
+ * wrap of an {@code OracleConnection} is a
+ * {@link io.github.karstenspang.mockjdbc.wrap.ConnectionWrap}.<p>
+ * The wraps are ordinary Java classes with direct calls to the wrapped object, so there
+ * is no reflection involved in the method calls, as with {@link java.lang.reflect.Proxy}.
+ * The source is compiled with the system Java compiler, so a JDK is required, and the
+ * class is defined by a class loader of its own, with the class loader of mockjdbc as parent.
+ * The compiler reads the classes it needs through the class loader of mockjdbc, not from
+ * the {@code java.class.path} property, so it also works with fat jars and manifest-only jars.
+ * The classes are cached, so this is only done once for each combination of interfaces.
+ * The cache is kept with the interfaces, using a {@link ClassValue}, so neither the cache
+ * nor the wrap classes keep the class loader of a driver from being unloaded.<p>
+ * Restrictions:
+ * <ul>
+ *  <li>The interfaces must be public, and not generic.</li>
+ *  <li>The interfaces must be visible from the class loader of mockjdbc.</li>
+ *  <li>Methods declaring checked exceptions other than {@link SQLException} cannot have
+ *      steps applied, and call the wrapped object directly.</li>
+ * </ul>
+ */
+public final class RuntimeWrapGenerator {
+    private static final Logger logger=Logger.getLogger(RuntimeWrapGenerator.class.getName());
+    private static final String packageName=RuntimeWrapGenerator.class.getPackage().getName();
+    // The wrappers of the combinations of interfaces, kept with the interface seeing the others. See cacheClass.
+    private static final ClassValue<Map<List<Class<?>>,Wrapper<Object>>> wrappers=new ClassValue<>(){
+        @Override
+        protected Map<List<Class<?>>,Wrapper<Object>> computeValue(Class<?> iface){
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final AtomicInteger classCount=new AtomicInteger();
+    private static final Comparator<Method> methodOrder=
+        Comparator.comparing(Method::getName)
+                  .thenComparing(method->Arrays.toString(method.getParameterTypes()));
+    private static final Map<String,String> primitiveApplyMethods=Map.of(
+        "int","applyAsInt",
+        "long","applyAsLong",
+        "double","applyAsDouble",
+        "boolean","applyAsBoolean");
+    private static final ClassValue<WrapMethod[]> methodIds=new ClassValue<>(){
+        @Override
+        protected WrapMethod[] computeValue(Class<?> iface){
+            // Use the generated enums for the interfaces in java.sql
+            if (RecursiveWrapperStepSupplier.wrappedInterfaces().contains(iface)){
+                try{
+                    return (WrapMethod[])Class.forName(packageName+".wrap."+iface.getSimpleName()+"Method").getEnumConstants();
+                }
+                catch(ClassNotFoundException e){
+                    // No methods of its own
+                }
+            }
+            List<Method> methods=declaredMethods(iface);
+            WrapMethod[] ids=new WrapMethod[methods.size()];
+            for (int i=0;i<ids.length;i++){
+                Method method=methods.get(i);
+                ids[i]=new RuntimeWrapMethod(iface,method.getName(),method.getParameterTypes(),i);
+            }
+            return ids;
+        }
+    };
+    
+    private RuntimeWrapGenerator(){}
+    
+    /**
+     * Get a wrapper for an interface.
+     * @param <W> The interface type.
+     * @param iface The interface to wrap.
+     * @return A {@link Wrapper} creating instances of a wrap class implementing {@code iface}.
+     * @throws IllegalArgumentException if {@code iface} cannot be wrapped.
+     * @throws UnsupportedOperationException if there is no Java compiler available.
+     * @throws IllegalStateException if the generated wrap could not be compiled or defined.
+     */
+    @SuppressWarnings("unchecked")
+    public static <W> Wrapper<W> wrapper(Class<W> iface){
+        return (Wrapper<W>)wrapper(List.of(iface));
+    }
+    
+    /**
+     * Get a wrapper for a combination of interfaces.
+     * This is needed when the wrapped object implements more than one interface
+     * of interest, e.g. both {@link java.sql.Connection} and {@code org.postgresql.PGConnection}.
+     * @param interfaces The interfaces to wrap. The wraps implement all of them.
+     * @return A {@link Wrapper} creating instances of a wrap class implementing {@code interfaces}.
+     *         Wrapping an object not implementing all the interfaces throws a
+     *         {@link ClassCastException}.
+     * @throws IllegalArgumentException if {@code interfaces} is empty or contains
+     *         an interface that cannot be wrapped.
+     * @throws UnsupportedOperationException if there is no Java compiler available.
+     * @throws IllegalStateException if the generated wrap could not be compiled or defined.
+     */
+    public static Wrapper<Object> wrapper(List<Class<?>> interfaces){
+        List<Class<?>> key=List.copyOf(interfaces);
+        if (key.isEmpty()) throw new IllegalArgumentException("No interfaces");
+        Map<List<Class<?>>,Wrapper<Object>> cache=wrappers.get(cacheClass(key));
+        Wrapper<Object> wrapper=cache.get(key);
+        if (wrapper!=null) return wrapper;
+        // Compiling takes long, so it is not done inside the map. If two threads
+        // generate the same wrap, the first one stored is used by both.
+        wrapper=generate(key);
+        Wrapper<Object> previous=cache.putIfAbsent(key,wrapper);
+        return previous==null?wrapper:previous;
+    }
+    
+    /**
+     * Get the identifiers of the methods declared by an interface.
+     * These are the methods passed to a {@link MethodStepSupplier} by the generated wraps.
+     * For the interfaces in {@link java.sql}, these are the constants of the generated enums,
+     * e.g. {@link io.github.karstenspang.mockjdbc.wrap.ConnectionMethod}.
+     * @param iface The interface
+     * @return The identifiers of the methods declared by {@code iface}, sorted by name and parameter types.
+     * @throws IllegalArgumentException if {@code iface} is not an interface.
+     */
+    public static List<WrapMethod> methods(Class<?> iface){
+        if (!iface.isInterface()) throw new IllegalArgumentException(iface.getName()+" is not an interface");
+        return List.of(methodIds.get(iface));
+    }
+    
+    /**
+     * Get the identifier of a method declared by an interface.
+     * @param iface The interface
+     * @param methodName The name of the method
+     * @param parameterTypes The parameter types of the method
+     * @return The identifier of the method.
+     * @throws IllegalArgumentException if {@code iface} is not an interface,
+     *         or does not declare the method.
+     */
+    public static WrapMethod method(Class<?> iface,String methodName,Class<?>... parameterTypes){
+        for (WrapMethod method:methods(iface)){
+            if (method.methodName().equals(methodName) && Arrays.equals(method.parameterTypes(),parameterTypes)) return method;
+        }
+        throw new IllegalArgumentException(iface.getName()+" does not declare "+methodName+Arrays.toString(parameterTypes));
+    }
+    
+    // The interface whose class loader can see all the interfaces, or else the last one.
+    // The wrap refers to all the interfaces, so keeping it with that interface
+    // does not keep any class loader alive longer than the interfaces themselves do.
+    private static Class<?> cacheClass(List<Class<?>> interfaces){
+        for (Class<?> candidate:interfaces){
+            ClassLoader loader=candidate.getClassLoader();
+            if (interfaces.stream().allMatch(iface->visible(iface,loader))) return candidate;
+        }
+        return interfaces.get(interfaces.size()-1);
+    }
+    
+    private static boolean visible(Class<?> clazz,ClassLoader loader){
+        try{
+            return Class.forName(clazz.getName(),false,loader)==clazz;
+        }
+        catch(ClassNotFoundException|LinkageError e){
+            return false;
+        }
+    }
+    
+    private static Wrapper<Object> generate(List<Class<?>> interfaces){
+        for (Class<?> iface:interfaces){
+            if (!iface.isInterface()) throw new IllegalArgumentException(iface.getName()+" is not an interface");
+            if (!Modifier.isPublic(iface.getModifiers())) throw new IllegalArgumentException(iface.getName()+" is not public");
+            if (iface.getTypeParameters().length>0) throw new IllegalArgumentException(iface.getName()+" is generic");
+            if (iface.getCanonicalName()==null) throw new IllegalArgumentException(iface.getName()+" has no canonical name");
+        }
+        Class<?> sqlInterface=null;
+        for (Class<?> known:RecursiveWrapperStepSupplier.wrappedInterfaces()){
+            if (interfaces.stream().anyMatch(known::isAssignableFrom)){
+                sqlInterface=known;
+                break;
+            }
+        }
+        Class<?> superclass;
+        try{
+            superclass=sqlInterface==null?Wrap.class:Class.forName(packageName+".wrap."+sqlInterface.getSimpleName()+"Wrap");
+        }
+        catch(ClassNotFoundException e){
+            throw new IllegalStateException(e);
+        }
+        String simpleName="RuntimeWrap_"+
+            interfaces.stream().map(Class::getSimpleName).collect(Collectors.joining("_"))+
+            "_"+classCount.incrementAndGet();
+        String className=packageName+"."+simpleName;
+        String source=source(simpleName,superclass,sqlInterface,interfaces,methodsToWrap(superclass,interfaces));
+        logger.fine("Generating "+className+" extending "+superclass.getName());
+        logger.finest(source);
+        Class<?> wrapClass=new WrapClassLoader().define(className,compile(className,source,referencedClasses(superclass,interfaces)));
+        MethodHandle constructor;
+        try{
+            constructor=MethodHandles.lookup()
+                .findConstructor(wrapClass,MethodType.methodType(void.class,Object.class,Supplier.class))
+                .asType(MethodType.methodType(Object.class,Object.class,Supplier.class));
+        }
+        catch(NoSuchMethodException|IllegalAccessException e){
+            throw new IllegalStateException(e);
+        }
+        return (wrapped,stepSupplier)->{
+            for (Class<?> iface:interfaces) iface.cast(wrapped);
+            try{
+                return (Object)constructor.invokeExact(wrapped,stepSupplier);
+            }
+            catch(RuntimeException|Error e){
+                throw e;
+            }
+            // The constructor does not throw checked exceptions
+            catch(Throwable e){
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+    
+    // The public non-static methods declared by an interface, not counting the ones of Object
+    private static List<Method> declaredMethods(Class<?> iface){
+        List<Method> methods=new ArrayList<>();
+        for (Method method:iface.getDeclaredMethods()){
+            int modifiers=method.getModifiers();
+            if (Modifier.isStatic(modifiers)) continue;
+            if (!Modifier.isPublic(modifiers)) continue;
+            if (isObjectMethod(method)) continue;
+            methods.add(method);
+        }
+        methods.sort(methodOrder);
+        return methods;
+    }
+    
+    private static boolean isObjectMethod(Method method){
+        try{
+            Object.class.getMethod(method.getName(),method.getParameterTypes());
+            return true;
+        }
+        catch(NoSuchMethodException e){
+            return false;
+        }
+    }
+    
+    // The methods of the interfaces not implemented by the superclass.
+    // Of methods with the same signature, the one with the most specific return type is used.
+    private static List<Method> methodsToWrap(Class<?> superclass,List<Class<?>> interfaces){
+        Map<String,Method> methods=new TreeMap<>();
+        for (Class<?> iface:interfaces){
+            for (Method method:iface.getMethods()){
+                if (Modifier.isStatic(method.getModifiers())) continue;
+                if (isObjectMethod(method)) continue;
+                String signature=method.getName()+Arrays.toString(method.getParameterTypes());
+                Method previous=methods.get(signature);
+                if (previous==null || (previous.getReturnType()!=method.getReturnType() && previous.getReturnType().isAssignableFrom(method.getReturnType()))){
+                    methods.put(signature,method);
+                }
+            }
+        }
+        List<Method> result=new ArrayList<>();
+        for (Method method:methods.values()){
+            try{
+                Method implemented=superclass.getMethod(method.getName(),method.getParameterTypes());
+                if (!Modifier.isAbstract(implemented.getModifiers()) && method.getReturnType().isAssignableFrom(implemented.getReturnType())) continue;
+            }
+            catch(NoSuchMethodException e){
+                // Not implemented
+            }
+            result.add(method);
+        }
+        return result;
+    }
+    
+    private static String source(String simpleName,Class<?> superclass,Class<?> sqlInterface,List<Class<?>> interfaces,List<Method> methods){
+        StringBuilder src=new StringBuilder();
+        src.append("package "+packageName+";\n");
+        src.append("\n");
+        src.append("public class "+simpleName+" extends "+superclass.getCanonicalName()+" implements ");
+        src.append(interfaces.stream().map(Class::getCanonicalName).collect(Collectors.joining(",")));
+        src.append(" {\n");
+        src.append("    private static final java.util.logging.Logger logger=java.util.logging.Logger.getLogger(\""+packageName+"."+simpleName+"\");\n");
+        Map<Class<?>,String> idArrays=new HashMap<>();
+        for (Method method:methods){
+            Class<?> declaring=method.getDeclaringClass();
+            if (!idArrays.containsKey(declaring)){
+                String idArray="ids"+idArrays.size();
+                idArrays.put(declaring,idArray);
+                src.append("    private static final WrapMethod[] "+idArray+"=RuntimeWrapGenerator.methods("+declaring.getCanonicalName()+".class).toArray(new WrapMethod[0]);\n");
+            }
+        }
+        src.append("    public "+simpleName+"(Object wrapped,java.util.function.Supplier<Step> stepSupplier){\n");
+        if (sqlInterface==null){
+            src.append("        super(logger,wrapped,stepSupplier);\n");
+        }
+        else{
+            src.append("        super(logger,("+sqlInterface.getCanonicalName()+")wrapped,stepSupplier,null);\n");
+        }
+        src.append("    }\n");
+        for (Method method:methods){
+            appendMethod(src,method,idArrays.get(method.getDeclaringClass()));
+        }
+        src.append("}\n");
+        return src.toString();
+    }
+    
+    private static void appendMethod(StringBuilder src,Method method,String idArray){
+        Class<?> declaring=method.getDeclaringClass();
+        src.append("    @Override\n");
+        src.append("    public ");
+        TypeVariable<Method>[] typeParameters=method.getTypeParameters();
+        if (typeParameters.length>0){
+            src.append("<");
+            for (int i=0;i<typeParameters.length;i++){
+                if (i!=0) src.append(",");
+                src.append(typeParameters[i].getName());
+                Type[] bounds=typeParameters[i].getBounds();
+                if (bounds.length>1 || bounds[0]!=Object.class){
+                    src.append(" extends ");
+                    src.append(Arrays.stream(bounds).map(RuntimeWrapGenerator::typeName).collect(Collectors.joining(" & ")));
+                }
+            }
+            src.append("> ");
+        }
+        String returnType=typeName(method.getGenericReturnType());
+        src.append(returnType+" "+method.getName()+"(");
+        Type[] parameterTypes=method.getGenericParameterTypes();
+        for (int i=0;i<parameterTypes.length;i++){
+            if (i!=0) src.append(",");
+            src.append(typeName(parameterTypes[i])+" p"+i);
+        }
+        src.append(")\n");
+        Type[] exceptions=method.getGenericExceptionTypes();
+        if (exceptions.length>0){
+            src.append("        throws ");
+            src.append(Arrays.stream(exceptions).map(RuntimeWrapGenerator::typeName).collect(Collectors.joining(",")));
+            src.append("\n");
+        }
+        src.append("    {\n");
+        StringBuilder call=new StringBuilder("(("+declaring.getCanonicalName()+")wrapped)."+method.getName()+"(");
+        StringBuilder args=new StringBuilder();
+        for (int i=0;i<parameterTypes.length;i++){
+            if (i!=0){
+                call.append(",");
+                args.append(",");
+            }
+            call.append("p"+i);
+            args.append("p"+i);
+        }
+        call.append(")");
+        boolean isVoid="void".equals(returnType);
+        // The step can only throw SQLException, so methods declaring other checked exceptions are called directly.
+        boolean declaresSQLException=false;
+        boolean declaresOtherChecked=false;
+        List<Class<?>> sqlExceptions=new ArrayList<>();
+        for (Class<?> exception:method.getExceptionTypes()){
+            if (exception==SQLException.class) declaresSQLException=true;
+            else if (SQLException.class.isAssignableFrom(exception)) sqlExceptions.add(exception);
+            else if (!RuntimeException.class.isAssignableFrom(exception) && !Error.class.isAssignableFrom(exception)) declaresOtherChecked=true;
+        }
+        if (declaresOtherChecked){
+            src.append("        "+(isVoid?"":"return ")+call+";\n");
+            src.append("    }\n");
+            return;
+        }
+        // Subclasses of exceptions already in the list cannot be in the same multi-catch
+        sqlExceptions.removeIf(exception->sqlExceptions.stream().anyMatch(other->other!=exception && other.isAssignableFrom(exception)));
+        if (!declaresSQLException){
+            src.append("        try{\n");
+        }
+        int id=Arrays.asList(methodIds.get(declaring)).indexOf(idOf(method));
+        src.append("        Step step=methodStepSupplier==null?stepSupplier.get():methodStepSupplier.get("+idArray+"["+id+"],");
+        src.append(parameterTypes.length==0?"noArgs":"new Object[]{"+args+"}");
+        src.append(");\n");
+        src.append("        if (logger.isLoggable(java.util.logging.Level.FINEST)) logger.finest(\"Apply \"+String.valueOf(step)+\" to "+declaring.getSimpleName()+"."+method.getName()+"(\"");
+        Class<?>[] parameterClasses=method.getParameterTypes();
+        for (int i=0;i<parameterClasses.length;i++){
+            if (i!=0) src.append("+\",\"");
+            src.append(parameterClasses[i].isArray()?"+java.util.Arrays.toString(p"+i+")":"+String.valueOf(p"+i+")");
+        }
+        src.append("+\")\");\n");
+        String applyMethod=primitiveApplyMethods.getOrDefault(returnType,"apply");
+        if (isVoid){
+            src.append("        if (step==PassThruStep.instance()) "+call+";\n");
+            src.append("        else step.apply(()->"+call+");\n");
+        }
+        else{
+            src.append("        "+returnType+" result;\n");
+            src.append("        if (step==PassThruStep.instance()) result="+call+";\n");
+            src.append("        else result=step."+applyMethod+"(()->"+call+");\n");
+            src.append("        if (logger.isLoggable(java.util.logging.Level.FINEST)) logger.finest(\"Result: \"+");
+            src.append(method.getReturnType().isArray()?"java.util.Arrays.toString(result)":"String.valueOf(result)");
+            src.append(");\n");
+            src.append("        return result;\n");
+        }
+        if (!declaresSQLException){
+            src.append("        }\n");
+            if (!sqlExceptions.isEmpty()){
+                src.append("        catch(");
+                src.append(sqlExceptions.stream().map(Class::getCanonicalName).collect(Collectors.joining("|")));
+                src.append(" e){\n");
+                src.append("            throw e;\n");
+                src.append("        }\n");
+            }
+            src.append("        catch(java.sql.SQLException e){\n");
+            src.append("            throw new UnsupportedOperationException(\"unsupported exception\",e);\n");
+            src.append("        }\n");
+        }
+        src.append("    }\n");
+    }
+    
+    private static WrapMethod idOf(Method method){
+        for (WrapMethod id:methodIds.get(method.getDeclaringClass())){
+            if (id.methodName().equals(method.getName()) && Arrays.equals(id.parameterTypes(),method.getParameterTypes())) return id;
+        }
+        throw new IllegalStateException("No identifier for "+method);
+    }
+    
+    // The name of a type as written in source
+    private static String typeName(Type type){
+        if (type instanceof Class){
+            Class<?> clazz=(Class<?>)type;
+            if (clazz.isArray()) return typeName(clazz.getComponentType())+"[]";
+            if (clazz.getCanonicalName()==null) throw new IllegalArgumentException(clazz.getName()+" has no canonical name");
+            return clazz.getCanonicalName();
+        }
+        if (type instanceof ParameterizedType){
+            ParameterizedType parameterized=(ParameterizedType)type;
+            Class<?> raw=(Class<?>)parameterized.getRawType();
+            String rawName=parameterized.getOwnerType() instanceof ParameterizedType?
+                typeName(parameterized.getOwnerType())+"."+raw.getSimpleName():
+                typeName(raw);
+            return rawName+Arrays.stream(parameterized.getActualTypeArguments()).map(RuntimeWrapGenerator::typeName).collect(Collectors.joining(",","<",">"));
+        }
+        if (type instanceof TypeVariable){
+            TypeVariable<?> variable=(TypeVariable<?>)type;
+            if (!(variable.getGenericDeclaration() instanceof Method)) throw new IllegalArgumentException("Type variable "+variable+" of "+variable.getGenericDeclaration()+" is not supported");
+            return variable.getName();
+        }
+        if (type instanceof WildcardType){
+            WildcardType wildcard=(WildcardType)type;
+            if (wildcard.getLowerBounds().length>0) return "? super "+typeName(wildcard.getLowerBounds()[0]);
+            Type[] upper=wildcard.getUpperBounds();
+            if (upper.length==0 || upper[0]==Object.class) return "?";
+            return "? extends "+typeName(upper[0]);
+        }
+        if (type instanceof GenericArrayType){
+            return typeName(((GenericArrayType)type).getGenericComponentType())+"[]";
+        }
+        throw new IllegalArgumentException("Unsupported type "+type);
+    }
+    
+    private static byte[] compile(String className,String source,Set<Class<?>> referenced){
+        JavaCompiler compiler=ToolProvider.getSystemJavaCompiler();
+        if (compiler==null) throw new UnsupportedOperationException("No Java compiler available. Generating wraps at run time requires a JDK.");
+        DiagnosticCollector<JavaFileObject> diagnostics=new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager=compiler.getStandardFileManager(diagnostics,null,StandardCharsets.UTF_8);
+        ClassLoader loader=RuntimeWrapGenerator.class.getClassLoader();
+        Map<String,ByteArrayOutputStream> classFiles=new HashMap<>();
+        JavaFileManager fileManager=new ForwardingJavaFileManager<StandardJavaFileManager>(standardFileManager){
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location,String name,JavaFileObject.Kind kind,FileObject sibling){
+                return new SimpleJavaFileObject(URI.create("mem:///"+name.replace('.','/')+kind.extension),kind){
+                    @Override
+                    public OutputStream openOutputStream(){
+                        ByteArrayOutputStream os=new ByteArrayOutputStream();
+                        classFiles.put(name,os);
+                        return os;
+                    }
+                };
+            }
+            // The class path is read through the class loader
+            @Override
+            public Iterable<JavaFileObject> list(Location location,String packageName,Set<JavaFileObject.Kind> kinds,boolean recurse)
+                throws IOException
+            {
+                if (location!=StandardLocation.CLASS_PATH) return super.list(location,packageName,kinds,recurse);
+                if (!kinds.contains(JavaFileObject.Kind.CLASS)) return List.of();
+                return loaderClassFiles(loader,packageName,referenced);
+            }
+            @Override
+            public String inferBinaryName(Location location,JavaFileObject file){
+                if (file instanceof LoaderClassFile) return ((LoaderClassFile)file).binaryName;
+                return super.inferBinaryName(location,file);
+            }
+        };
+        JavaFileObject sourceFile=new SimpleJavaFileObject(URI.create("string:///"+className.replace('.','/')+".java"),JavaFileObject.Kind.SOURCE){
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors){return source;}
+        };
+        List<String> options=List.of("-proc:none");
+        boolean compiled=compiler.getTask(null,fileManager,diagnostics,options,null,List.of(sourceFile)).call();
+        if (!compiled || !classFiles.containsKey(className)){
+            throw new IllegalStateException("Compilation of "+className+" failed: "+diagnostics.getDiagnostics()+"\n"+source);
+        }
+        return classFiles.get(className).toByteArray();
+    }
+    
+    // The classes the source refers to: the superclass, the interfaces, the types in
+    // their method signatures, and their supertypes. They are passed to the compiler even
+    // if the class loader cannot list their packages, e.g. in a jar without directory entries.
+    private static Set<Class<?>> referencedClasses(Class<?> superclass,List<Class<?>> interfaces){
+        Set<Class<?>> classes=new LinkedHashSet<>(List.of(Step.class,PassThruStep.class,WrapMethod.class,MethodStepSupplier.class,RuntimeWrapGenerator.class));
+        List<Class<?>> types=new ArrayList<>(interfaces);
+        types.add(superclass);
+        for (Class<?> type:types){
+            addWithSupertypes(classes,type);
+            for (Method method:type.getMethods()){
+                addWithSupertypes(classes,method.getReturnType());
+                for (Class<?> parameterType:method.getParameterTypes()) addWithSupertypes(classes,parameterType);
+                for (Class<?> exceptionType:method.getExceptionTypes()) addWithSupertypes(classes,exceptionType);
+            }
+        }
+        return classes;
+    }
+    
+    private static void addWithSupertypes(Set<Class<?>> classes,Class<?> type){
+        while (type.isArray()) type=type.getComponentType();
+        if (type.isPrimitive() || !classes.add(type)) return;
+        if (type.getSuperclass()!=null) addWithSupertypes(classes,type.getSuperclass());
+        for (Class<?> iface:type.getInterfaces()) addWithSupertypes(classes,iface);
+    }
+    
+    // The class files in a package visible from the class loader, found from the directories
+    // and jars containing the package, plus the referenced classes in the package.
+    // Classes in the runtime image are found by the compiler itself.
+    private static List<JavaFileObject> loaderClassFiles(ClassLoader loader,String packageName,Set<Class<?>> referenced)
+        throws IOException
+    {
+        String path=packageName.replace('.','/');
+        String prefix=path.isEmpty()?"":path+"/";
+        Map<String,JavaFileObject> files=new LinkedHashMap<>();
+        for (URL url:Collections.list(loader.getResources(path))){
+            for (String simpleName:classNames(url)){
+                String binaryName=packageName.isEmpty()?simpleName:packageName+"."+simpleName;
+                files.putIfAbsent(binaryName,new LoaderClassFile(loader,prefix+simpleName+".class",binaryName));
+            }
+        }
+        for (Class<?> clazz:referenced){
+            if (!clazz.getPackageName().equals(packageName) || files.containsKey(clazz.getName())) continue;
+            String resource=clazz.getName().replace('.','/')+".class";
+            if (loader.getResource(resource)!=null) files.put(clazz.getName(),new LoaderClassFile(loader,resource,clazz.getName()));
+        }
+        return new ArrayList<>(files.values());
+    }
+    
+    // The simple binary names of the classes in a package directory, given as a file or jar URL
+    private static List<String> classNames(URL url)
+        throws IOException
+    {
+        List<String> names=new ArrayList<>();
+        if ("file".equals(url.getProtocol())){
+            Path dir;
+            try{
+                dir=Paths.get(url.toURI());
+            }
+            catch(URISyntaxException|IllegalArgumentException e){
+                return names;
+            }
+            if (!Files.isDirectory(dir)) return names;
+            try(DirectoryStream<Path> stream=Files.newDirectoryStream(dir,"*.class")){
+                for (Path file:stream) addClassName(names,file.getFileName().toString());
+            }
+            return names;
+        }
+        URLConnection connection=url.openConnection();
+        if (!(connection instanceof JarURLConnection)) return names;
+        // The jar file is cached by the URL handler, so it is not closed here
+        JarURLConnection jarConnection=(JarURLConnection)connection;
+        JarFile jar=jarConnection.getJarFile();
+        String dir=jarConnection.getEntryName();
+        dir=dir==null?"":dir.endsWith("/")?dir:dir+"/";
+        for (Enumeration<JarEntry> entries=jar.entries();entries.hasMoreElements();){
+            String name=entries.nextElement().getName();
+            if (name.startsWith(dir) && name.indexOf('/',dir.length())<0) addClassName(names,name.substring(dir.length()));
+        }
+        return names;
+    }
+    
+    // Skips module-info and package-info, which are not classes
+    private static void addClassName(List<String> names,String fileName){
+        if (fileName.endsWith(".class") && fileName.indexOf('-')<0) names.add(fileName.substring(0,fileName.length()-".class".length()));
+    }
+    
+    // A class file read through a class loader
+    private static final class LoaderClassFile extends SimpleJavaFileObject {
+        private final ClassLoader loader;
+        private final String resource;
+        private final String binaryName;
+        
+        LoaderClassFile(ClassLoader loader,String resource,String binaryName){
+            super(URI.create("classloader:///"+resource),JavaFileObject.Kind.CLASS);
+            this.loader=loader;
+            this.resource=resource;
+            this.binaryName=binaryName;
+        }
+        
+        @Override
+        public InputStream openInputStream()
+            throws IOException
+        {
+            InputStream in=loader.getResourceAsStream(resource);
+            if (in==null) throw new IOException("Class file not found: "+resource);
+            return in;
+        }
+    }
+    
+    // Defines a single wrap class, so the class can be unloaded when it is no longer used.
+    // The wrap class is in another runtime package than mockjdbc, so it only uses
+    // public and protected members of mockjdbc.
+    private static final class WrapClassLoader extends ClassLoader {
+        WrapClassLoader(){
+            super(RuntimeWrapGenerator.class.getClassLoader());
+        }
+        
+        Class<?> define(String className,byte[] classFile){
+            return defineClass(className,classFile,0,classFile.length);
+        }
+    }
+}
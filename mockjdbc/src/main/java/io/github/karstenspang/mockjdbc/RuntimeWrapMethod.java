@@ -0,0 +1,42 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Identifier of a method of an interface wrapped by {@link RuntimeWrapGenerator}.
+ * There is only one instance per method, so identity is equality.
+ */
+final class RuntimeWrapMethod implements WrapMethod {
+    private final Class<?> declaringInterface;
+    private final String methodName;
+    private final Class<?>[] parameterTypes;
+    private final int ordinal;
+    
+    RuntimeWrapMethod(Class<?> declaringInterface,String methodName,Class<?>[] parameterTypes,int ordinal){
+        this.declaringInterface=declaringInterface;
+        this.methodName=methodName;
+        this.parameterTypes=parameterTypes;
+        this.ordinal=ordinal;
+    }
+    
+    @Override
+    public Class<?> declaringInterface(){return declaringInterface;}
+    @Override
+    public String methodName(){return methodName;}
+    @Override
+    public Class<?>[] parameterTypes(){return parameterTypes.clone();}
+    @Override
+    public int ordinal(){return ordinal;}
+    
+    /**
+     * Get the string representation
+     * @return The simple name of the interface, the method name, and the
+     *         simple names of the parameter types, e.g. {@code PGConnection.getNotifications(int)}.
+     */
+    @Override
+    public String toString(){
+        return declaringInterface.getSimpleName()+"."+methodName+
+            Arrays.stream(parameterTypes).map(Class::getSimpleName).collect(Collectors.joining(",","(",")"));
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Like {@link BooleanSupplier}, but can throw an {@link SQLException}.
+ * This is the {@code boolean} specialization of {@link SQLSupplier},
+ * used by the wraps for methods returning {@code boolean}, so that
+ * the result need not be boxed.
+ * Meant to be used as a target for lambda expressions.
+ */
+@FunctionalInterface
+public interface SQLBooleanSupplier {
+    /**
+     * Get a value
+     * @return the value
+     * @throws SQLException if needed.
+     */
+    boolean getAsBoolean()
+        throws SQLException;
+}
@@ -0,0 +1,22 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Like {@link DoubleSupplier}, but can throw an {@link SQLException}.
+ * This is the {@code double} specialization of {@link SQLSupplier},
+ * used by the wraps for methods returning {@code double}, so that
+ * the result need not be boxed.
+ * Meant to be used as a target for lambda expressions.
+ */
+@FunctionalInterface
+public interface SQLDoubleSupplier {
+    /**
+     * Get a value
+     * @return the value
+     * @throws SQLException if needed.
+     */
+    double getAsDouble()
+        throws SQLException;
+}
@@ -0,0 +1,22 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.function.IntSupplier;
+
+/**
+ * Like {@link IntSupplier}, but can throw an {@link SQLException}.
+ * This is the {@code int} specialization of {@link SQLSupplier},
+ * used by the wraps for methods returning {@code int}, so that
+ * the result need not be boxed.
+ * Meant to be used as a target for lambda expressions.
+ */
+@FunctionalInterface
+public interface SQLIntSupplier {
+    /**
+     * Get a value
+     * @return the value
+     * @throws SQLException if needed.
+     */
+    int getAsInt()
+        throws SQLException;
+}
@@ -0,0 +1,22 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.function.LongSupplier;
+
+/**
+ * Like {@link LongSupplier}, but can throw an {@link SQLException}.
+ * This is the {@code long} specialization of {@link SQLSupplier},
+ * used by the wraps for methods returning {@code long}, so that
+ * the result need not be boxed.
+ * Meant to be used as a target for lambda expressions.
+ */
+@FunctionalInterface
+public interface SQLLongSupplier {
+    /**
+     * Get a value
+     * @return the value
+     * @throws SQLException if needed.
+     */
+    long getAsLong()
+        throws SQLException;
+}
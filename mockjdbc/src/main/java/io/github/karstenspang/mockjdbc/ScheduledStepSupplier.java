@@ -0,0 +1,182 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Supplier of steps driven by time windows.
+ * During each window, the supplier returns the step of the window,
+ * and outside the windows, {@link PassThruStep}. The windows are relative to
+ * the time the supplier is created. For example, to make the database
+ * unreachable from 30 to 45 seconds after the start:
+ *<pre>
+ *new ScheduledStepSupplier(Clock.systemUTC(),List.of(
+ *    ScheduledStepSupplier.Window.of(Duration.ofSeconds(30),Duration.ofSeconds(45),
+ *        ExceptionStep.stackless("Connection refused","08001"))));
+ *</pre>
+ * The supplier can be passed to {@link MockDriver#setStepSupplier} and the
+ * constructors of the wraps.<p>
+ * The time is read from a {@link Clock}, with millisecond resolution.
+ * Tests can pass a clock that they advance themselves, and run long
+ * scenarios without sleeping.<p>
+ * The supplier remembers the window of the last call, so as long as the
+ * clock moves forward, finding the current window takes constant time,
+ * except when passing a window boundary.
+ */
+public class ScheduledStepSupplier implements Supplier<Step> {
+    private final Clock clock;
+    private final List<Window> windows;
+    private final long start;
+    // Segments of time, windows and the gaps between them.
+    // Segment i starts at starts[i], relative to start, and ends where segment i+1 starts.
+    private final long[] starts;
+    private final Step[] steps;
+    // Index of the segment of the last call. Any value is valid, so races are harmless.
+    private volatile int current;
+    
+    /**
+     * A time window, with the step to apply during it.
+     */
+    public static final class Window {
+        private final Duration from;
+        private final Duration until;
+        private final Step step;
+        
+        /**
+         * Create a window
+         * @param from When the window starts, relative to the start of the schedule.
+         * @param until When the window ends, relative to the start of the schedule.
+         *        The window does not include this time.
+         * @param step The step to apply during the window.
+         * @throws IllegalArgumentException if {@code from} is negative,
+         *         or not before {@code until}.
+         * @throws NullPointerException if an argument is {@code null}.
+         */
+        public Window(Duration from,Duration until,Step step){
+            this.from=Objects.requireNonNull(from,"from is null");
+            this.until=Objects.requireNonNull(until,"until is null");
+            this.step=Objects.requireNonNull(step,"step is null");
+            if (from.isNegative()) throw new IllegalArgumentException("from is negative: "+from);
+            if (from.compareTo(until)>=0) throw new IllegalArgumentException("from is not before until: "+from+" >= "+until);
+        }
+        
+        /**
+         * Create a window
+         * @param from When the window starts, relative to the start of the schedule.
+         * @param until When the window ends, relative to the start of the schedule.
+         * @param step The step to apply during the window.
+         * @return the window
+         * @throws IllegalArgumentException if {@code from} is negative,
+         *         or not before {@code until}.
+         * @throws NullPointerException if an argument is {@code null}.
+         */
+        public static Window of(Duration from,Duration until,Step step){
+            return new Window(from,until,step);
+        }
+        
+        /**
+         * Get the start
+         * @return when the window starts.
+         */
+        public Duration from(){return from;}
+        
+        /**
+         * Get the end
+         * @return when the window ends.
+         */
+        public Duration until(){return until;}
+        
+        /**
+         * Get the step
+         * @return the step to apply during the window.
+         */
+        public Step step(){return step;}
+        
+        /**
+         * Get the string representation
+         * @return the times and the step.
+         */
+        @Override
+        public String toString(){
+            return "["+from+","+until+"):"+step;
+        }
+    }
+    
+    /**
+     * Create the supplier, starting the schedule now.
+     * @param clock The clock to read the time from.
+     * @param windows The time windows. They must not overlap.
+     * @throws NullPointerException if an argument is or contains {@code null}.
+     * @throws IllegalArgumentException if windows overlap.
+     */
+    public ScheduledStepSupplier(Clock clock,List<Window> windows){
+        this.clock=Objects.requireNonNull(clock,"clock is null");
+        List<Window> sorted=new ArrayList<>(Objects.requireNonNull(windows,"windows is null"));
+        for (Window window:sorted) Objects.requireNonNull(window,"window is null");
+        sorted.sort(Comparator.comparing(Window::from));
+        this.windows=List.copyOf(sorted);
+        List<Long> segmentStarts=new ArrayList<>();
+        List<Step> segmentSteps=new ArrayList<>();
+        // The first gap also covers the time before the start
+        long end=Long.MIN_VALUE;
+        for (Window window:this.windows){
+            long from=millis(window.from);
+            if (from<end) throw new IllegalArgumentException("Windows overlap: "+window);
+            if (from>end){
+                segmentStarts.add(end);
+                segmentSteps.add(PassThruStep.instance());
+            }
+            segmentStarts.add(from);
+            segmentSteps.add(window.step);
+            end=millis(window.until);
+        }
+        segmentStarts.add(end);
+        segmentSteps.add(PassThruStep.instance());
+        starts=segmentStarts.stream().mapToLong(Long::longValue).toArray();
+        steps=segmentSteps.toArray(new Step[0]);
+        start=clock.millis();
+    }
+    
+    /**
+     * Get the next step
+     * @return the step of the window containing the current time,
+     *         or {@link PassThruStep} if no window does.
+     */
+    @Override
+    public Step get(){
+        long now=clock.millis()-start;
+        int i=current;
+        if (now<starts[i]){
+            // The clock went backwards
+            i=0;
+        }
+        while (i+1<starts.length&&now>=starts[i+1]) i++;
+        if (i!=current) current=i;
+        return steps[i];
+    }
+    
+    /**
+     * Get the string representation
+     * @return the windows.
+     */
+    @Override
+    public String toString(){
+        return "ScheduledStepSupplier"+
+            windows.stream().map(Window::toString).collect(Collectors.joining(",","[","]"));
+    }
+    
+    private static long millis(Duration duration){
+        try{
+            return duration.toMillis();
+        }
+        catch(ArithmeticException e){
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Step supplier that routes the calls by the SQL text.
+ * Each route has a pattern, and a supplier of the steps for the calls with SQL
+ * containing the pattern. For example, to fail every statement
+ * on the {@code ORDERS} table, and slow down the ones on {@code CUSTOMERS}:
+ *<pre>
+ *new SqlRoutingStepSupplier(List.of(
+ *    SqlRoutingStepSupplier.Route.of("ORDERS",ExceptionStep.stackless("Table locked","55P03")),
+ *    SqlRoutingStepSupplier.Route.of("CUSTOMERS",new LatencyStep(Latency.fixed(Duration.ofMillis(100))))),
+ *    PassThruStep::instance);
+ *</pre>
+ * The SQL is the first argument of the methods taking SQL text:
+ * {@code prepareStatement}, {@code prepareCall} and {@code nativeSQL} of
+ * {@link java.sql.Connection}, and {@code execute}, {@code executeQuery},
+ * {@code executeUpdate}, {@code executeLargeUpdate} and {@code addBatch}
+ * of {@link java.sql.Statement}. The calls of other methods, and the calls with
+ * SQL not matching any pattern, get their steps from the fallback supplier.
+ * To route the executions of a prepared statement, route its {@code prepareStatement}
+ * call to a step that wraps the prepared statement.<p>
+ * The patterns are literal, and matched ignoring case. If the SQL contains
+ * the patterns of several routes, the first of them in the list is used.
+ * All the patterns are matched in a single pass over the SQL with an Aho-Corasick
+ * automaton, and the result is cached for each distinct SQL string, up to
+ * {@value #cacheLimit} strings.<p>
+ * If a supplier is a {@link MethodStepSupplier}, it is passed the method and arguments.
+ * The supplier is thread safe if the suppliers of the routes are.
+ */
+public class SqlRoutingStepSupplier implements MethodStepSupplier {
+    /** The maximum number of SQL strings whose routes are cached */
+    public static final int cacheLimit=10000;
+    
+    private static final Set<String> sqlMethods=Set.of(
+        "prepareStatement","prepareCall","nativeSQL",
+        "execute","executeQuery","executeUpdate","executeLargeUpdate","addBatch");
+    // Cached route index for SQL not matching any pattern
+    private static final Integer noRoute=Integer.valueOf(-1);
+    
+    private final List<Route> routes;
+    private final Supplier<Step> fallback;
+    private final Map<String,Integer> cache=new ConcurrentHashMap<>();
+    
+    // The automaton. The transitions from state s are the characters keys[s],
+    // to the states targets[s], with the keys sorted.
+    private final char[][] keys;
+    private final int[][] targets;
+    // The state to continue from when there is no transition
+    private final int[] failures;
+    // The first route with a pattern ending in the state, or Integer.MAX_VALUE
+    private final int[] matches;
+    
+    /**
+     * A route, with the pattern and the steps for the matching calls.
+     */
+    public static final class Route {
+        private final String pattern;
+        private final Supplier<Step> stepSupplier;
+        
+        /**
+         * Create a route
+         * @param pattern The text to look for in the SQL.
+         * @param stepSupplier The supplier of the steps for the calls with SQL containing {@code pattern}.
+         * @throws IllegalArgumentException if {@code pattern} is empty.
+         * @throws NullPointerException if an argument is {@code null}.
+         */
+        public Route(String pattern,Supplier<Step> stepSupplier){
+            this.pattern=Objects.requireNonNull(pattern,"pattern is null");
+            this.stepSupplier=Objects.requireNonNull(stepSupplier,"stepSupplier is null");
+            if (pattern.isEmpty()) throw new IllegalArgumentException("pattern is empty");
+        }
+        
+        /**
+         * Create a route applying the same step to all the matching calls.
+         * @param pattern The text to look for in the SQL.
+         * @param step The step for the calls with SQL containing {@code pattern}.
+         * @return the route
+         * @throws IllegalArgumentException if {@code pattern} is empty.
+         * @throws NullPointerException if an argument is {@code null}.
+         */
+        public static Route of(String pattern,Step step){
+            Objects.requireNonNull(step,"step is null");
+            return new Route(pattern,new Supplier<Step>(){
+                @Override
+                public Step get(){return step;}
+                @Override
+                public String toString(){return step.toString();}
+            });
+        }
+        
+        /**
+         * Get the pattern
+         * @return the text to look for in the SQL.
+         */
+        public String pattern(){return pattern;}
+        
+        /**
+         * Get the step supplier
+         * @return the supplier of the steps for the matching calls.
+         */
+        public Supplier<Step> stepSupplier(){return stepSupplier;}
+        
+        /**
+         * Get the string representation
+         * @return the pattern and the step supplier.
+         */
+        @Override
+        public String toString(){
+            return pattern+":"+stepSupplier;
+        }
+    }
+    
+    /**
+     * Create the supplier
+     * @param routes The routes, in order of priority.
+     * @param fallback The supplier of the steps for the calls not matching any route.
+     * @throws NullPointerException if an argument is or contains {@code null}.
+     */
+    public SqlRoutingStepSupplier(List<Route> routes,Supplier<Step> fallback){
+        this.routes=List.copyOf(Objects.requireNonNull(routes,"routes is null"));
+        this.fallback=Objects.requireNonNull(fallback,"fallback is null");
+        // Build the trie
+        List<TreeMap<Character,Integer>> trie=new ArrayList<>();
+        List<Integer> ends=new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(Integer.MAX_VALUE);
+        for (int r=0;r<this.routes.size();r++){
+            String pattern=this.routes.get(r).pattern;
+            int state=0;
+            for (int i=0;i<pattern.length();i++){
+                char c=fold(pattern.charAt(i));
+                Integer next=trie.get(state).get(c);
+                if (next==null){
+                    next=trie.size();
+                    trie.add(new TreeMap<>());
+                    ends.add(Integer.MAX_VALUE);
+                    trie.get(state).put(c,next);
+                }
+                state=next;
+            }
+            if (r<ends.get(state)) ends.set(state,r);
+        }
+        int size=trie.size();
+        keys=new char[size][];
+        targets=new int[size][];
+        failures=new int[size];
+        matches=new int[size];
+        for (int s=0;s<size;s++){
+            TreeMap<Character,Integer> transitions=trie.get(s);
+            keys[s]=new char[transitions.size()];
+            targets[s]=new int[transitions.size()];
+            int i=0;
+            for (Map.Entry<Character,Integer> transition:transitions.entrySet()){
+                keys[s][i]=transition.getKey();
+                targets[s][i]=transition.getValue();
+                i++;
+            }
+            matches[s]=ends.get(s);
+        }
+        // Failure links, breadth first, so the failure state of a state is done before it
+        Deque<Integer> queue=new ArrayDeque<>();
+        for (int child:targets[0]){
+            failures[child]=0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()){
+            int s=queue.remove();
+            for (int i=0;i<keys[s].length;i++){
+                int child=targets[s][i];
+                int f=failures[s];
+                int next;
+                while ((next=transition(f,keys[s][i]))<0&&f!=0) f=failures[f];
+                failures[child]=next<0?0:next;
+                matches[child]=Math.min(matches[child],matches[failures[child]]);
+                queue.add(child);
+            }
+        }
+    }
+    
+    /**
+     * Get the step for a call.
+     * @param method The method called.
+     * @param args The arguments of the call.
+     * @return the step from the supplier of the first route with a pattern
+     *         contained in the SQL, or from the fallback supplier.
+     */
+    @Override
+    public Step get(WrapMethod method,Object[] args){
+        Supplier<Step> supplier=fallback;
+        if (args.length>0&&args[0] instanceof String&&sqlMethods.contains(method.methodName())){
+            int route=route((String)args[0]);
+            if (route>=0) supplier=routes.get(route).stepSupplier;
+        }
+        if (supplier instanceof MethodStepSupplier) return ((MethodStepSupplier)supplier).get(method,args);
+        return supplier.get();
+    }
+    
+    /**
+     * Get the string representation
+     * @return the routes and the fallback supplier.
+     */
+    @Override
+    public String toString(){
+        return "SqlRoutingStepSupplier["+
+            routes.stream().map(Route::toString).collect(Collectors.joining(",","[","]"))+
+            ","+fallback+"]";
+    }
+    
+    // Index of the route for the SQL, or -1
+    int route(String sql){
+        Integer cached=cache.get(sql);
+        if (cached!=null) return cached.intValue();
+        int route=match(sql);
+        if (cache.size()<cacheLimit) cache.put(sql,route<0?noRoute:Integer.valueOf(route));
+        return route;
+    }
+    
+    private int match(String sql){
+        int best=Integer.MAX_VALUE;
+        int state=0;
+        for (int i=0;i<sql.length()&&best>0;i++){
+            char c=fold(sql.charAt(i));
+            int next;
+            while ((next=transition(state,c))<0&&state!=0) state=failures[state];
+            state=next<0?0:next;
+            if (matches[state]<best) best=matches[state];
+        }
+        return best==Integer.MAX_VALUE?-1:best;
+    }
+    
+    private int transition(int state,char c){
+        int i=Arrays.binarySearch(keys[state],c);
+        return i<0?-1:targets[state][i];
+    }
+    
+    private static char fold(char c){
+        return Character.toUpperCase(Character.toLowerCase(c));
+    }
+}
@@ -15,7 +15,8 @@ public interface Step {
      * {@link Wrap} to call the method in the wrapped object and return its result.
      * The return type of the method must match {@code T}.
      * If the wrapped method returns a primitive type, the corresponding object
-     * type is used.
+     * type is used, except for {@code int}, {@code long}, {@code double}, and
+     * {@code boolean}, which have their own {@code apply} variants.
      * <p>
      * Example actions are
      * <ul>
@@ -50,4 +51,84 @@ public interface Step {
      */
     void apply(SQLRunnable method)
         throws SQLException;
+    
+    /**
+     * Apply the step action to a wrapped method that returns an {@code int}.
+     * This is the {@code int} specialization of {@link #apply(SQLSupplier)},
+     * allowing steps to avoid boxing the result.
+     * The default implementation boxes the result and passes it through
+     * {@link #apply(SQLSupplier)}, so steps only need to override it for
+     * efficiency.
+     * @param method Wrapped method call.
+     *        It may or may not be called, depending on the implementing step.
+     * @return Whatever the step decides.
+     * @throws SQLException if either {@code method} does, or if the step itself does.
+     * @throws NullPointerException if {@link #apply(SQLSupplier)} returns {@code null}.
+     */
+    default int applyAsInt(SQLIntSupplier method)
+        throws SQLException
+    {
+        Integer result=apply(method::getAsInt);
+        return result;
+    }
+    
+    /**
+     * Apply the step action to a wrapped method that returns a {@code long}.
+     * This is the {@code long} specialization of {@link #apply(SQLSupplier)},
+     * allowing steps to avoid boxing the result.
+     * The default implementation boxes the result and passes it through
+     * {@link #apply(SQLSupplier)}, so steps only need to override it for
+     * efficiency.
+     * @param method Wrapped method call.
+     *        It may or may not be called, depending on the implementing step.
+     * @return Whatever the step decides.
+     * @throws SQLException if either {@code method} does, or if the step itself does.
+     * @throws NullPointerException if {@link #apply(SQLSupplier)} returns {@code null}.
+     */
+    default long applyAsLong(SQLLongSupplier method)
+        throws SQLException
+    {
+        Long result=apply(method::getAsLong);
+        return result;
+    }
+    
+    /**
+     * Apply the step action to a wrapped method that returns a {@code double}.
+     * This is the {@code double} specialization of {@link #apply(SQLSupplier)},
+     * allowing steps to avoid boxing the result.
+     * The default implementation boxes the result and passes it through
+     * {@link #apply(SQLSupplier)}, so steps only need to override it for
+     * efficiency.
+     * @param method Wrapped method call.
+     *        It may or may not be called, depending on the implementing step.
+     * @return Whatever the step decides.
+     * @throws SQLException if either {@code method} does, or if the step itself does.
+     * @throws NullPointerException if {@link #apply(SQLSupplier)} returns {@code null}.
+     */
+    default double applyAsDouble(SQLDoubleSupplier method)
+        throws SQLException
+    {
+        Double result=apply(method::getAsDouble);
+        return result;
+    }
+    
+    /**
+     * Apply the step action to a wrapped method that returns a {@code boolean}.
+     * This is the {@code boolean} specialization of {@link #apply(SQLSupplier)},
+     * allowing steps to avoid boxing the result.
+     * The default implementation boxes the result and passes it through
+     * {@link #apply(SQLSupplier)}, so steps only need to override it for
+     * efficiency.
+     * @param method Wrapped method call.
+     *        It may or may not be called, depending on the implementing step.
+     * @return Whatever the step decides.
+     * @throws SQLException if either {@code method} does, or if the step itself does.
+     * @throws NullPointerException if {@link #apply(SQLSupplier)} returns {@code null}.
+     */
+    default boolean applyAsBoolean(SQLBooleanSupplier method)
+        throws SQLException
+    {
+        Boolean result=apply(method::getAsBoolean);
+        return result;
+    }
 }
@@ -0,0 +1,278 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A compact description of a sequence of steps, possibly infinite.
+ * Repetitions and cycles are not expanded, so a sequence takes the same
+ * memory regardless of its length. For example, to pass through 10000 times,
+ * then fail, and repeat that forever:
+ *<pre>
+ *StepSequence.cycle(StepSequence.concat(
+ *    StepSequence.repeat(PassThruStep.instance(),10000),
+ *    StepSequence.of(new ExceptionStep(new SQLException("Connection reset","08006")))));
+ *</pre>
+ * A sequence is an {@link Iterable}, so it can be passed to {@link Program},
+ * {@link MockDriver#setProgram}, and the wrap constructors. It can also be passed to
+ * {@link ConcurrentProgram}, which uses {@link #step(long)} to look up steps directly.
+ * Getting the next step takes constant time, independent of the length of the sequence.<p>
+ * Sequences are immutable, and can be shared by any number of programs.
+ */
+public abstract class StepSequence implements Iterable<Step> {
+    /** The length of infinite sequences */
+    public static final long INFINITE=Long.MAX_VALUE;
+    
+    private static final StepSequence empty=new Steps(new Step[0]);
+    
+    StepSequence(){}
+    
+    /**
+     * Get the length of the sequence
+     * @return the number of steps, or {@link #INFINITE} if the sequence does not end.
+     */
+    public abstract long length();
+    
+    /**
+     * Get a step by position.
+     * @param index The position of the step, starting from 0.
+     * @return the step at position {@code index}.
+     * @throws IndexOutOfBoundsException if {@code index} is negative,
+     *         or not less than {@link #length()}.
+     */
+    public abstract Step step(long index);
+    
+    /**
+     * Get an iterator over the steps.
+     * @return An iterator returning the steps in order.
+     *         If the sequence is infinite, so is the iterator.
+     */
+    @Override
+    public Iterator<Step> iterator(){
+        return new Iterator<Step>(){
+            private long next=0;
+            @Override
+            public boolean hasNext(){return next<length();}
+            @Override
+            public Step next(){
+                if (next>=length()) throw new NoSuchElementException();
+                return step(next++);
+            }
+        };
+    }
+    
+    /**
+     * Get a sequence of the given steps.
+     * @param steps The steps.
+     * @return A sequence of {@code steps}, in order.
+     * @throws NullPointerException if {@code steps} is or contains {@code null}.
+     */
+    public static StepSequence of(Step... steps){
+        if (steps.length==0) return empty;
+        for (Step step:steps) Objects.requireNonNull(step,"step is null");
+        return new Steps(steps.clone());
+    }
+    
+    /**
+     * Get a sequence of the given steps.
+     * If {@code steps} is a {@link StepSequence}, it is returned as it is.
+     * @param steps The steps. Must be finite.
+     * @return A sequence of {@code steps}, in order.
+     * @throws NullPointerException if {@code steps} is or contains {@code null}.
+     */
+    public static StepSequence of(Iterable<Step> steps){
+        Objects.requireNonNull(steps,"steps is null");
+        if (steps instanceof StepSequence) return (StepSequence)steps;
+        List<Step> list=new ArrayList<>();
+        for (Step step:steps) list.add(Objects.requireNonNull(step,"step is null"));
+        if (list.isEmpty()) return empty;
+        return new Steps(list.toArray(new Step[0]));
+    }
+    
+    /**
+     * Get a sequence repeating a step.
+     * @param step The step to repeat.
+     * @param times The number of times to repeat it.
+     * @return A sequence of {@code times} times {@code step}.
+     * @throws NullPointerException if {@code step} is {@code null}.
+     * @throws IllegalArgumentException if {@code times} is negative.
+     */
+    public static StepSequence repeat(Step step,long times){
+        return repeat(of(step),times);
+    }
+    
+    /**
+     * Get a sequence repeating a sequence.
+     * @param sequence The sequence to repeat.
+     * @param times The number of times to repeat it.
+     * @return A sequence of {@code times} times {@code sequence}.
+     * @throws NullPointerException if {@code sequence} is {@code null}.
+     * @throws IllegalArgumentException if {@code times} is negative.
+     */
+    public static StepSequence repeat(StepSequence sequence,long times){
+        Objects.requireNonNull(sequence,"sequence is null");
+        if (times<0) throw new IllegalArgumentException("times is negative: "+times);
+        if (times==0||sequence.length()==0) return empty;
+        if (times==1) return sequence;
+        return new Repeat(sequence,times);
+    }
+    
+    /**
+     * Get a sequence repeating a step forever.
+     * @param step The step to repeat.
+     * @return An infinite sequence of {@code step}.
+     * @throws NullPointerException if {@code step} is {@code null}.
+     */
+    public static StepSequence forever(Step step){
+        return repeat(step,INFINITE);
+    }
+    
+    /**
+     * Get a sequence repeating a sequence forever.
+     * @param sequence The sequence to repeat.
+     * @return An infinite sequence repeating {@code sequence}, or
+     *         an empty sequence if {@code sequence} is empty.
+     * @throws NullPointerException if {@code sequence} is {@code null}.
+     */
+    public static StepSequence cycle(StepSequence sequence){
+        return repeat(sequence,INFINITE);
+    }
+    
+    /**
+     * Get the concatenation of sequences.
+     * @param sequences The sequences to concatenate. Sequences following an
+     *        infinite sequence are never reached.
+     * @return A sequence of the steps of all the {@code sequences}, in order.
+     * @throws NullPointerException if {@code sequences} is or contains {@code null}.
+     */
+    public static StepSequence concat(StepSequence... sequences){
+        List<StepSequence> parts=new ArrayList<>();
+        for (StepSequence sequence:sequences){
+            Objects.requireNonNull(sequence,"sequence is null");
+            if (sequence.length()==0) continue;
+            parts.add(sequence);
+            if (sequence.length()==INFINITE) break;
+        }
+        if (parts.isEmpty()) return empty;
+        if (parts.size()==1) return parts.get(0);
+        return new Concat(parts.toArray(new StepSequence[0]));
+    }
+    
+    /**
+     * Get an infinite sequence of generated steps.
+     * The steps are generated when they are needed, and are not remembered.
+     * The generator must be thread safe if the sequence is used by a {@link ConcurrentProgram}.
+     * @param generator Function returning the step at a position, starting from 0.
+     * @return An infinite sequence of the generated steps.
+     * @throws NullPointerException if {@code generator} is {@code null}.
+     */
+    public static StepSequence generate(LongFunction<? extends Step> generator){
+        return new Generate(Objects.requireNonNull(generator,"generator is null"));
+    }
+    
+    void checkIndex(long index){
+        if (index<0||index>=length()) throw new IndexOutOfBoundsException("Index "+index+" out of bounds for length "+length());
+    }
+    
+    // Saturating multiplication and addition of lengths
+    private static long multiply(long a,long b){
+        if (a==INFINITE||b==INFINITE) return INFINITE;
+        long high=Math.multiplyHigh(a,b);
+        long product=a*b;
+        if (high!=0||product<0) return INFINITE;
+        return product;
+    }
+    
+    private static long add(long a,long b){
+        long sum=a+b;
+        return sum<0?INFINITE:sum;
+    }
+    
+    private static final class Steps extends StepSequence {
+        private final Step[] steps;
+        Steps(Step[] steps){this.steps=steps;}
+        @Override
+        public long length(){return steps.length;}
+        @Override
+        public Step step(long index){
+            checkIndex(index);
+            return steps[(int)index];
+        }
+        @Override
+        public String toString(){return Arrays.toString(steps);}
+    }
+    
+    private static final class Repeat extends StepSequence {
+        private final StepSequence sequence;
+        private final long times;
+        private final long length;
+        Repeat(StepSequence sequence,long times){
+            this.sequence=sequence;
+            this.times=times;
+            length=multiply(sequence.length(),times);
+        }
+        @Override
+        public long length(){return length;}
+        @Override
+        public Step step(long index){
+            checkIndex(index);
+            return sequence.step(index%sequence.length());
+        }
+        @Override
+        public String toString(){
+            if (times==INFINITE) return "cycle("+sequence+")";
+            return "repeat("+sequence+","+times+")";
+        }
+    }
+    
+    private static final class Concat extends StepSequence {
+        private final StepSequence[] parts;
+        // Start index of each part
+        private final long[] starts;
+        private final long length;
+        Concat(StepSequence[] parts){
+            this.parts=parts;
+            starts=new long[parts.length];
+            long start=0;
+            for (int i=0;i<parts.length;i++){
+                starts[i]=start;
+                start=add(start,parts[i].length());
+            }
+            length=start;
+        }
+        @Override
+        public long length(){return length;}
+        @Override
+        public Step step(long index){
+            checkIndex(index);
+            int i=Arrays.binarySearch(starts,index);
+            // If not found, the part is the one before the insertion point
+            if (i<0) i=-i-2;
+            return parts[i].step(index-starts[i]);
+        }
+        @Override
+        public String toString(){
+            return Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining(",","concat(",")"));
+        }
+    }
+    
+    private static final class Generate extends StepSequence {
+        private final LongFunction<? extends Step> generator;
+        Generate(LongFunction<? extends Step> generator){this.generator=generator;}
+        @Override
+        public long length(){return INFINITE;}
+        @Override
+        public Step step(long index){
+            checkIndex(index);
+            return generator.apply(index);
+        }
+        @Override
+        public String toString(){return "generate("+generator+")";}
+    }
+}
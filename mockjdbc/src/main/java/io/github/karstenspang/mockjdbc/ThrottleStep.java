@@ -0,0 +1,216 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link Step} that limits the throughput of the calls, like a saturated database.
+ * The calls are admitted at a given rate, with a burst of calls allowed at once.
+ * Calls above the limit either wait for their turn, or fail, depending on the {@link Mode}.
+ * For example, to let the queries through at 100 per second, with bursts of up to 10:
+ *<pre>
+ *ThrottleStep throttle=new ThrottleStep(100.0,10,ThrottleStep.Mode.QUEUE);
+ *new MethodProgram(
+ *    Map.of(StatementMethod.executeQuery,StepSequence.forever(throttle),
+ *           PreparedStatementMethod.executeUpdate,StepSequence.forever(throttle)),
+ *    StepSequence.forever(PassThruStep.instance()));
+ *</pre>
+ * One step can be shared by any number of threads and wraps, and limits their total rate.<p>
+ * The limit is a token bucket, implemented as the generic cell rate algorithm:
+ * the only state is the time the next call is due, kept in an {@link AtomicLong}
+ * and updated with compare-and-set, so the step takes no locks.
+ * Waiting calls are parked with {@link LockSupport#parkNanos(long)},
+ * so virtual threads are not pinned. If a waiting thread is interrupted, the interrupt
+ * status is kept, its slot is given to the calls after it, and an {@link SQLException}
+ * with SQLState {@value LatencyStep#canceledState} is thrown.
+ */
+public class ThrottleStep implements Step {
+    /** SQLState of the exception thrown when a call is rejected in {@link Mode#FAIL} mode */
+    public static final String throttledState="HY000";
+    
+    /**
+     * What to do with calls above the limit
+     */
+    public enum Mode {
+        /** Wait until the call is admitted */
+        QUEUE,
+        /** Throw an {@link SQLTransientException} with SQLState {@value ThrottleStep#throttledState} */
+        FAIL
+    }
+    
+    private final double rate;
+    private final int burst;
+    private final Mode mode;
+    private final LongSupplier clock;
+    // Time between calls at the limit
+    private final long interval;
+    // How far ahead of the current time the next call may be due, and still be admitted
+    private final long tolerance;
+    // Theoretical arrival time: when the next call is due if the calls come at the limit
+    private final AtomicLong due;
+    
+    /**
+     * Construct the step
+     * @param rate The number of calls admitted per second.
+     * @param burst The number of calls that can be admitted at once,
+     *        when no calls have been made for a while.
+     * @param mode What to do with calls above the limit.
+     * @throws IllegalArgumentException if {@code rate} or {@code burst} is not positive.
+     * @throws NullPointerException if {@code mode} is {@code null}.
+     */
+    public ThrottleStep(double rate,int burst,Mode mode){
+        this(rate,burst,mode,System::nanoTime);
+    }
+    
+    // Used by the tests, to control the time
+    ThrottleStep(double rate,int burst,Mode mode,LongSupplier clock){
+        if (!(rate>0.0)) throw new IllegalArgumentException("rate is not positive: "+rate);
+        if (burst<=0) throw new IllegalArgumentException("burst is not positive: "+burst);
+        this.rate=rate;
+        this.burst=burst;
+        this.mode=Objects.requireNonNull(mode,"mode is null");
+        this.clock=clock;
+        interval=Math.max(1L,Math.round(1e9/rate));
+        tolerance=interval*(burst-1);
+        due=new AtomicLong(clock.getAsLong());
+    }
+    
+    /**
+     * Wait for admission, and call the method.
+     * @param <T> The type of data returned by the step.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if the call is rejected or interrupted.
+     */
+    @Override
+    public <T> T apply(SQLSupplier<? extends T> method)
+        throws SQLException
+    {
+        admit();
+        return method.get();
+    }
+    
+    /**
+     * Wait for admission, and call the method.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if the call is rejected or interrupted.
+     */
+    @Override
+    public int applyAsInt(SQLIntSupplier method)
+        throws SQLException
+    {
+        admit();
+        return method.getAsInt();
+    }
+    
+    /**
+     * Wait for admission, and call the method.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if the call is rejected or interrupted.
+     */
+    @Override
+    public long applyAsLong(SQLLongSupplier method)
+        throws SQLException
+    {
+        admit();
+        return method.getAsLong();
+    }
+    
+    /**
+     * Wait for admission, and call the method.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if the call is rejected or interrupted.
+     */
+    @Override
+    public double applyAsDouble(SQLDoubleSupplier method)
+        throws SQLException
+    {
+        admit();
+        return method.getAsDouble();
+    }
+    
+    /**
+     * Wait for admission, and call the method.
+     * @param method Called to get the result
+     * @return the result from {@code method}
+     * @throws SQLException if {@code method} does, or if the call is rejected or interrupted.
+     */
+    @Override
+    public boolean applyAsBoolean(SQLBooleanSupplier method)
+        throws SQLException
+    {
+        admit();
+        return method.getAsBoolean();
+    }
+    
+    /**
+     * Wait for admission, and call the method.
+     * @param method Called to do the work
+     * @throws SQLException if {@code method} does, or if the call is rejected or interrupted.
+     */
+    @Override
+    public void apply(SQLRunnable method)
+        throws SQLException
+    {
+        admit();
+        method.run();
+    }
+    
+    /**
+     * The string represetation of the step
+     * @return the string represetation
+     */
+    @Override
+    public String toString(){
+        return "ThrottleStep[rate="+rate+",burst="+burst+",mode="+mode+"]";
+    }
+    
+    private void admit()
+        throws SQLException
+    {
+        long now;
+        long next;
+        while (true){
+            long current=due.get();
+            now=clock.getAsLong();
+            long start=current-now>0?current:now;
+            if (mode==Mode.FAIL&&start-now>tolerance){
+                throw new SQLTransientException("Throughput limit of "+rate+" calls per second exceeded",throttledState);
+            }
+            next=start+interval;
+            if (due.compareAndSet(current,next)) break;
+        }
+        // In QUEUE mode, the call is admitted when it is within the tolerance
+        long deadline=next-interval-tolerance;
+        if (deadline-now<=0) return;
+        Thread thread=Thread.currentThread();
+        while (true){
+            if (thread.isInterrupted()){
+                release();
+                throw new SQLException("Interrupted while waiting for admission",LatencyStep.canceledState);
+            }
+            long remaining=deadline-clock.getAsLong();
+            if (remaining<=0) return;
+            LockSupport.parkNanos(this,remaining);
+        }
+    }
+    
+    // Give back the slot of a call that will not be made, so the calls after it are not delayed.
+    // The due time is not moved back before the current time, as that would allow a larger burst.
+    private void release(){
+        while (true){
+            long current=due.get();
+            long now=clock.getAsLong();
+            long previous=current-interval;
+            long next=previous-now>0?previous:now;
+            if (next==current||due.compareAndSet(current,next)) return;
+        }
+    }
+}
@@ -1,20 +1,29 @@
 package io.github.karstenspang.mockjdbc;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Base class for wraps.
  * Implements an interface by passing method calls onto another
  * object implementing the same interface. A {@link Step} from a
- * {@link Supplier} is applied to the method call.
+ * {@link Supplier} is applied to the method call. If the supplier is a
+ * {@link MethodStepSupplier}, it is told which method is called, and with
+ * which arguments.
  */
 public class Wrap {
+    private static final Logger logger=Logger.getLogger(Wrap.class.getName());
     /** The wrapped object */
     protected final Object wrapped;
     /** Steps to apply */
     protected final Supplier<Step> stepSupplier;
+    /** {@link #stepSupplier} if it is a {@link MethodStepSupplier}, otherwise {@code null} */
+    protected final MethodStepSupplier methodStepSupplier;
+    /** Arguments of methods without parameters, for {@link MethodStepSupplier#get(WrapMethod,Object[])} */
+    protected static final Object[] noArgs=new Object[0];
     /**
      * Wrap an object
      * @param wrapped Object to wrap
@@ -22,7 +31,7 @@ public class Wrap {
      * @throws NullPointerException if {@code wrapped} or {@code stepSupplier} is {@code null}.
      */
     public Wrap(Object wrapped,Supplier<Step> stepSupplier){
-        this(Wrap.class.getName(),wrapped,stepSupplier);
+        this(logger,wrapped,stepSupplier);
     }
     
     /**
@@ -43,10 +52,39 @@ public class Wrap {
      * @throws NullPointerException if {@code wrapped} or {@code stepSupplier} is {@code null}.
      */
     protected Wrap(String className,Object wrapped,Supplier<Step> stepSupplier){
+        this(Logger.getLogger(className),wrapped,stepSupplier);
+    }
+    
+    /**
+     * Wrap an object.
+     * This is the constructor used by the generated wraps. They pass their
+     * own static logger, so creating a wrap does not look up a logger, and
+     * nothing is formatted unless the logger is enabled for {@link Level#FINE}.
+     * @param logger Logger of the wrap class. Its name is logged as the name of the wrap class.
+     * @param wrapped Object to wrap
+     * @param stepSupplier Supplier of steps to wrap the object with.
+     * @throws NullPointerException if {@code wrapped} or {@code stepSupplier} is {@code null}.
+     */
+    protected Wrap(Logger logger,Object wrapped,Supplier<Step> stepSupplier){
         this.wrapped=Objects.requireNonNull(wrapped,"wrapped is null");
         this.stepSupplier=Objects.requireNonNull(stepSupplier,"stepSupplier is null");
-        Logger logger=Logger.getLogger(className);
-        logger.fine("Wrapping "+String.valueOf(wrapped)+" in "+className+ " with step supplier "+String.valueOf(stepSupplier));
+        methodStepSupplier=stepSupplier instanceof MethodStepSupplier?(MethodStepSupplier)stepSupplier:null;
+        if (logger.isLoggable(Level.FINE)) logger.fine("Wrapping "+String.valueOf(wrapped)+" in "+logger.getName()+" with step supplier "+String.valueOf(stepSupplier));
+    }
+    
+    /**
+     * Build a mask of the methods to intercept.
+     * @param methods All the methods of an interface, in the order of their
+     *        {@link WrapMethod#ordinal()}.
+     * @param intercepted The methods to intercept. If {@code null}, all methods are intercepted.
+     * @return An array with an element for each method, {@code true} if the method is intercepted.
+     */
+    protected static boolean[] interceptionMask(WrapMethod[] methods,Set<? extends WrapMethod> intercepted){
+        boolean[] mask=new boolean[methods.length];
+        for (int i=0;i<methods.length;i++){
+            mask[i]=intercepted==null||intercepted.contains(methods[i]);
+        }
+        return mask;
     }
     
     /**
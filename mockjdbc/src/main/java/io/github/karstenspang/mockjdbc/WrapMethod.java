@@ -0,0 +1,33 @@
+package io.github.karstenspang.mockjdbc;
+
+/**
+ * Identifies a method of an interface intercepted by a {@link Wrap}.
+ * The auto-generated wraps in {@link io.github.karstenspang.mockjdbc.wrap}
+ * come with an enum implementing this interface for each wrapped interface,
+ * for example {@link io.github.karstenspang.mockjdbc.wrap.ConnectionMethod}.
+ */
+public interface WrapMethod {
+    /**
+     * Get the interface the method belongs to.
+     * @return The interface the method belongs to.
+     */
+    Class<?> declaringInterface();
+    
+    /**
+     * Get the name of the method.
+     * @return The name of the method.
+     */
+    String methodName();
+    
+    /**
+     * Get the parameter types of the method.
+     * @return A copy of the parameter types of the method.
+     */
+    Class<?>[] parameterTypes();
+    
+    /**
+     * Get the index of the method among the methods of the interface.
+     * @return The index of the method.
+     */
+    int ordinal();
+}
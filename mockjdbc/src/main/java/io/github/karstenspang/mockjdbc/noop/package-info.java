@@ -4,7 +4,8 @@
  * All parameters are ignored.
  *
  * Except for the {@link NoopDriver}, all classes are autogenerated from
- * the interfaces in {@link java.sql}.
+ * the interfaces in {@link java.sql}, and the data source and pooled
+ * connection interfaces in {@link javax.sql}.
  * For example {@link io.github.karstenspang.mockjdbc.noop.NoopConnection}
  * implements {@link java.sql.Connection}.
  * There is only one instance of each class.
@@ -12,7 +13,7 @@
  * The methods do nothing, except that non-void methods return a value.
  * The value returned depends on the type:
  * <ul>
- *  <li>For an interface in {@link java.sql}, the instance of the 
+ *  <li>For an interface with a no-op class, the instance of the
  *      corresponding no-op class (which can be wrapped).</li>
  *  <li>For any other object type, {@code null}.</li>
  *  <li>For numeric primitive types, the appropriate zero value.</li>
@@ -1,5 +1,6 @@
 /**
- * Auto-generated classes that wrap the interfaces in {@link java.sql}.
+ * Auto-generated classes that wrap the interfaces in {@link java.sql},
+ * and the data source and pooled connection interfaces in {@link javax.sql}.
  * They all extend {@link io.github.karstenspang.mockjdbc.Wrap}.
  * All methods defined in the interface are implemented to call the
  * corresponding method of the wrapped object indirectly in the application of a
@@ -16,6 +17,12 @@
  * It is up to {@code apply} to execute the method call.
  * In other words, <b>every</b> method call to a wrap causes a 
  * {@link io.github.karstenspang.mockjdbc.Step} to be supplied and applied.
+ * As an optimization, if the step is the
+ * {@link io.github.karstenspang.mockjdbc.PassThruStep} instance,
+ * the wrapped object is called directly, which has the same effect.
+ * Together with the log messages only being built when
+ * {@link java.util.logging.Level#FINEST} is enabled, this means that a call
+ * to a wrap does not allocate any objects in this case.
  * However, this does not
  * apply to methods defined in {@link java.lang.Object}, such as {@link java.lang.Object#toString()}.<p>
  * The wraps have constructors that take an object to be wrapped and a
@@ -26,6 +33,27 @@
  * matches {@link io.github.karstenspang.mockjdbc.Wrapper}&lt;{@link java.sql.Connection}&gt;.
  * For convenience, they also have constructors where the second argument
  * is an {@link Iterable}&lt;{@link io.github.karstenspang.mockjdbc.Step}&gt;.
+ * <h2>Selective Interception</h2>
+ * For each interface there is an enum identifying the methods of the interface,
+ * for example {@link io.github.karstenspang.mockjdbc.wrap.ConnectionMethod}.
+ * The wraps have constructors that take a
+ * {@link java.util.Set}&lt;? extends {@link io.github.karstenspang.mockjdbc.WrapMethod}&gt;
+ * of the methods to intercept, for example
+ * {@link io.github.karstenspang.mockjdbc.wrap.ConnectionWrap#ConnectionWrap(java.sql.Connection,java.util.function.Supplier,java.util.Set)}.
+ * Calls to methods not in the set go directly to the wrapped object, without
+ * a step being supplied, and without logging. This is checked by a lookup in a
+ * {@code boolean} array computed when the wrap is constructed, and is useful
+ * when only a few methods are of interest to a test, such as
+ * {@link java.sql.Connection#commit()}, and the rest of the calls should
+ * neither consume steps nor cost anything.
+ * <p>
+ * The enums also identify the method calls to a
+ * {@link io.github.karstenspang.mockjdbc.MethodStepSupplier}.
+ * If the step supplier of a wrap is one, the wrap calls
+ * {@link io.github.karstenspang.mockjdbc.MethodStepSupplier#get(io.github.karstenspang.mockjdbc.WrapMethod,java.lang.Object[])}
+ * with the method and the arguments of the call, rather than
+ * {@link java.util.function.Supplier#get()}. See
+ * {@link io.github.karstenspang.mockjdbc.MethodProgram} for a program per method.
  * <h2>Exceptions</h2>
  * The vast majority of the methods of the interfaces in {@link java.sql}
  * are declared to throw {@link java.sql.SQLException}, and consequently, the
@@ -0,0 +1,38 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * The step supplier bound by {@link MockDriver#callWith} and {@link MockDriver#runWith}.
+ * This version, for Java 25 and later, keeps the binding in a {@link ScopedValue}.
+ * Nothing is copied to new threads, and the binding is seen by subtasks
+ * forked in a {@code StructuredTaskScope}.
+ */
+final class ProgramScope {
+    private static final ScopedValue<Supplier<Step>> current=ScopedValue.newInstance();
+    
+    private ProgramScope(){}
+    
+    /**
+     * Get the bound step supplier
+     * @return the step supplier bound in the current thread, or {@code null} if none is.
+     */
+    static Supplier<Step> current(){
+        return current.isBound()?current.get():null;
+    }
+    
+    /**
+     * Call {@code body} with {@code stepSupplier} bound.
+     * @param <T> The type of result.
+     * @param stepSupplier The step supplier to bind.
+     * @param body The code to call.
+     * @return the result of {@code body}.
+     * @throws SQLException if {@code body} does.
+     */
+    static <T> T call(Supplier<Step> stepSupplier,SQLSupplier<? extends T> body)
+        throws SQLException
+    {
+        return ScopedValue.where(current,stepSupplier).call(body::get);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import java.sql.Connection;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CanonicalWrapperTest {
+    /** Connections that are all equal to each other, but not identical */
+    private static class IdentityConnection extends NoopConnection {
+        @Override
+        public boolean equals(Object other){return true;}
+        @Override
+        public int hashCode(){return 0;}
+    }
+    
+    @Test
+    @DisplayName("The same object wrapped with the same step supplier gives the same wrap")
+    public void testSame()
+    {
+        CanonicalWrapper<Connection> wrapper=new CanonicalWrapper<>(ConnectionWrap::new);
+        Supplier<Step> stepSupplier=PassThruStep::instance;
+        Connection conn=NoopConnection.instance();
+        Connection wrap=wrapper.wrap(conn,stepSupplier);
+        assertInstanceOf(ConnectionWrap.class,wrap);
+        assertSame(wrap,wrapper.wrap(conn,stepSupplier));
+        assertEquals(1,wrapper.size());
+    }
+    
+    @Test
+    @DisplayName("Objects are matched by identity, not equality")
+    public void testIdentity()
+    {
+        CanonicalWrapper<Connection> wrapper=new CanonicalWrapper<>(ConnectionWrap::new);
+        Supplier<Step> stepSupplier=PassThruStep::instance;
+        Connection conn1=new IdentityConnection();
+        Connection conn2=new IdentityConnection();
+        Connection wrap1=wrapper.wrap(conn1,stepSupplier);
+        Connection wrap2=wrapper.wrap(conn2,stepSupplier);
+        assertNotSame(wrap1,wrap2);
+        assertSame(wrap1,wrapper.wrap(conn1,stepSupplier));
+        assertSame(wrap2,wrapper.wrap(conn2,stepSupplier));
+        assertEquals(2,wrapper.size());
+    }
+    
+    @Test
+    @DisplayName("A different step supplier gives a new wrap")
+    public void testOtherSupplier()
+    {
+        CanonicalWrapper<Connection> wrapper=new CanonicalWrapper<>(ConnectionWrap::new);
+        Supplier<Step> stepSupplier1=PassThruStep::instance;
+        Supplier<Step> stepSupplier2=PassThruStep::instance;
+        Connection conn=NoopConnection.instance();
+        Connection wrap1=wrapper.wrap(conn,stepSupplier1);
+        Connection wrap2=wrapper.wrap(conn,stepSupplier2);
+        assertNotSame(wrap1,wrap2);
+        assertSame(wrap2,wrapper.wrap(conn,stepSupplier2));
+        assertEquals(1,wrapper.size());
+    }
+    
+    @Test
+    @DisplayName("Null wrapper is rejected")
+    public void testNull()
+    {
+        assertThrows(NullPointerException.class,()->new CanonicalWrapper<Connection>(null));
+    }
+}
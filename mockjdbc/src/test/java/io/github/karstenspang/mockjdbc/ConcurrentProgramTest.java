@@ -0,0 +1,81 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentProgramTest {
+    @Test
+    @DisplayName("Program with one exception returns one exception and then passthru")
+    public void testOneException()
+    {
+        ExceptionStep step=new ExceptionStep(new SQLException("my exception"));
+        ConcurrentProgram program=new ConcurrentProgram(List.of(step));
+        assertEquals("["+step.toString()+"]",program.toString());
+        assertEquals(1,program.remaining());
+        assertSame(step,program.get());
+        assertEquals(0,program.remaining());
+        assertInstanceOf(PassThruStep.class,program.get());
+        assertInstanceOf(PassThruStep.class,program.get());
+        assertEquals(0,program.remaining());
+    }
+    
+    @Test
+    @DisplayName("Null steps are rejected")
+    public void testNull()
+    {
+        assertThrows(NullPointerException.class,()->new ConcurrentProgram(null));
+    }
+    
+    @Test
+    @DisplayName("Each step is handed out exactly once to 64 threads getting steps at the same time")
+    public void testContention()
+        throws Exception
+    {
+        final int threadCount=64;
+        final int stepCount=100_000;
+        final int getsPerThread=2*stepCount/threadCount;
+        List<Step> steps=new ArrayList<>(stepCount);
+        for (int i=0;i<stepCount;i++){
+            steps.add(new ConstantStep(Integer.valueOf(i)));
+        }
+        ConcurrentProgram program=new ConcurrentProgram(steps);
+        CountDownLatch start=new CountDownLatch(1);
+        List<List<Step>> received=new ArrayList<>();
+        List<TestThread> threads=new ArrayList<>();
+        for (int t=0;t<threadCount;t++){
+            List<Step> mine=new ArrayList<>();
+            received.add(mine);
+            threads.add(new TestThread(()->{
+                start.await();
+                for (int i=0;i<getsPerThread;i++){
+                    mine.add(program.get());
+                }
+            }));
+        }
+        for (TestThread thread:threads) thread.start();
+        start.countDown();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        Map<Step,Integer> counts=new IdentityHashMap<>();
+        int passThru=0;
+        for (List<Step> mine:received){
+            assertEquals(getsPerThread,mine.size());
+            for (Step step:mine){
+                if (step==PassThruStep.instance()) passThru++;
+                else counts.merge(step,1,Integer::sum);
+            }
+        }
+        assertEquals(stepCount,counts.size(),"distinct steps handed out");
+        for (Step step:steps){
+            assertEquals(Integer.valueOf(1),counts.get(step),()->"times "+step+" was handed out");
+        }
+        assertEquals(threadCount*getsPerThread-stepCount,passThru,"pass-through steps");
+        assertEquals(0,program.remaining());
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the number of {@link MockDriver#connect} calls per second to the no-op driver,
+ * with logging off, directly and through a {@link ConnectionPool}.
+ * Not run as part of the tests. Run with
+ * {@code java -cp <test class path> io.github.karstenspang.mockjdbc.ConnectBenchmark [iterations]}.
+ */
+public class ConnectBenchmark {
+    private static volatile Object sink;
+    
+    public static void main(String[] args)
+        throws SQLException
+    {
+        int iterations=args.length>0?Integer.parseInt(args[0]):2_000_000;
+        Logger.getLogger("io.github.karstenspang.mockjdbc").setLevel(Level.INFO);
+        // Registers the driver
+        MockDriver.logPassword(false);
+        Driver driver=DriverManager.getDriver("jdbc:mock:noop:");
+        Properties info=new Properties();
+        info.setProperty("user","scott");
+        info.setProperty("password","tiger");
+        for (int round=0;round<3;round++){
+            long start=System.nanoTime();
+            for (int i=0;i<iterations;i++){
+                sink=driver.connect("jdbc:mock:noop:",info);
+            }
+            long elapsed=System.nanoTime()-start;
+            if (round==2) System.out.printf("%-24s %,14.0f connects/s%n","MockDriver.connect",iterations*1e9/elapsed);
+        }
+        for (int round=0;round<3;round++){
+            long start=System.nanoTime();
+            for (int i=0;i<iterations;i++){
+                driver.connect("jdbc:mock:pool:noop:",info).close();
+            }
+            long elapsed=System.nanoTime()-start;
+            if (round==2) System.out.printf("%-24s %,14.0f connects/s%n","Pooled connect and close",iterations*1e9/elapsed);
+        }
+        ConnectionPool pool=MockDriver.connectionPool("jdbc:mock:pool:noop:");
+        System.out.printf("%-24s %,14.1f ns%n","Average borrow time",pool.borrowTime().toNanos()/(double)pool.borrows());
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionLimitTest {
+    private static final String url="jdbc:mock:noop:limited";
+    
+    @AfterEach
+    void resetLimit()
+    {
+        MockDriver.setConnectionLimit(url,null);
+        MockDriver.setStepSupplier(null);
+    }
+    
+    @Test
+    @DisplayName("Connects above the limit fail, and closing a connection returns its permit once")
+    public void testFail()
+        throws SQLException
+    {
+        ConnectionLimit limit=new ConnectionLimit(2,Duration.ZERO);
+        MockDriver.setConnectionLimit(url,limit);
+        Connection c1=DriverManager.getConnection(url);
+        Connection c2=DriverManager.getConnection(url);
+        SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection(url));
+        assertEquals(ConnectionLimit.rejectedState,e.getSQLState());
+        assertNotNull(DriverManager.getConnection("jdbc:mock:noop:"),"other URL's are not limited");
+        assertEquals(2,limit.open());
+        c1.close();
+        c1.close();
+        assertEquals(1,limit.open());
+        Connection c3=DriverManager.getConnection(url);
+        assertThrows(SQLException.class,()->DriverManager.getConnection(url));
+        c2.close();
+        c3.close();
+        assertEquals(0,limit.open());
+        assertEquals(2,limit.peak());
+        assertEquals(3,limit.admitted());
+        assertEquals(2,limit.rejected());
+        assertEquals("ConnectionLimit[maxConnections=2,open=0,peak=2]",limit.toString());
+    }
+    
+    @Test
+    @DisplayName("Aborting a connection returns its permit once")
+    public void testAbort()
+        throws SQLException
+    {
+        ConnectionLimit limit=new ConnectionLimit(1,Duration.ZERO);
+        MockDriver.setConnectionLimit(url,limit);
+        Connection conn=DriverManager.getConnection(url);
+        assertThrows(SQLException.class,()->DriverManager.getConnection(url));
+        conn.abort(Runnable::run);
+        conn.abort(Runnable::run);
+        conn.close();
+        assertEquals(0,limit.open());
+        Connection again=DriverManager.getConnection(url);
+        assertThrows(SQLException.class,()->DriverManager.getConnection(url),"the permit was returned only once");
+        again.close();
+        assertEquals(0,limit.open());
+        assertEquals(2,limit.admitted());
+    }
+    
+    @Test
+    @DisplayName("A failing connect returns its permit, and the rejection exception can be chosen")
+    public void testStepFails()
+        throws SQLException
+    {
+        SQLException tooMany=new SQLException("ORA-00018: maximum number of sessions exceeded","72000",18);
+        ConnectionLimit limit=new ConnectionLimit(1,Duration.ZERO,()->tooMany);
+        MockDriver.setConnectionLimit(url,limit);
+        MockDriver.setProgram(List.of(new ExceptionStep(new SQLException("refused","08001"))));
+        assertThrows(SQLException.class,()->DriverManager.getConnection(url));
+        assertEquals(0,limit.open());
+        Connection conn=DriverManager.getConnection(url);
+        assertSame(tooMany,assertThrows(SQLException.class,()->DriverManager.getConnection(url)));
+        assertFalse(conn.isClosed());
+        conn.close();
+        assertEquals(0,limit.open());
+    }
+    
+    @Test
+    @DisplayName("Connects wait for a permit until the timeout, and never exceed the limit")
+    public void testWait()
+        throws Exception
+    {
+        ConnectionLimit limit=new ConnectionLimit(3,Duration.ofSeconds(30));
+        MockDriver.setConnectionLimit(url,limit);
+        AtomicInteger concurrent=new AtomicInteger();
+        AtomicInteger maxConcurrent=new AtomicInteger();
+        List<TestThread> threads=new ArrayList<>();
+        for (int t=0;t<8;t++){
+            threads.add(new TestThread(()->{
+                for (int i=0;i<200;i++){
+                    Connection conn=DriverManager.getConnection(url);
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(),Math::max);
+                    Thread.yield();
+                    concurrent.decrementAndGet();
+                    conn.close();
+                }
+            }));
+        }
+        for (TestThread thread:threads) thread.start();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        assertTrue(maxConcurrent.get()<=3,"concurrent "+maxConcurrent.get());
+        assertTrue(limit.peak()<=3,"peak "+limit.peak());
+        assertEquals(1600,limit.admitted());
+        assertEquals(0,limit.rejected());
+        assertEquals(0,limit.open());
+        
+        ConnectionLimit timedOut=new ConnectionLimit(0,Duration.ofMillis(20));
+        MockDriver.setConnectionLimit(url,timedOut);
+        assertThrows(SQLException.class,()->DriverManager.getConnection(url));
+        assertEquals(1,timedOut.rejected());
+    }
+    
+    @Test
+    @DisplayName("Invalid parameters are rejected")
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class,()->new ConnectionLimit(-1,Duration.ZERO),"max");
+        assertThrows(IllegalArgumentException.class,()->new ConnectionLimit(1,Duration.ofMillis(-1)),"timeout");
+        assertThrows(NullPointerException.class,()->new ConnectionLimit(1,Duration.ZERO,null),"rejection");
+    }
+}
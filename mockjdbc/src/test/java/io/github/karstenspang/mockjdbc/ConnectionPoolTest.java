@@ -0,0 +1,276 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.noop.NoopStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionPoolTest {
+    private static final String url="jdbc:mock:noop:pooled";
+    
+    @AfterEach
+    void resetPool()
+    {
+        MockDriver.setConnectionPool(url,null);
+        MockDriver.setStepSupplier(null);
+    }
+    
+    // Keeps its settings, and records the rollbacks
+    static class StatefulConnection extends NoopConnection {
+        boolean autoCommit=true;
+        boolean readOnly;
+        int isolation=Connection.TRANSACTION_READ_COMMITTED;
+        String schema="PUBLIC";
+        int holdability=ResultSet.HOLD_CURSORS_OVER_COMMIT;
+        int networkTimeout=1000;
+        Map<String,Class<?>> typeMap=Map.of();
+        int rollbacks;
+        boolean closed;
+        final List<ClosableStatement> statements=new ArrayList<>();
+        @Override
+        public boolean getAutoCommit(){return autoCommit;}
+        @Override
+        public void setAutoCommit(boolean autoCommit){this.autoCommit=autoCommit;}
+        @Override
+        public boolean isReadOnly(){return readOnly;}
+        @Override
+        public void setReadOnly(boolean readOnly){this.readOnly=readOnly;}
+        @Override
+        public int getTransactionIsolation(){return isolation;}
+        @Override
+        public void setTransactionIsolation(int level){isolation=level;}
+        @Override
+        public String getSchema(){return schema;}
+        @Override
+        public void setSchema(String schema){this.schema=schema;}
+        @Override
+        public int getHoldability(){return holdability;}
+        @Override
+        public void setHoldability(int holdability){this.holdability=holdability;}
+        @Override
+        public int getNetworkTimeout(){return networkTimeout;}
+        @Override
+        public void setNetworkTimeout(Executor executor,int milliseconds){networkTimeout=milliseconds;}
+        @Override
+        public Map<String,Class<?>> getTypeMap(){return typeMap;}
+        @Override
+        public void setTypeMap(Map<String,Class<?>> map){typeMap=map;}
+        @Override
+        public Statement createStatement(){
+            ClosableStatement statement=new ClosableStatement();
+            statements.add(statement);
+            return statement;
+        }
+        @Override
+        public void rollback(){rollbacks++;}
+        @Override
+        public boolean isClosed(){return closed;}
+        @Override
+        public void close(){closed=true;}
+    }
+    
+    static class ClosableStatement extends NoopStatement {
+        int closes;
+        @Override
+        public void close(){closes++;}
+    }
+    
+    @Test
+    @DisplayName("A returned connection is reused, with the transaction rolled back and the settings restored")
+    public void testReuse()
+        throws SQLException
+    {
+        ConnectionPool pool=new ConnectionPool(2,Duration.ZERO);
+        MockDriver.setConnectionPool(url,pool);
+        StatefulConnection physical=new StatefulConnection();
+        MockDriver.setProgram(List.of(new ConstantStep(physical),new ExceptionStep(new SQLException("refused","08001"))));
+        Connection conn=DriverManager.getConnection(url);
+        conn.setAutoCommit(false);
+        conn.setReadOnly(true);
+        conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        conn.setSchema("APP");
+        conn.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
+        conn.setNetworkTimeout(Runnable::run,5000);
+        conn.setTypeMap(Map.of("POINT",Object.class));
+        assertFalse(physical.autoCommit);
+        assertEquals(5000,physical.networkTimeout);
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertFalse(conn.isValid(1));
+        assertFalse(physical.closed);
+        assertEquals(1,physical.rollbacks);
+        assertTrue(physical.autoCommit);
+        assertFalse(physical.readOnly);
+        assertEquals(Connection.TRANSACTION_READ_COMMITTED,physical.isolation);
+        assertEquals("PUBLIC",physical.schema);
+        assertEquals(ResultSet.HOLD_CURSORS_OVER_COMMIT,physical.holdability);
+        assertEquals(1000,physical.networkTimeout);
+        assertEquals(Map.of(),physical.typeMap);
+        SQLException e=assertThrows(SQLException.class,()->conn.createStatement());
+        assertEquals("08003",e.getSQLState());
+        assertThrows(SQLException.class,()->conn.setAutoCommit(true));
+        conn.close();
+        assertEquals(1,pool.idle());
+        
+        Connection again=DriverManager.getConnection(url);
+        assertNotSame(conn,again);
+        assertTrue(again.getAutoCommit());
+        assertFalse(again.isClosed());
+        again.close();
+        assertEquals(1,physical.rollbacks,"no transaction to roll back");
+        assertEquals(1,pool.connects());
+        assertEquals(2,pool.borrows());
+        assertEquals(0,pool.waits());
+        assertEquals(1,pool.closeIdle());
+        assertTrue(physical.closed);
+        assertEquals("ConnectionPool[maxSize=2,active=0,idle=0]",pool.toString());
+    }
+    
+    @Test
+    @DisplayName("A closed or aborted connection is discarded, and a failing connect does not use up the pool")
+    public void testDiscard()
+        throws SQLException
+    {
+        ConnectionPool pool=new ConnectionPool(1,Duration.ZERO);
+        MockDriver.setConnectionPool(url,pool);
+        SQLException refused=new SQLException("refused","08001");
+        StatefulConnection physical=new StatefulConnection();
+        MockDriver.setProgram(List.of(new ExceptionStep(refused),new ConstantStep(physical)));
+        assertSame(refused,assertThrows(SQLException.class,()->DriverManager.getConnection(url)));
+        Connection conn=DriverManager.getConnection(url);
+        physical.closed=true;
+        conn.close();
+        assertEquals(0,pool.idle());
+        assertEquals(1,pool.discarded());
+        Connection aborted=DriverManager.getConnection(url);
+        aborted.abort(Runnable::run);
+        assertTrue(aborted.isClosed());
+        aborted.close();
+        assertEquals(2,pool.discarded());
+        assertEquals(0,pool.active());
+        assertEquals(2,pool.connects());
+    }
+    
+    @Test
+    @DisplayName("Connects wait for a connection until the timeout, and never exceed the pool size")
+    public void testWait()
+        throws Exception
+    {
+        ConnectionPool pool=new ConnectionPool(3,Duration.ofSeconds(30));
+        MockDriver.setConnectionPool(url,pool);
+        AtomicInteger concurrent=new AtomicInteger();
+        AtomicInteger maxConcurrent=new AtomicInteger();
+        List<TestThread> threads=new ArrayList<>();
+        for (int t=0;t<8;t++){
+            threads.add(new TestThread(()->{
+                for (int i=0;i<200;i++){
+                    try(Connection conn=DriverManager.getConnection(url)){
+                        assertFalse(conn.isClosed());
+                        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(),Math::max);
+                        Thread.yield();
+                        concurrent.decrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (TestThread thread:threads) thread.start();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        assertTrue(maxConcurrent.get()<=3,"concurrent "+maxConcurrent.get());
+        assertTrue(pool.connects()<=3,"connects "+pool.connects());
+        assertEquals(1600,pool.borrows());
+        assertEquals(0,pool.active());
+        assertTrue(pool.maxBorrowTime().compareTo(pool.borrowTime())<=0);
+        
+        ConnectionPool timedOut=new ConnectionPool(1,Duration.ofMillis(20));
+        MockDriver.setConnectionPool(url,timedOut);
+        try(Connection conn=DriverManager.getConnection(url)){
+            assertFalse(conn.isClosed());
+            SQLException e=assertThrows(SQLTransientConnectionException.class,()->DriverManager.getConnection(url));
+            assertEquals(ConnectionPool.timeoutState,e.getSQLState());
+        }
+        assertEquals(1,timedOut.waits());
+        assertEquals(1,timedOut.timeouts());
+    }
+    
+    @Test
+    @DisplayName("Statements and metadata return the pooled connection, not the real one")
+    public void testStatementConnection()
+        throws SQLException
+    {
+        ConnectionPool pool=new ConnectionPool(1,Duration.ZERO);
+        MockDriver.setConnectionPool(url,pool);
+        Connection conn=DriverManager.getConnection(url);
+        Statement stmt=conn.createStatement();
+        assertSame(conn,stmt.getConnection());
+        PreparedStatement pstmt=conn.prepareStatement("select 1");
+        assertSame(conn,pstmt.getConnection());
+        assertSame(conn,conn.prepareCall("call x()").getConnection());
+        assertSame(conn,conn.getMetaData().getConnection());
+        conn.close();
+        assertThrows(SQLException.class,()->conn.createStatement());
+        pool.closeIdle();
+    }
+    
+    @Test
+    @DisplayName("Statements left open are closed when the connection is returned, the closed ones only once")
+    public void testCloseStatements()
+        throws SQLException
+    {
+        ConnectionPool pool=new ConnectionPool(1,Duration.ZERO);
+        MockDriver.setConnectionPool(url,pool);
+        StatefulConnection physical=new StatefulConnection();
+        MockDriver.setProgram(List.of(new ConstantStep(physical)));
+        Connection conn=DriverManager.getConnection(url);
+        Statement closed=conn.createStatement();
+        conn.createStatement();
+        closed.close();
+        assertEquals(1,physical.statements.get(0).closes);
+        assertEquals(0,physical.statements.get(1).closes);
+        conn.close();
+        assertEquals(1,physical.statements.get(0).closes);
+        assertEquals(1,physical.statements.get(1).closes);
+        assertEquals(1,pool.idle());
+        pool.closeIdle();
+    }
+    
+    @Test
+    @DisplayName("URL's with the pool: prefix get a default pool")
+    public void testPoolUrl()
+        throws SQLException
+    {
+        String poolUrl="jdbc:mock:pool:noop:default";
+        assertNull(MockDriver.connectionPool(poolUrl));
+        DriverManager.getConnection(poolUrl).close();
+        DriverManager.getConnection(poolUrl).close();
+        ConnectionPool pool=MockDriver.connectionPool(poolUrl);
+        assertEquals(ConnectionPool.defaultMaxSize,pool.maxSize());
+        assertEquals(1,pool.connects());
+        assertEquals(2,pool.borrows());
+        MockDriver.setConnectionPool(poolUrl,null);
+        pool.closeIdle();
+    }
+    
+    @Test
+    @DisplayName("Invalid parameters are rejected")
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class,()->new ConnectionPool(0,Duration.ZERO),"size");
+        assertThrows(IllegalArgumentException.class,()->new ConnectionPool(1,Duration.ofMillis(-1)),"timeout");
+        assertThrows(NullPointerException.class,()->new ConnectionPool(1,null),"timeout");
+    }
+}
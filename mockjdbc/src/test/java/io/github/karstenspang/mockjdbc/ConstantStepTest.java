@@ -1,5 +1,10 @@
 package io.github.karstenspang.mockjdbc;
 
+import io.github.karstenspang.mockjdbc.noop.NoopResultSet;
+import io.github.karstenspang.mockjdbc.wrap.ResultSetWrap;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeAll;
@@ -49,4 +54,37 @@ public class ConstantStepTest{
         String result=step.apply(stringSupplier);
         assertNull(result,"result");
     }
+    
+    @DisplayName("Primitive values are returned from the matching box type")
+    @Test
+    public void testPrimitives()
+    {
+        assertEquals(42,new ConstantStep(Integer.valueOf(42)).applyAsInt(()->0),"int");
+        assertEquals(42L,new ConstantStep(Long.valueOf(42L)).applyAsLong(()->0L),"long");
+        assertEquals(4.2D,new ConstantStep(Double.valueOf(4.2D)).applyAsDouble(()->0D),"double");
+        assertTrue(new ConstantStep(Boolean.TRUE).applyAsBoolean(()->false),"boolean");
+    }
+    
+    @DisplayName("ClassCastException is thrown on primitive type mismatch")
+    @Test
+    public void testPrimitiveMismatch(){
+        ConstantStep step=new ConstantStep(Long.valueOf(42L));
+        assertThrows(ClassCastException.class,()->step.applyAsInt(()->0));
+    }
+    
+    @DisplayName("NullPointerException is thrown on a null primitive")
+    @Test
+    public void testPrimitiveNull(){
+        ConstantStep step=new ConstantStep(null);
+        assertThrows(NullPointerException.class,()->step.applyAsDouble(()->0D));
+    }
+    
+    @DisplayName("The value is returned from a primitive wrap method")
+    @Test
+    public void testWrap()
+        throws SQLException
+    {
+        ResultSet rs=new ResultSetWrap(NoopResultSet.instance(),List.of(new ConstantStep(Integer.valueOf(42))));
+        assertEquals(42,rs.getInt(1));
+    }
 }
@@ -57,4 +57,32 @@ public class ExceptionStepTest {
         RuntimeException e=assertThrows(RuntimeException.class,()->st.apply(()->{}));
         assertSame(ex,e);
     }
+    
+    @Test
+    @DisplayName("Exception is thrown on primitive suppliers")
+    public void testPrimitiveSuppliers()
+    {
+        SQLException ex=new SQLException();
+        ExceptionStep st=new ExceptionStep(ex);
+        assertSame(ex,assertThrows(SQLException.class,()->st.applyAsInt(()->1)),"int");
+        assertSame(ex,assertThrows(SQLException.class,()->st.applyAsLong(()->1L)),"long");
+        assertSame(ex,assertThrows(SQLException.class,()->st.applyAsDouble(()->1D)),"double");
+        assertSame(ex,assertThrows(SQLException.class,()->st.applyAsBoolean(()->true)),"boolean");
+    }
+    
+    @Test
+    @DisplayName("A stackless step throws a new exception without a stack trace every time")
+    public void testStackless()
+    {
+        ExceptionStep st=ExceptionStep.stackless("Connection reset","08006");
+        SQLException e1=assertThrows(SQLException.class,()->st.apply(()->{}));
+        e1.addSuppressed(new SQLException("close failed"));
+        SQLException e2=assertThrows(SQLException.class,()->st.applyAsInt(()->1));
+        assertNotSame(e1,e2);
+        assertEquals(0,e2.getSuppressed().length);
+        assertNull(e2.getNextException());
+        assertEquals("Connection reset",e1.getMessage());
+        assertEquals("08006",e1.getSQLState());
+        assertEquals(0,e1.getStackTrace().length);
+    }
 }
@@ -26,4 +26,15 @@ public class FilterStepTest {
         FilterStep<Object> step=new FilterStep<Object>(SQLFilter.identity());
         assertThrows(UnsupportedOperationException.class,()->step.apply(()->{}));
     }
+    
+    @Test
+    @DisplayName("Primitive values are filtered in their boxed form")
+    public void testFilterPrimitives()
+        throws SQLException
+    {
+        assertEquals(84,new FilterStep<Integer>(i->i*2).applyAsInt(()->42),"int");
+        assertEquals(84L,new FilterStep<Long>(l->l*2).applyAsLong(()->42L),"long");
+        assertEquals(8.4D,new FilterStep<Double>(d->d*2).applyAsDouble(()->4.2D),"double");
+        assertFalse(new FilterStep<Boolean>(b->!b).applyAsBoolean(()->true),"boolean");
+    }
 }
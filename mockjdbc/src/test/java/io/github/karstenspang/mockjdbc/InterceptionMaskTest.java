@@ -0,0 +1,112 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.noop.NoopPreparedStatement;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionMethod;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.PreparedStatementMethod;
+import io.github.karstenspang.mockjdbc.wrap.PreparedStatementWrap;
+import io.github.karstenspang.mockjdbc.wrap.StatementMethod;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class InterceptionMaskTest {
+    private static class CountingSupplier implements Supplier<Step> {
+        final AtomicInteger count=new AtomicInteger();
+        final Step step;
+        CountingSupplier(Step step){this.step=step;}
+        @Override
+        public Step get(){
+            count.incrementAndGet();
+            return step;
+        }
+    }
+    
+    @Test
+    @DisplayName("Only the intercepted methods have steps supplied")
+    public void testSelected()
+        throws SQLException
+    {
+        SQLException ex=new SQLException();
+        CountingSupplier supplier=new CountingSupplier(new ExceptionStep(ex));
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),supplier,Set.of(ConnectionMethod.commit));
+        conn.rollback();
+        conn.setAutoCommit(false);
+        assertFalse(conn.getAutoCommit());
+        assertEquals(0,supplier.count.get());
+        SQLException e=assertThrows(SQLException.class,()->conn.commit());
+        assertSame(ex,e);
+        assertEquals(1,supplier.count.get());
+    }
+    
+    @Test
+    @DisplayName("A null set intercepts all methods")
+    public void testNull()
+        throws SQLException
+    {
+        CountingSupplier supplier=new CountingSupplier(PassThruStep.instance());
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),supplier,null);
+        conn.rollback();
+        conn.commit();
+        conn.isWrapperFor(Connection.class);
+        assertEquals(3,supplier.count.get());
+    }
+    
+    @Test
+    @DisplayName("An empty set intercepts no methods")
+    public void testEmpty()
+        throws SQLException
+    {
+        CountingSupplier supplier=new CountingSupplier(PassThruStep.instance());
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),supplier,Set.of());
+        conn.rollback();
+        conn.commit();
+        conn.isWrapperFor(Connection.class);
+        assertEquals(0,supplier.count.get());
+    }
+    
+    @Test
+    @DisplayName("Methods of extended interfaces can be selected")
+    public void testExtended()
+        throws SQLException
+    {
+        CountingSupplier supplier=new CountingSupplier(PassThruStep.instance());
+        PreparedStatement stmt=new PreparedStatementWrap(
+            NoopPreparedStatement.instance(),supplier,
+            Set.of(StatementMethod.close,PreparedStatementMethod.executeUpdate));
+        stmt.executeQuery();
+        stmt.setInt(1,2);
+        assertEquals(0,supplier.count.get());
+        stmt.executeUpdate();
+        assertEquals(1,supplier.count.get());
+        stmt.close();
+        assertEquals(2,supplier.count.get());
+    }
+    
+    @Test
+    @DisplayName("Overloads are identified by their parameter types")
+    public void testOverloads()
+    {
+        assertEquals(Connection.class,ConnectionMethod.createStatement_int_int.declaringInterface());
+        assertEquals("createStatement",ConnectionMethod.createStatement_int_int.methodName());
+        assertArrayEquals(new Class<?>[]{int.class,int.class},ConnectionMethod.createStatement_int_int.parameterTypes());
+        assertArrayEquals(new Class<?>[0],ConnectionMethod.createStatement.parameterTypes());
+    }
+    
+    @Test
+    @DisplayName("Every method identifier refers to a method of the interface")
+    public void testMethodsExist()
+        throws NoSuchMethodException
+    {
+        for (ConnectionMethod method:ConnectionMethod.values()){
+            assertNotNull(Connection.class.getMethod(method.methodName(),method.parameterTypes()),method.name());
+        }
+    }
+}
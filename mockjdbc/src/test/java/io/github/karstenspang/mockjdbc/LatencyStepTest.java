@@ -0,0 +1,121 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopStatement;
+import io.github.karstenspang.mockjdbc.wrap.StatementMethod;
+import io.github.karstenspang.mockjdbc.wrap.StatementWrap;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LatencyStepTest {
+    private static final long delayNanos=TimeUnit.MILLISECONDS.toNanos(50);
+    
+    @Test
+    @DisplayName("The call is delayed before it is made")
+    public void testBefore()
+        throws SQLException
+    {
+        LatencyStep step=new LatencyStep(Latency.fixed(Duration.ofNanos(delayNanos)));
+        long start=System.nanoTime();
+        long[] called={0};
+        Integer result=step.apply(()->{
+            called[0]=System.nanoTime();
+            return Integer.valueOf(1);
+        });
+        assertEquals(Integer.valueOf(1),result);
+        assertTrue(called[0]-start>=delayNanos,"delayed before the call");
+        assertEquals("LatencyStep[fixed(PT0.05S),fixed(PT0S)]",step.toString());
+    }
+    
+    @Test
+    @DisplayName("The return is delayed after the call is made")
+    public void testAfter()
+        throws SQLException
+    {
+        LatencyStep step=new LatencyStep(Latency.none(),Latency.fixed(Duration.ofNanos(delayNanos)));
+        long[] called={0};
+        int result=step.applyAsInt(()->{
+            called[0]=System.nanoTime();
+            return 2;
+        });
+        long end=System.nanoTime();
+        assertEquals(2,result);
+        assertTrue(end-called[0]>=delayNanos,"delayed after the call");
+    }
+    
+    @Test
+    @DisplayName("An interrupted wait throws SQLException with SQLState HY008 and keeps the interrupt status")
+    public void testInterrupt()
+        throws Exception
+    {
+        LatencyStep step=new LatencyStep(Latency.fixed(Duration.ofMinutes(1)));
+        boolean[] called={false};
+        boolean[] interrupted={false};
+        TestThread thread=new TestThread(()->{
+            SQLException e=assertThrows(SQLException.class,()->step.apply(()->{called[0]=true;}));
+            assertEquals(LatencyStep.canceledState,e.getSQLState());
+            interrupted[0]=Thread.currentThread().isInterrupted();
+        });
+        thread.start();
+        Thread.sleep(50);
+        thread.interrupt();
+        thread.joinAndCheck();
+        assertFalse(called[0],"called");
+        assertTrue(interrupted[0],"interrupted");
+    }
+    
+    @Test
+    @DisplayName("The longest possible delay waits, and does not overflow into no delay")
+    public void testMaxDelay()
+        throws Exception
+    {
+        LatencyStep step=new LatencyStep(Latency.fixed(Duration.ofNanos(Long.MAX_VALUE)));
+        boolean[] called={false};
+        TestThread thread=new TestThread(()->{
+            SQLException e=assertThrows(SQLException.class,()->step.apply(()->{called[0]=true;}));
+            assertEquals(LatencyStep.canceledState,e.getSQLState());
+        });
+        thread.start();
+        Thread.sleep(50);
+        thread.interrupt();
+        thread.joinAndCheck();
+        assertFalse(called[0],"called");
+    }
+    
+    @Test
+    @DisplayName("Statement.cancel cancels a delayed query when the canceller is used for cancel")
+    public void testCancel()
+        throws Exception
+    {
+        LatencyStep slow=new LatencyStep(Latency.fixed(Duration.ofMinutes(1)));
+        Statement stmt=new StatementWrap(NoopStatement.instance(),new MethodProgram(
+            Map.of(StatementMethod.cancel,StepSequence.forever(slow.canceller())),
+            StepSequence.forever(slow)));
+        TestThread thread=new TestThread(()->{
+            SQLException e=assertThrows(SQLException.class,()->stmt.executeQuery("select 1"));
+            assertEquals(LatencyStep.canceledState,e.getSQLState());
+        });
+        long start=System.nanoTime();
+        thread.start();
+        Thread.sleep(50);
+        stmt.cancel();
+        thread.joinAndCheck();
+        assertTrue(System.nanoTime()-start<TimeUnit.SECONDS.toNanos(30),"canceled early");
+    }
+    
+    @Test
+    @DisplayName("A cancel does not affect calls starting later")
+    public void testCancelBefore()
+        throws SQLException
+    {
+        LatencyStep step=new LatencyStep(Latency.fixed(Duration.ofMillis(1)));
+        step.cancel();
+        assertEquals("ok",step.apply(()->"ok"));
+        assertEquals("ok",step.canceller().apply(()->"ok"));
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LatencyTest {
+    private static final int samples=100_000;
+    private static final long milli=1_000_000L;
+    
+    @Test
+    @DisplayName("Fixed and no delay")
+    public void testFixed()
+    {
+        assertEquals(0,Latency.none().sampleNanos());
+        assertEquals(5*milli,Latency.fixed(Duration.ofMillis(5)).sampleNanos());
+        assertEquals(Long.MAX_VALUE,Latency.fixed(Duration.ofSeconds(Long.MAX_VALUE)).sampleNanos());
+    }
+    
+    @Test
+    @DisplayName("Uniform delays are within the bounds, with the expected mean")
+    public void testUniform()
+    {
+        Latency latency=Latency.uniform(Duration.ofMillis(10),Duration.ofMillis(20));
+        double sum=0;
+        for (int i=0;i<samples;i++){
+            long nanos=latency.sampleNanos();
+            assertTrue(nanos>=10*milli&&nanos<=20*milli,()->nanos+" out of bounds");
+            sum+=nanos;
+        }
+        assertEquals(15.0,sum/samples/milli,0.1);
+        assertEquals(10*milli,Latency.uniform(Duration.ofMillis(10),Duration.ofMillis(10)).sampleNanos());
+        Latency unbounded=Latency.uniform(Duration.ZERO,Duration.ofSeconds(Long.MAX_VALUE));
+        for (int i=0;i<1000;i++){
+            assertTrue(unbounded.sampleNanos()>=0,"maximum delay does not overflow");
+        }
+        Latency top=Latency.uniform(Duration.ofNanos(Long.MAX_VALUE),Duration.ofSeconds(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE,top.sampleNanos(),"min and max both clamped");
+        Latency narrow=Latency.uniform(Duration.ofNanos(Long.MAX_VALUE-1),Duration.ofSeconds(Long.MAX_VALUE));
+        for (int i=0;i<100;i++){
+            long nanos=narrow.sampleNanos();
+            assertTrue(nanos>=Long.MAX_VALUE-1,()->nanos+" out of bounds");
+        }
+    }
+    
+    @Test
+    @DisplayName("Exponential delays have the expected mean")
+    public void testExponential()
+    {
+        Latency latency=Latency.exponential(Duration.ofMillis(10));
+        double sum=0;
+        for (int i=0;i<samples;i++){
+            long nanos=latency.sampleNanos();
+            assertTrue(nanos>=0);
+            sum+=nanos;
+        }
+        assertEquals(10.0,sum/samples/milli,0.2);
+    }
+    
+    @Test
+    @DisplayName("Log-normal delays have the expected median")
+    public void testLogNormal()
+    {
+        Latency latency=Latency.logNormal(Duration.ofMillis(10),0.5);
+        int below=0;
+        for (int i=0;i<samples;i++){
+            if (latency.sampleNanos()<10*milli) below++;
+        }
+        assertEquals(0.5,below/(double)samples,0.01);
+    }
+    
+    @Test
+    @DisplayName("Histogram delays fall in the buckets with the expected frequencies")
+    public void testHistogram()
+    {
+        Latency latency=Latency.histogram(
+            new Duration[]{Duration.ofMillis(1),Duration.ofMillis(2),Duration.ofMillis(10),Duration.ofMillis(100)},
+            new double[]{6,3,1});
+        int[] counts=new int[3];
+        for (int i=0;i<samples;i++){
+            long nanos=latency.sampleNanos();
+            assertTrue(nanos>=milli&&nanos<100*milli,()->nanos+" out of bounds");
+            counts[nanos<2*milli?0:nanos<10*milli?1:2]++;
+        }
+        assertEquals(0.6,counts[0]/(double)samples,0.01);
+        assertEquals(0.3,counts[1]/(double)samples,0.01);
+        assertEquals(0.1,counts[2]/(double)samples,0.01);
+    }
+    
+    @Test
+    @DisplayName("Invalid parameters are rejected")
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class,()->Latency.fixed(Duration.ofMillis(-1)),"negative");
+        assertThrows(NullPointerException.class,()->Latency.fixed(null),"null");
+        assertThrows(IllegalArgumentException.class,()->Latency.uniform(Duration.ofMillis(2),Duration.ofMillis(1)),"min>max");
+        assertThrows(IllegalArgumentException.class,()->Latency.logNormal(Duration.ofMillis(1),-1),"sigma");
+        assertThrows(IllegalArgumentException.class,()->Latency.histogram(new Duration[]{Duration.ZERO},new double[]{1}),"bounds");
+        assertThrows(IllegalArgumentException.class,()->Latency.histogram(new Duration[]{Duration.ofMillis(2),Duration.ofMillis(1)},new double[]{1}),"order");
+        assertThrows(IllegalArgumentException.class,()->Latency.histogram(new Duration[]{Duration.ZERO,Duration.ofMillis(1)},new double[]{0}),"weights");
+    }
+}
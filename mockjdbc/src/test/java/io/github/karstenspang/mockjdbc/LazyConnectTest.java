@@ -0,0 +1,194 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LazyConnectTest {
+    private static final String url="jdbc:mock:noop:lazy";
+    
+    @AfterEach
+    void resetLazyConnect()
+    {
+        MockDriver.setLazyConnect(url,null);
+        MockDriver.setStepSupplier(null);
+    }
+    
+    // Records the calls of the setters
+    static class RecordingConnection extends NoopConnection {
+        final List<String> calls=new ArrayList<>();
+        boolean closed;
+        @Override
+        public void setAutoCommit(boolean autoCommit){calls.add("setAutoCommit("+autoCommit+")");}
+        @Override
+        public void setReadOnly(boolean readOnly){calls.add("setReadOnly("+readOnly+")");}
+        @Override
+        public void setTransactionIsolation(int level){calls.add("setTransactionIsolation("+level+")");}
+        @Override
+        public void setSchema(String schema){calls.add("setSchema("+schema+")");}
+        @Override
+        public void close(){closed=true;}
+    }
+    
+    @Test
+    @DisplayName("A connection that is only configured and closed never connects")
+    public void testAvoided()
+        throws SQLException
+    {
+        LazyConnect lazy=new LazyConnect();
+        MockDriver.setLazyConnect(url,lazy);
+        MockDriver.setProgram(List.of(new ExceptionStep(new SQLException("refused","08001"))));
+        Connection conn=DriverManager.getConnection(url);
+        assertTrue(conn instanceof LazyConnection);
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        assertFalse(conn.getAutoCommit());
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE,conn.getTransactionIsolation());
+        assertTrue(conn.isValid(1));
+        assertNull(conn.getWarnings());
+        conn.commit();
+        conn.rollback();
+        assertFalse(conn.isClosed());
+        assertFalse(((LazyConnection)conn).isConnected());
+        conn.close();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertFalse(conn.isValid(1));
+        SQLException e=assertThrows(SQLException.class,()->conn.createStatement());
+        assertEquals("08003",e.getSQLState());
+        assertThrows(SQLException.class,()->conn.getAutoCommit());
+        assertEquals(1,lazy.connections());
+        assertEquals(0,lazy.physicalConnects());
+        assertEquals(1,lazy.avoided());
+        assertEquals("LazyConnect[connections=1,physicalConnects=0,avoided=1]",lazy.toString());
+    }
+    
+    @Test
+    @DisplayName("The first call needing the real connection connects, and the settings are replayed")
+    public void testReplay()
+        throws SQLException
+    {
+        LazyConnect lazy=new LazyConnect();
+        MockDriver.setLazyConnect(url,lazy);
+        RecordingConnection physical=new RecordingConnection();
+        MockDriver.setProgram(List.of(new ConstantStep(physical)));
+        Connection conn=DriverManager.getConnection(url);
+        conn.setReadOnly(true);
+        conn.setAutoCommit(true);
+        conn.setSchema("APP");
+        conn.setAutoCommit(false);
+        assertTrue(physical.calls.isEmpty());
+        assertNotNull(conn.getMetaData());
+        assertTrue(((LazyConnection)conn).isConnected());
+        assertEquals(List.of("setReadOnly(true)","setSchema(APP)","setAutoCommit(false)"),physical.calls,"auto-commit is replayed last");
+        conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        assertEquals("setTransactionIsolation(2)",physical.calls.get(3));
+        conn.close();
+        assertTrue(physical.closed);
+        assertEquals(1,lazy.physicalConnects());
+        assertEquals(0,lazy.avoided());
+    }
+    
+    @Test
+    @DisplayName("A getter of a setting not recorded connects, and the step of the program is applied then")
+    public void testDeferredStep()
+        throws SQLException
+    {
+        LazyConnect lazy=new LazyConnect();
+        MockDriver.setLazyConnect(url,lazy);
+        SQLException refused=new SQLException("refused","08001");
+        MockDriver.setProgram(List.of(new ExceptionStep(refused)));
+        Connection conn=DriverManager.getConnection(url);
+        assertSame(refused,assertThrows(SQLException.class,()->conn.getAutoCommit()));
+        assertFalse(((LazyConnection)conn).isConnected());
+        assertFalse(conn.getAutoCommit(),"the program is used up, so the second attempt connects");
+        assertTrue(((LazyConnection)conn).isConnected());
+        conn.close();
+        assertEquals(1,lazy.physicalConnects());
+        MockDriver.setLazyConnect(url,null);
+        assertFalse(DriverManager.getConnection(url) instanceof LazyConnection);
+        assertEquals(1,lazy.connections());
+    }
+    
+    // Wait in an opener, which may only throw SQLException
+    private static void await(CountDownLatch latch)
+        throws SQLException
+    {
+        try{
+            latch.await();
+        }
+        catch(InterruptedException e){
+            throw new SQLException(e);
+        }
+    }
+    
+    @Test
+    @DisplayName("A close while the real connect is in progress is not blocked, and the connection counts as avoided")
+    public void testCloseWhileConnecting()
+        throws Exception
+    {
+        LazyConnect lazy=new LazyConnect();
+        RecordingConnection physical=new RecordingConnection();
+        CountDownLatch connecting=new CountDownLatch(1);
+        CountDownLatch connected=new CountDownLatch(1);
+        Connection conn=lazy.connection(()->{
+            connecting.countDown();
+            await(connected);
+            return physical;
+        });
+        TestThread thread=new TestThread(()->{
+            SQLException e=assertThrows(SQLException.class,()->conn.createStatement());
+            assertEquals("08003",e.getSQLState());
+        });
+        thread.start();
+        assertTrue(connecting.await(10,TimeUnit.SECONDS));
+        conn.close();
+        assertTrue(conn.isClosed());
+        connected.countDown();
+        thread.joinAndCheck();
+        assertTrue(physical.closed,"the late real connection is closed");
+        assertFalse(((LazyConnection)conn).isConnected());
+        assertEquals(0,lazy.physicalConnects());
+        assertEquals(1,lazy.avoided());
+    }
+    
+    @Test
+    @DisplayName("When two threads connect at the same time, one real connection is used, and the other is closed")
+    public void testConcurrentConnect()
+        throws Exception
+    {
+        LazyConnect lazy=new LazyConnect();
+        List<RecordingConnection> physicals=List.of(new RecordingConnection(),new RecordingConnection());
+        CountDownLatch connecting=new CountDownLatch(2);
+        int[] next={0};
+        Connection conn=lazy.connection(()->{
+            RecordingConnection physical;
+            synchronized (next){
+                physical=physicals.get(next[0]++);
+            }
+            connecting.countDown();
+            await(connecting);
+            return physical;
+        });
+        conn.setSchema("APP");
+        List<TestThread> threads=List.of(new TestThread(()->conn.createStatement()),new TestThread(()->conn.createStatement()));
+        for (TestThread thread:threads) thread.start();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        assertTrue(((LazyConnection)conn).isConnected());
+        assertNotEquals(physicals.get(0).closed,physicals.get(1).closed,"exactly one is closed");
+        RecordingConnection used=physicals.get(0).closed?physicals.get(1):physicals.get(0);
+        assertEquals(List.of("setSchema(APP)"),used.calls,"the settings are replayed on the one used");
+        assertEquals(1,lazy.physicalConnects());
+        conn.close();
+        assertTrue(used.closed);
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.noop.NoopStatement;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionMethod;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.StatementMethod;
+import io.github.karstenspang.mockjdbc.wrap.StatementWrap;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MethodProgramTest {
+    @Test
+    @DisplayName("Each method gets the steps from its own program")
+    public void testPerMethod()
+        throws SQLException
+    {
+        SQLException ex=new SQLException("Connection reset","08006");
+        MethodProgram program=new MethodProgram(
+            Map.of(StatementMethod.executeQuery,List.of(
+                PassThruStep.instance(),
+                new ExceptionStep(ex))),
+            List.of());
+        Statement stmt=new StatementWrap(NoopStatement.instance(),program);
+        stmt.getMaxRows();
+        stmt.executeQuery("select 1");
+        stmt.getFetchSize();
+        stmt.getQueryTimeout();
+        SQLException e=assertThrows(SQLException.class,()->stmt.executeQuery("select 2"));
+        assertSame(ex,e);
+        stmt.executeQuery("select 3");
+    }
+    
+    @Test
+    @DisplayName("Methods without a program get steps from the common program")
+    public void testOtherwise()
+        throws SQLException
+    {
+        MethodProgram program=new MethodProgram(
+            Map.of(ConnectionMethod.commit,List.of(new ExceptionStep(new SQLException()))),
+            List.of(new ConstantStep(Boolean.TRUE)));
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),program);
+        assertTrue(conn.isReadOnly());
+        assertFalse(conn.isReadOnly());
+        assertThrows(SQLException.class,()->conn.commit());
+    }
+    
+    @Test
+    @DisplayName("The method and arguments are passed to the supplier")
+    public void testArguments()
+        throws SQLException
+    {
+        List<WrapMethod> methods=new ArrayList<>();
+        List<List<Object>> args=new ArrayList<>();
+        MethodStepSupplier supplier=(method,a)->{
+            methods.add(method);
+            args.add(List.of(a));
+            return PassThruStep.instance();
+        };
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),supplier);
+        conn.prepareStatement("select 1",new int[]{1});
+        conn.setHoldability(2);
+        conn.commit();
+        conn.close();
+        assertEquals(List.of(ConnectionMethod.prepareStatement_String_intArray,ConnectionMethod.setHoldability,ConnectionMethod.commit,ConnectionMethod.close),methods);
+        assertEquals("select 1",args.get(0).get(0));
+        assertArrayEquals(new int[]{1},(int[])args.get(0).get(1));
+        assertEquals(List.of(2),args.get(1));
+        assertEquals(List.of(),args.get(2));
+    }
+    
+    @Test
+    @DisplayName("The driver passes DriverMethod.connect to the supplier")
+    public void testDriver()
+        throws SQLException
+    {
+        SQLException ex=new SQLException();
+        MockDriver.setStepSupplier(new MethodProgram(
+            Map.of(DriverMethod.connect,List.of(new ExceptionStep(ex))),List.of()));
+        try{
+            SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:noop:"));
+            assertSame(ex,e);
+        }
+        finally{
+            MockDriver.setStepSupplier(null);
+        }
+    }
+    
+    @Test
+    @DisplayName("Passing null values to the constructor causes NullPointerException")
+    public void testNull()
+    {
+        assertThrows(NullPointerException.class,()->new MethodProgram((Map<WrapMethod,List<Step>>)null,List.of()),"null steps");
+        assertThrows(NullPointerException.class,()->new MethodProgram(Map.of(),(List<Step>)null),"null otherwise");
+    }
+}
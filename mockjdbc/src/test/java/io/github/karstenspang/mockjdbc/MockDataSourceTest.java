@@ -0,0 +1,132 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.noop.NoopConnectionPoolDataSource;
+import io.github.karstenspang.mockjdbc.noop.NoopDataSource;
+import io.github.karstenspang.mockjdbc.noop.NoopXADataSource;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.DataSourceMethod;
+import io.github.karstenspang.mockjdbc.wrap.PooledConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.XAConnectionWrap;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import com.github.valfirst.slf4jtest.JulConfigExtension;
+import com.github.valfirst.slf4jtest.LoggingEvent;
+import com.github.valfirst.slf4jtest.TestLogger;
+import com.github.valfirst.slf4jtest.TestLoggerFactory;
+
+@ExtendWith(JulConfigExtension.class)
+public class MockDataSourceTest {
+    @AfterEach
+    void resetProgram()
+    {
+        MockDriver.setStepSupplier(null);
+    }
+    
+    @Test
+    @DisplayName("getConnection applies the steps of the program of MockDriver")
+    public void testProgram()
+        throws SQLException
+    {
+        SQLException ex=new SQLException("connection refused");
+        MockDriver.setProgram(List.of(new ExceptionStep(ex)));
+        DataSource ds=new MockDataSource(NoopDataSource.instance());
+        SQLException e=assertThrows(SQLException.class,()->ds.getConnection());
+        assertSame(ex,e);
+        assertSame(NoopConnection.instance(),ds.getConnection());
+    }
+    
+    @Test
+    @DisplayName("A MethodStepSupplier is told which method is called")
+    public void testMethodProgram()
+        throws SQLException
+    {
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),List.of());
+        MockDriver.setStepSupplier(new MethodProgram(
+            Map.of(DataSourceMethod.getConnection_String_String,List.of(new ConstantStep(conn))),
+            List.of()));
+        DataSource ds=new MockDataSource(NoopDataSource.instance());
+        assertSame(NoopConnection.instance(),ds.getConnection());
+        assertSame(conn,ds.getConnection("scott","tiger"));
+    }
+    
+    @Test
+    @DisplayName("Pooled and XA connections are obtained through the program, and can be wrapped recursively")
+    public void testPooled()
+        throws SQLException
+    {
+        MockDriver.setStepSupplier(RecursiveWrapperStepSupplier.instance());
+        ConnectionPoolDataSource cpds=new MockDataSource(NoopConnectionPoolDataSource.instance());
+        PooledConnection pooled=cpds.getPooledConnection();
+        assertInstanceOf(PooledConnectionWrap.class,pooled);
+        assertInstanceOf(ConnectionWrap.class,pooled.getConnection());
+        XAConnection xa=new MockDataSource(NoopXADataSource.instance()).getXAConnection("scott","tiger");
+        assertInstanceOf(XAConnectionWrap.class,xa);
+    }
+    
+    @Test
+    @DisplayName("Methods of interfaces not implemented by the real data source throw SQLFeatureNotSupportedException")
+    public void testNotSupported()
+    {
+        MockDataSource ds=new MockDataSource(NoopDataSource.instance());
+        assertThrows(SQLFeatureNotSupportedException.class,()->ds.getPooledConnection(),"pooled");
+        assertThrows(SQLFeatureNotSupportedException.class,()->ds.getXAConnection(),"XA");
+        MockDataSource cpds=new MockDataSource(NoopConnectionPoolDataSource.instance());
+        assertThrows(SQLFeatureNotSupportedException.class,()->cpds.getConnection(),"connection");
+    }
+    
+    @Test
+    @DisplayName("unwrap returns the mock or the real data source")
+    public void testUnwrap()
+        throws SQLException
+    {
+        MockDataSource ds=new MockDataSource(NoopDataSource.instance());
+        assertSame(ds,ds.unwrap(DataSource.class));
+        assertSame(NoopDataSource.instance(),ds.unwrap(NoopDataSource.class));
+        assertTrue(ds.isWrapperFor(NoopDataSource.class));
+        assertFalse(ds.isWrapperFor(String.class));
+        assertThrows(SQLException.class,()->ds.unwrap(String.class));
+        assertFalse(ds.isWrapperFor(XADataSource.class),"XA");
+        assertFalse(ds.isWrapperFor(ConnectionPoolDataSource.class),"pooled");
+        assertThrows(SQLException.class,()->ds.unwrap(XADataSource.class));
+        assertTrue(ds.isWrapperFor(MockDataSource.class));
+        MockDataSource xa=new MockDataSource(NoopXADataSource.instance());
+        assertTrue(xa.isWrapperFor(XADataSource.class));
+        assertSame(xa,xa.unwrap(XADataSource.class));
+        assertFalse(xa.isWrapperFor(DataSource.class));
+        assertThrows(NullPointerException.class,()->new MockDataSource(null));
+    }
+    
+    @Test
+    @DisplayName("The password is hidden in the log")
+    public void testLog()
+        throws SQLException
+    {
+        TestLogger logger=TestLoggerFactory.getTestLogger(MockDataSource.class);
+        logger.clear();
+        new MockDataSource(NoopDataSource.instance()).getConnection("scott","tiger");
+        List<String> messages=new ArrayList<>();
+        for (LoggingEvent event:logger.getLoggingEvents()){
+            messages.add(event.getMessage());
+        }
+        List<String> expected=List.of(
+            "Apply PassThruStep to DataSource.getConnection(scott,[HIDDEN])",
+            "Result: NoopConnection"
+        );
+        assertEquals(expected,messages);
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.karstenspang.mockjdbc;
 
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
@@ -8,6 +10,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -265,4 +269,113 @@ public class MockDriverTest {
             MockDriver.logPassword(savedLogPassword);
         }
     }
+    
+    @Test
+    @DisplayName("A program registered under a name is selected by the URL, in any thread")
+    public void testNamedProgram()
+        throws Exception
+    {
+        SQLException refused=new SQLException("Connection refused","08001");
+        MockDriver.registerProgram("test1",StepSequence.forever(new ExceptionStep(refused)));
+        try{
+            TestThread thread=new TestThread(()->{
+                SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:@test1:noop:"));
+                assertSame(refused,e);
+                assertNotNull(DriverManager.getConnection("jdbc:mock:noop:"),"unnamed");
+            });
+            thread.start();
+            thread.joinAndCheck();
+            MockDriver.registerStepSupplier("test1",PassThruStep::instance);
+            assertNotNull(DriverManager.getConnection("jdbc:mock:@test1:noop:"),"replaced");
+        }
+        finally{
+            MockDriver.registerStepSupplier("test1",null);
+        }
+        SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:@test1:noop:"));
+        assertEquals("No program registered as test1",e.getMessage());
+        assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:@:noop:"),"no name");
+        assertThrows(IllegalArgumentException.class,()->MockDriver.registerProgram("a:b",List.of()),"colon");
+        assertThrows(IllegalArgumentException.class,()->MockDriver.registerProgram("",List.of()),"empty");
+    }
+    
+    @Test
+    @DisplayName("A program can be written in the URL, and is shared by the connections with the URL")
+    public void testUrlProgram()
+        throws Exception
+    {
+        String url="jdbc:mock:{pass, fail(08001,0,'Refused'), pass*}:noop:";
+        assertNotNull(DriverManager.getConnection(url));
+        TestThread thread=new TestThread(()->{
+            SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection(url));
+            assertEquals("Refused",e.getMessage());
+        });
+        thread.start();
+        thread.joinAndCheck();
+        assertNotNull(DriverManager.getConnection(url));
+        SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:{oops}:noop:"));
+        assertInstanceOf(IllegalArgumentException.class,e.getCause());
+        assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:{pass:noop:"),"unterminated");
+        e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:{fail(08001,0,'Refused {x}')}:noop:"));
+        assertEquals("Refused {x}",e.getMessage(),"} in a message");
+        assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:{fail(08001,0,'}:noop:"),"unterminated message");
+        e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:{delay(999999999999999999m)}:noop:"));
+        assertInstanceOf(IllegalArgumentException.class,e.getCause(),"duration too large");
+    }
+    
+    @Test
+    @DisplayName("Threads connecting to a new URL with a program at the same time share the program")
+    public void testUrlProgramRace()
+        throws Exception
+    {
+        String url="jdbc:mock:{fail(08001)*4, pass*}:noop:race";
+        CountDownLatch start=new CountDownLatch(1);
+        AtomicInteger failures=new AtomicInteger();
+        List<TestThread> threads=new ArrayList<>();
+        for (int t=0;t<8;t++){
+            threads.add(new TestThread(()->{
+                start.await();
+                try{
+                    DriverManager.getConnection(url);
+                }
+                catch(SQLException e){
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        for (TestThread thread:threads) thread.start();
+        start.countDown();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        assertEquals(4,failures.get());
+    }
+    
+    @Test
+    @DisplayName("URL's with a program share it when the URL cache is full")
+    public void testUrlProgramCacheFull()
+        throws SQLException
+    {
+        for (int i=0;i<1000;i++) DriverManager.getConnection("jdbc:mock:noop:fill"+i);
+        String url="jdbc:mock:{fail(08001), pass*}:noop:full";
+        assertThrows(SQLException.class,()->DriverManager.getConnection(url));
+        assertNotNull(DriverManager.getConnection(url));
+        assertNotNull(DriverManager.getConnection(url));
+    }
+    
+    @Test
+    @DisplayName("Without a driver for the URL, connect throws the SQLException of DriverManager every time")
+    public void testNoSuitableDriver()
+        throws SQLException
+    {
+        for (int i=0;i<2;i++){
+            SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:nosuchdriver:"));
+            assertEquals("08001",e.getSQLState());
+        }
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),List.of());
+        MockDriver.setProgram(List.of(new ConstantStep(conn)));
+        try{
+            assertSame(conn,DriverManager.getConnection("jdbc:mock:nosuchdriver:"),"the real driver is not needed");
+        }
+        finally{
+            MockDriver.setProgram(null);
+        }
+    }
 }
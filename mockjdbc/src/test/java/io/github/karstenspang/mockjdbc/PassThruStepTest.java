@@ -39,4 +39,16 @@ public class PassThruStepTest {
         st.apply(()->{i1.incrementAndGet();});
         assertEquals(1,i1.get());
     }
+    
+    @Test
+    @DisplayName("Primitive values are passed through")
+    public void testPrimitives()
+        throws SQLException
+    {
+        PassThruStep st=PassThruStep.instance();
+        assertEquals(42,st.applyAsInt(()->42),"int");
+        assertEquals(42L,st.applyAsLong(()->42L),"long");
+        assertEquals(4.2D,st.applyAsDouble(()->4.2D),"double");
+        assertTrue(st.applyAsBoolean(()->true),"boolean");
+    }
 }
@@ -0,0 +1,89 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ProgramCompilerTest {
+    @Test
+    @DisplayName("A program is compiled into the described sequence of steps")
+    public void testCompile()
+        throws SQLException
+    {
+        StepSequence program=ProgramCompiler.compile("pass*3, fail(08001,12520), delay(50ms), pass*");
+        assertEquals(StepSequence.INFINITE,program.length());
+        for (int i=0;i<3;i++) assertSame(PassThruStep.instance(),program.step(i));
+        Step fail=program.step(3);
+        SQLException e=assertThrows(SQLException.class,()->fail.apply(()->{}));
+        assertEquals("08001",e.getSQLState());
+        assertEquals(12520,e.getErrorCode());
+        assertEquals(ProgramCompiler.defaultMessage,e.getMessage());
+        assertEquals(0,e.getStackTrace().length);
+        assertNotSame(e,assertThrows(SQLException.class,()->fail.apply(()->{})),"a new exception each time");
+        assertInstanceOf(LatencyStep.class,program.step(4));
+        assertEquals("LatencyStep[fixed(PT0.05S),fixed(PT0S)]",program.step(4).toString());
+        assertSame(PassThruStep.instance(),program.step(1000000));
+    }
+    
+    @Test
+    @DisplayName("Groups, repeats and messages")
+    public void testGroups()
+        throws SQLException
+    {
+        StepSequence program=ProgramCompiler.compile("(pass, fail(40001, 0, 'Deadlock: retry'))*2, delay(1ms,2ms)");
+        assertEquals(5,program.length());
+        assertSame(PassThruStep.instance(),program.step(2));
+        SQLException e=assertThrows(SQLException.class,()->program.step(3).apply(()->{}));
+        assertEquals("Deadlock: retry",e.getMessage());
+        assertEquals("LatencyStep[uniform(PT0.001S,PT0.002S),fixed(PT0S)]",program.step(4).toString());
+        assertEquals(0,ProgramCompiler.compile("  ").length());
+        assertEquals(0,ProgramCompiler.compile("pass*0").length());
+    }
+    
+    @Test
+    @DisplayName("Programs and equal steps are shared")
+    public void testCache()
+    {
+        StepSequence program=ProgramCompiler.compile("fail(08006),pass");
+        assertSame(program,ProgramCompiler.compile("fail(08006),pass"));
+        StepSequence other=ProgramCompiler.compile("pass,fail(08006)");
+        assertSame(program.step(0),other.step(1));
+        assertNotSame(program.step(0),ProgramCompiler.compile("fail(08006,1)").step(0));
+    }
+    
+    @Test
+    @DisplayName("A program can be loaded from a file with comments")
+    public void testLoad(@TempDir Path dir)
+        throws IOException
+    {
+        Path file=dir.resolve("program.txt");
+        Files.writeString(file,"# Fail the second connection\npass,\nfail(08001,0,'Refused # 1') # refused\n",StandardCharsets.UTF_8);
+        StepSequence program=ProgramCompiler.load(file);
+        assertEquals(2,program.length());
+        SQLException e=assertThrows(SQLException.class,()->program.step(1).apply(()->{}));
+        assertEquals("Refused # 1",e.getMessage(),"# in a message is not a comment");
+    }
+    
+    @Test
+    @DisplayName("Invalid programs are rejected with the position")
+    public void testInvalid()
+    {
+        IllegalArgumentException e=assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("pass,skip"));
+        assertEquals("Unknown step 'skip' at position 9 in program: pass,skip",e.getMessage());
+        assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("pass pass"),"missing comma");
+        assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("fail()"),"no state");
+        assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("fail(08001,1,'x)"),"unterminated");
+        assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("delay(5h)"),"unit");
+        assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("delay(5ms,1ms)"),"min>max");
+        assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("(pass"),"group");
+        assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("pass*99999999999999999999"),"count");
+        e=assertThrows(IllegalArgumentException.class,()->ProgramCompiler.compile("delay(999999999999999999m)"),"duration");
+        assertEquals("Duration too large at position 25 in program: delay(999999999999999999m)",e.getMessage());
+    }
+}
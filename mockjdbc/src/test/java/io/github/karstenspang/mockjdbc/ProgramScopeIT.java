@@ -0,0 +1,37 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Run by failsafe against the packaged jar, on JDK 25 and later,
+ * where the multi-release jar must give the ScopedValue version of {@link ProgramScope}.
+ */
+public class ProgramScopeIT {
+    @Test
+    @DisplayName("The packaged jar has the ScopedValue version of ProgramScope")
+    public void testScopedValue()
+        throws Exception
+    {
+        String location=ProgramScope.class.getProtectionDomain().getCodeSource().getLocation().toString();
+        assertTrue(location.endsWith(".jar"),()->"loaded from the jar, not "+location);
+        assertEquals("java.lang.ScopedValue",ProgramScope.class.getDeclaredField("current").getType().getName());
+    }
+    
+    @Test
+    @DisplayName("The ScopedValue binding is used by callWith")
+    public void testCallWith()
+        throws SQLException
+    {
+        SQLException refused=new SQLException("Connection refused","08001");
+        SQLException e=assertThrows(SQLException.class,()->MockDriver.callWith(
+            new Program(List.of(new ExceptionStep(refused))),
+            ()->DriverManager.getConnection("jdbc:mock:noop:")));
+        assertSame(refused,e);
+        assertNull(ProgramScope.current(),"unbound after the call");
+    }
+}
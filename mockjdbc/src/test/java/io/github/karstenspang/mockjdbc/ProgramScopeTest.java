@@ -0,0 +1,96 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ProgramScopeTest {
+    private static final SQLException refused=new SQLException("Connection refused","08001");
+    
+    @AfterEach
+    void resetProgram()
+    {
+        MockDriver.setStepSupplier(null);
+        MockDriver.setGlobalStepSupplier(null);
+    }
+    
+    @Test
+    @DisplayName("A program bound with callWith is used until the call returns, and takes precedence")
+    public void testCallWith()
+        throws SQLException
+    {
+        Connection conn=new ConnectionWrap(
+            NoopConnection.instance(),List.of());
+        MockDriver.setProgram(List.of(new ConstantStep(conn)));
+        SQLException e=assertThrows(SQLException.class,()->MockDriver.callWith(
+            new Program(List.of(new ExceptionStep(refused))),
+            ()->DriverManager.getConnection("jdbc:mock:noop:")));
+        assertSame(refused,e);
+        assertSame(conn,DriverManager.getConnection("jdbc:mock:noop:"),"thread program after the call");
+    }
+    
+    @Test
+    @DisplayName("Bindings can be nested, and are restored after the inner call")
+    public void testNested()
+        throws SQLException
+    {
+        Supplier<Step> outer=new Program(List.of());
+        Supplier<Step> inner=new Program(List.of());
+        assertNull(ProgramScope.current());
+        MockDriver.runWith(outer,()->{
+            assertSame(outer,MockDriver.stepSupplier());
+            String result=MockDriver.callWith(inner,()->{
+                assertSame(inner,MockDriver.stepSupplier());
+                return "inner";
+            });
+            assertEquals("inner",result);
+            assertSame(outer,MockDriver.stepSupplier());
+        });
+        assertNull(ProgramScope.current());
+        SQLException e=assertThrows(SQLException.class,()->MockDriver.runWith(outer,()->{throw refused;}));
+        assertSame(refused,e);
+        assertNull(ProgramScope.current(),"after an exception");
+        assertThrows(NullPointerException.class,()->MockDriver.runWith(null,()->{}));
+        assertThrows(NullPointerException.class,()->MockDriver.runWith(outer,null));
+    }
+    
+    @Test
+    @DisplayName("The global program is seen by threads created before it was set")
+    public void testGlobal()
+        throws Exception
+    {
+        Supplier<Step> global=new ConcurrentProgram(StepSequence.forever(new ExceptionStep(refused)));
+        Supplier<Step> own=new Program(List.of());
+        List<Supplier<Step>> seen=new ArrayList<>();
+        Object lock=new Object();
+        boolean[] set={false};
+        TestThread thread=new TestThread(()->{
+            synchronized (lock){
+                while (!set[0]) lock.wait();
+            }
+            seen.add(MockDriver.stepSupplier());
+            SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:noop:"));
+            assertSame(refused,e);
+            MockDriver.setStepSupplier(own);
+            seen.add(MockDriver.stepSupplier());
+        });
+        thread.start();
+        MockDriver.setGlobalStepSupplier(global);
+        synchronized (lock){
+            set[0]=true;
+            lock.notifyAll();
+        }
+        thread.joinAndCheck();
+        assertEquals(List.of(global,own),seen);
+        assertSame(global,MockDriver.stepSupplier());
+    }
+}
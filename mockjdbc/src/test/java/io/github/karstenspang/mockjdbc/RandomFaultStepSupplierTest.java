@@ -0,0 +1,111 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RandomFaultStepSupplierTest {
+    private static List<RandomFaultStepSupplier.Fault> faults(){
+        return List.of(
+            RandomFaultStepSupplier.Fault.of(0.1,"Connection reset","08006"),
+            RandomFaultStepSupplier.Fault.of(0.05,"Deadlock detected","40P01"));
+    }
+    
+    @Test
+    @DisplayName("Faults occur with the configured frequencies")
+    public void testFrequency()
+    {
+        final int calls=200_000;
+        RandomFaultStepSupplier supplier=new RandomFaultStepSupplier(42L,faults());
+        Map<Step,Integer> counts=new HashMap<>();
+        for (int i=0;i<calls;i++){
+            counts.merge(supplier.get(),1,Integer::sum);
+        }
+        assertEquals(3,counts.size());
+        assertEquals(0.85,counts.get(PassThruStep.instance())/(double)calls,0.01,"pass-through");
+        int[] faultCounts=counts.entrySet().stream()
+            .filter(e->e.getKey()!=PassThruStep.instance())
+            .mapToInt(Map.Entry::getValue).sorted().toArray();
+        assertEquals(0.05,faultCounts[0]/(double)calls,0.005,"less frequent fault");
+        assertEquals(0.1,faultCounts[1]/(double)calls,0.005,"more frequent fault");
+    }
+    
+    @Test
+    @DisplayName("The same seed gives the same faults")
+    public void testReproducible()
+    {
+        List<Step> first=sequence(new RandomFaultStepSupplier(7L,faults()));
+        List<Step> second=sequence(new RandomFaultStepSupplier(7L,faults()));
+        List<Step> other=sequence(new RandomFaultStepSupplier(8L,faults()));
+        assertEquals(toStrings(first),toStrings(second));
+        assertNotEquals(toStrings(first),toStrings(other));
+    }
+    
+    @Test
+    @DisplayName("The faults throw stackless exceptions with the SQLState of the fault")
+    public void testException()
+        throws SQLException
+    {
+        RandomFaultStepSupplier supplier=new RandomFaultStepSupplier(1L,List.of(RandomFaultStepSupplier.Fault.of(1.0,"Connection reset","08006")));
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),supplier);
+        SQLException e1=assertThrows(SQLException.class,()->conn.createStatement());
+        SQLException e2=assertThrows(SQLException.class,()->conn.commit());
+        assertNotSame(e1,e2);
+        assertEquals("08006",e1.getSQLState());
+        assertEquals("Connection reset",e1.getMessage());
+        assertEquals(0,e1.getStackTrace().length);
+    }
+    
+    @Test
+    @DisplayName("Invalid probabilities are rejected")
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class,()->RandomFaultStepSupplier.Fault.of(-0.1,"x","08006"),"negative");
+        assertThrows(IllegalArgumentException.class,()->RandomFaultStepSupplier.Fault.of(Double.NaN,"x","08006"),"NaN");
+        assertThrows(IllegalArgumentException.class,()->new RandomFaultStepSupplier(1L,List.of(
+            RandomFaultStepSupplier.Fault.of(0.6,"x","08006"),
+            RandomFaultStepSupplier.Fault.of(0.6,"y","40001"))),"sum");
+        assertThrows(NullPointerException.class,()->new RandomFaultStepSupplier(1L,null),"null");
+    }
+    
+    @Test
+    @DisplayName("Threads get their own random numbers")
+    public void testThreads()
+        throws Exception
+    {
+        RandomFaultStepSupplier supplier=new RandomFaultStepSupplier(3L,faults());
+        List<TestThread> threads=new ArrayList<>();
+        for (int t=0;t<16;t++){
+            threads.add(new TestThread(()->{
+                int faultCount=0;
+                for (int i=0;i<20_000;i++){
+                    if (supplier.get()!=PassThruStep.instance()) faultCount++;
+                }
+                assertEquals(0.15,faultCount/20_000.0,0.02);
+            }));
+        }
+        for (TestThread thread:threads) thread.start();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        assertEquals("RandomFaultStepSupplier[seed=3,faults=[0.1:ExceptionStep: java.sql.SQLException: Connection reset,0.05:ExceptionStep: java.sql.SQLException: Deadlock detected]]",supplier.toString());
+    }
+    
+    private static List<Step> sequence(RandomFaultStepSupplier supplier){
+        List<Step> steps=new ArrayList<>();
+        for (int i=0;i<1000;i++) steps.add(supplier.get());
+        return steps;
+    }
+    
+    private static List<String> toStrings(List<Step> steps){
+        List<String> result=new ArrayList<>();
+        for (Step step:steps) result.add(step.toString());
+        return result;
+    }
+}
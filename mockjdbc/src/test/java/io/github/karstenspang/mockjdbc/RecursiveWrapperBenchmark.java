@@ -0,0 +1,41 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopResultSet;
+import io.github.karstenspang.mockjdbc.noop.NoopStatement;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the cost of a {@link RecursiveWrapperStepSupplier} step per call,
+ * for results that are not wrapped and results that are.
+ * Not run as part of the tests. Run with
+ * {@code java -cp <test class path> io.github.karstenspang.mockjdbc.RecursiveWrapperBenchmark [iterations]}.
+ */
+public class RecursiveWrapperBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args)
+        throws SQLException
+    {
+        int iterations=args.length>0?Integer.parseInt(args[0]):5_000_000;
+        Logger.getLogger("io.github.karstenspang.mockjdbc").setLevel(Level.INFO);
+        Step step=RecursiveWrapperStepSupplier.instance().get();
+        SQLSupplier<?>[] results={
+            ()->"text",
+            ()->Integer.valueOf(42),
+            ()->NoopResultSet.instance(),
+            ()->NoopStatement.instance()
+        };
+        for (int round=0;round<3;round++){
+            for (SQLSupplier<?> result:results){
+                long start=System.nanoTime();
+                for (int i=0;i<iterations;i++){
+                    sink=step.apply(result);
+                }
+                long elapsed=System.nanoTime()-start;
+                if (round==2) System.out.printf("%-40s %8.1f ns/call%n",result.get().getClass().getSimpleName(),(double)elapsed/iterations);
+            }
+        }
+    }
+}
@@ -1,6 +1,17 @@
 package io.github.karstenspang.mockjdbc;
 
+import io.github.karstenspang.mockjdbc.noop.NoopCallableStatement;
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.noop.NoopDataSource;
+import io.github.karstenspang.mockjdbc.noop.NoopNClob;
+import io.github.karstenspang.mockjdbc.noop.NoopPreparedStatement;
+import io.github.karstenspang.mockjdbc.noop.NoopStatement;
+import io.github.karstenspang.mockjdbc.noop.NoopXAConnection;
+import io.github.karstenspang.mockjdbc.wrap.CallableStatementWrap;
 import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.DataSourceWrap;
+import io.github.karstenspang.mockjdbc.wrap.NClobWrap;
+import io.github.karstenspang.mockjdbc.wrap.PreparedStatementWrap;
 import io.github.karstenspang.mockjdbc.wrap.ResultSetWrap;
 import io.github.karstenspang.mockjdbc.wrap.StatementWrap;
 import java.sql.Connection;
@@ -14,6 +25,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import javax.sql.DataSource;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -113,4 +127,64 @@ public class RecursiveWrapperStepSupplierTest {
             assertTrue(found,ifClass.getSimpleName()+" before "+parent.getSimpleName());
         }
     }
+    
+    @Test
+    @DisplayName("Results are wrapped with the wrap of their most specific interface, other results are passed through")
+    void testDispatch()
+        throws SQLException
+    {
+        Step step=RecursiveWrapperStepSupplier.instance().get();
+        for (int i=0;i<2;i++){
+            assertInstanceOf(CallableStatementWrap.class,step.apply(()->NoopCallableStatement.instance()),"CallableStatement");
+            Object prepared=step.apply(()->NoopPreparedStatement.instance());
+            assertInstanceOf(PreparedStatementWrap.class,prepared,"PreparedStatement");
+            assertFalse(prepared instanceof CallableStatementWrap,"PreparedStatement");
+            Object statement=step.apply(()->NoopStatement.instance());
+            assertInstanceOf(StatementWrap.class,statement,"Statement");
+            assertFalse(statement instanceof PreparedStatementWrap,"Statement");
+            assertInstanceOf(NClobWrap.class,step.apply(()->NoopNClob.instance()),"NClob");
+            assertEquals("text",step.apply(()->"text"));
+            assertEquals(Integer.valueOf(42),step.apply(()->Integer.valueOf(42)));
+        }
+    }
+    
+    @Test
+    @DisplayName("A canonicalizing supplier returns the same wrap for the same object")
+    void testCanonical()
+        throws SQLException
+    {
+        RecursiveWrapperStepSupplier supplier=RecursiveWrapperStepSupplier.instance().canonicalizing();
+        assertEquals("CanonicalRecursiveWrapperStepSupplier",supplier.toString());
+        assertSame(supplier,supplier.canonicalizing());
+        Step step=supplier.get();
+        Connection conn=step.apply(()->NoopConnection.instance());
+        assertInstanceOf(ConnectionWrap.class,conn);
+        Statement stmt=conn.createStatement();
+        assertSame(conn,stmt.getConnection());
+        assertSame(conn.getMetaData(),conn.getMetaData());
+        assertSame(stmt,conn.createStatement());
+        Connection plain=RecursiveWrapperStepSupplier.instance().get().apply(()->NoopConnection.instance());
+        assertNotSame(plain,RecursiveWrapperStepSupplier.instance().get().apply(()->NoopConnection.instance()));
+    }
+    
+    // A data source that is also an XA data source, as with most drivers
+    static class XACapableDataSource extends NoopDataSource implements XADataSource {
+        @Override
+        public XAConnection getXAConnection(){return NoopXAConnection.instance();}
+        @Override
+        public XAConnection getXAConnection(String user,String password){return NoopXAConnection.instance();}
+    }
+    
+    @Test
+    @DisplayName("A data source implementing more than one data source interface gets a wrap implementing all of them")
+    void testDataSources()
+        throws SQLException
+    {
+        Step step=RecursiveWrapperStepSupplier.instance().get();
+        Object wrap=step.apply(()->new XACapableDataSource());
+        assertInstanceOf(DataSourceWrap.class,wrap);
+        assertInstanceOf(Wrap.class,((DataSource)wrap).getConnection(),"connection");
+        assertInstanceOf(Wrap.class,((XADataSource)wrap).getXAConnection(),"XA connection");
+        assertInstanceOf(DataSourceWrap.class,step.apply(()->NoopDataSource.instance()),"plain data source");
+    }
 }
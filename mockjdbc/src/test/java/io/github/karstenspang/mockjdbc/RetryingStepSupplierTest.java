@@ -0,0 +1,159 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopStatement;
+import io.github.karstenspang.mockjdbc.wrap.StatementMethod;
+import io.github.karstenspang.mockjdbc.wrap.StatementWrap;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RetryingStepSupplierTest {
+    private static final SQLException listenerBusy=new SQLException("ORA-12520: TNS:listener could not find available handler","66000",12520);
+    private static final SQLException badSql=new SQLException("Syntax error","42000");
+    private static final Step busy=new ExceptionStep(listenerBusy);
+    
+    @AfterEach
+    void resetProgram()
+    {
+        MockDriver.setStepSupplier(null);
+    }
+    
+    @Test
+    @DisplayName("MockDriver.connect is retried on the transient vendor code until it succeeds")
+    public void testConnect()
+        throws SQLException
+    {
+        RetryingStepSupplier retrying=new RetryingStepSupplier(
+            new Program(List.of(busy,busy,PassThruStep.instance(),busy,busy,busy)),
+            RetryingStepSupplier.retryOn(Set.of(),Set.of(12520)),
+            2,Duration.ofMillis(1),Duration.ofMillis(5));
+        MockDriver.setStepSupplier(retrying);
+        assertNotNull(DriverManager.getConnection("jdbc:mock:noop:"));
+        SQLException e=assertThrows(SQLException.class,()->DriverManager.getConnection("jdbc:mock:noop:"));
+        assertSame(listenerBusy,e);
+        assertNotNull(DriverManager.getConnection("jdbc:mock:noop:"),"after the end of the program");
+        assertEquals(3,retrying.calls());
+        assertEquals(1,retrying.calls(0));
+        assertEquals(0,retrying.calls(1));
+        assertEquals(2,retrying.calls(2));
+        assertEquals(0,retrying.calls(3));
+        assertEquals(4,retrying.retries());
+        assertEquals(1,retrying.exhausted());
+        assertFalse(retrying.retryTime().isNegative());
+    }
+    
+    @Test
+    @DisplayName("Exceptions that are not transient are not retried")
+    public void testNotRetryable()
+        throws SQLException
+    {
+        RetryingStepSupplier retrying=new RetryingStepSupplier(
+            new Program(List.of(new ExceptionStep(badSql),new ExceptionStep(new SQLTransientConnectionException("reset")))),
+            RetryingStepSupplier.retryOn(Set.of("08006"),Set.of()),
+            3,Duration.ZERO,Duration.ZERO);
+        Step step=retrying.get();
+        assertSame(badSql,assertThrows(SQLException.class,()->step.applyAsInt(()->1)));
+        assertEquals(1,step.applyAsInt(()->1),"SQLTransientException is retried");
+        assertEquals(2,retrying.calls());
+        assertEquals(1,retrying.retries());
+        assertEquals(0,retrying.exhausted());
+        assertTrue(RetryingStepSupplier.retryOn(Set.of("08006"),Set.of()).test(new SQLException("reset","08006")));
+    }
+    
+    @Test
+    @DisplayName("Method step suppliers get the method of each attempt")
+    public void testMethodStepSupplier()
+        throws SQLException
+    {
+        RetryingStepSupplier retrying=new RetryingStepSupplier(
+            new MethodProgram(Map.of(StatementMethod.executeUpdate_String,List.of(busy,busy)),List.of()),
+            RetryingStepSupplier.retryOn(Set.of(),Set.of(12520)),
+            5,Duration.ZERO,Duration.ZERO);
+        Statement stmt=new StatementWrap(NoopStatement.instance(),retrying);
+        assertEquals(0,stmt.executeUpdate("delete from t"));
+        assertFalse(stmt.execute("delete from t"));
+        assertFalse(stmt.isClosed());
+        assertEquals(0,stmt.getLargeUpdateCount());
+        assertEquals(1,retrying.calls(2));
+        assertEquals(3,retrying.calls(0));
+        assertEquals(2,retrying.retries());
+    }
+    
+    @Test
+    @DisplayName("An interrupt during the wait ends the retries, and keeps the interrupt status")
+    public void testInterrupt()
+        throws Exception
+    {
+        RetryingStepSupplier retrying=new RetryingStepSupplier(
+            StepSequence.forever(busy).iterator()::next,
+            RetryingStepSupplier.retryOn(Set.of(),Set.of(12520)),
+            5,Duration.ofMinutes(1),Duration.ofMinutes(1));
+        boolean[] interrupted={false};
+        TestThread thread=new TestThread(()->{
+            Thread.currentThread().interrupt();
+            assertSame(listenerBusy,assertThrows(SQLException.class,()->retrying.get().apply(()->{})));
+            interrupted[0]=Thread.currentThread().isInterrupted();
+        });
+        thread.start();
+        thread.joinAndCheck();
+        assertTrue(interrupted[0]);
+        assertEquals(1,retrying.exhausted());
+        assertEquals(1,retrying.calls(0));
+    }
+    
+    @Test
+    @DisplayName("A call ending with a RuntimeException is counted, and not retried")
+    public void testRuntimeException()
+        throws SQLException
+    {
+        RetryingStepSupplier retrying=new RetryingStepSupplier(
+            new Program(List.of(busy)),
+            RetryingStepSupplier.retryOn(Set.of(),Set.of(12520)),
+            3,Duration.ZERO,Duration.ZERO);
+        IllegalStateException bug=new IllegalStateException("bug");
+        assertSame(bug,assertThrows(IllegalStateException.class,()->retrying.get().applyAsInt(()->{throw bug;})));
+        assertEquals(1,retrying.calls());
+        assertEquals(1,retrying.calls(1));
+        assertEquals(1,retrying.retries());
+    }
+    
+    @Test
+    @DisplayName("Calls with more retries than counted separately are counted together")
+    public void testUncounted()
+        throws SQLException
+    {
+        List<Step> steps=new ArrayList<>(Collections.nCopies(RetryingStepSupplier.countedRetries+50,busy));
+        steps.add(PassThruStep.instance());
+        RetryingStepSupplier retrying=new RetryingStepSupplier(
+            new Program(steps),
+            RetryingStepSupplier.retryOn(Set.of(),Set.of(12520)),
+            Integer.MAX_VALUE,Duration.ZERO,Duration.ZERO);
+        assertTrue(retrying.get().applyAsBoolean(()->true));
+        assertTrue(retrying.get().applyAsBoolean(()->true));
+        assertEquals(2,retrying.calls());
+        assertEquals(1,retrying.calls(0));
+        assertEquals(0,retrying.calls(RetryingStepSupplier.countedRetries+50));
+        assertEquals(1,retrying.uncountedCalls());
+        assertEquals(RetryingStepSupplier.countedRetries+50,retrying.retries());
+    }
+    
+    @Test
+    @DisplayName("Invalid parameters are rejected")
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class,()->new RetryingStepSupplier(PassThruStep::instance,e->true,-1,Duration.ZERO,Duration.ZERO),"retries");
+        assertThrows(IllegalArgumentException.class,()->new RetryingStepSupplier(PassThruStep::instance,e->true,1,Duration.ofMillis(-1),Duration.ZERO),"delay");
+        assertThrows(NullPointerException.class,()->new RetryingStepSupplier(null,e->true,1,Duration.ZERO,Duration.ZERO),"supplier");
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionMethod;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RuntimeWrapGeneratorTest {
+    /** A vendor extension of {@link Connection} */
+    public interface VendorConnection extends Connection {
+        String vendorName() throws SQLException;
+        int[] vendorCodes(int... codes) throws SQLException;
+        @Override
+        VendorWarning getWarnings() throws SQLException;
+    }
+    
+    /** A vendor interface not extending a {@link java.sql} interface */
+    public interface VendorExtension {
+        long ping(long timeout) throws SQLException;
+        <T extends Comparable<? super T>> List<T> sorted(List<T> list) throws SQLException;
+        void flush() throws IOException;
+        void reset() throws SQLWarning;
+    }
+    
+    /** A generic interface, which is not supported */
+    public interface Generic<T> {
+        T get();
+    }
+    
+    public static class VendorWarning extends SQLWarning {
+        private static final long serialVersionUID=1L;
+    }
+    
+    public static class VendorConnectionImpl extends NoopConnection implements VendorConnection,VendorExtension {
+        final List<String> calls=new ArrayList<>();
+        @Override
+        public String vendorName(){return "vendor";}
+        @Override
+        public int[] vendorCodes(int... codes){return codes;}
+        @Override
+        public VendorWarning getWarnings(){return new VendorWarning();}
+        @Override
+        public long ping(long timeout){return timeout+1;}
+        @Override
+        public <T extends Comparable<? super T>> List<T> sorted(List<T> list){
+            List<T> result=new ArrayList<>(list);
+            result.sort(null);
+            return result;
+        }
+        @Override
+        public void flush(){calls.add("flush");}
+        @Override
+        public void reset(){calls.add("reset");}
+    }
+    
+    @Test
+    @DisplayName("A vendor extension of a java.sql interface is wrapped with a subclass of the java.sql wrap")
+    public void testVendorConnection()
+        throws SQLException
+    {
+        VendorConnection conn=RuntimeWrapGenerator.wrapper(VendorConnection.class)
+            .wrap(new VendorConnectionImpl(),new Program(List.of(
+                new ConstantStep("mock"),
+                PassThruStep.instance(),
+                PassThruStep.instance(),
+                new ConstantStep(Boolean.TRUE))));
+        assertInstanceOf(ConnectionWrap.class,conn);
+        assertEquals("mock",conn.vendorName());
+        assertArrayEquals(new int[]{1,2},conn.vendorCodes(1,2));
+        assertInstanceOf(VendorWarning.class,conn.getWarnings());
+        assertTrue(conn.isReadOnly());
+        assertFalse(conn.isReadOnly());
+    }
+    
+    @Test
+    @DisplayName("A stand-alone vendor interface is wrapped")
+    public void testVendorExtension()
+        throws Exception
+    {
+        VendorConnectionImpl impl=new VendorConnectionImpl();
+        SQLException ex=new SQLException();
+        VendorExtension ext=RuntimeWrapGenerator.wrapper(VendorExtension.class)
+            .wrap(impl,new Program(List.of(
+                PassThruStep.instance(),
+                PassThruStep.instance(),
+                new ExceptionStep(ex),
+                new ExceptionStep(new SQLWarning()))));
+        assertInstanceOf(Wrap.class,ext);
+        assertEquals(2L,ext.ping(1L));
+        assertEquals(List.of("a","b"),ext.sorted(List.of("b","a")));
+        SQLException e=assertThrows(SQLException.class,()->ext.ping(1L));
+        assertSame(ex,e);
+        ext.flush();
+        assertEquals(List.of("flush"),impl.calls);
+        assertThrows(SQLWarning.class,()->ext.reset());
+    }
+    
+    @Test
+    @DisplayName("Wrap classes are cached")
+    public void testCache()
+    {
+        Wrapper<VendorConnection> wrapper=RuntimeWrapGenerator.wrapper(VendorConnection.class);
+        assertSame(wrapper,RuntimeWrapGenerator.wrapper(VendorConnection.class));
+        VendorConnection conn1=wrapper.wrap(new VendorConnectionImpl(),PassThruStep::instance);
+        VendorConnection conn2=wrapper.wrap(new VendorConnectionImpl(),PassThruStep::instance);
+        assertSame(conn1.getClass(),conn2.getClass());
+    }
+    
+    @Test
+    @DisplayName("Each wrap class has a class loader of its own, with the class loader of mockjdbc as parent")
+    public void testClassLoader()
+    {
+        VendorConnection conn=RuntimeWrapGenerator.wrapper(VendorConnection.class).wrap(new VendorConnectionImpl(),PassThruStep::instance);
+        ClassLoader loader=conn.getClass().getClassLoader();
+        assertNotSame(RuntimeWrapGenerator.class.getClassLoader(),loader);
+        assertSame(RuntimeWrapGenerator.class.getClassLoader(),loader.getParent());
+        VendorExtension ext=RuntimeWrapGenerator.wrapper(VendorExtension.class).wrap(new VendorConnectionImpl(),PassThruStep::instance);
+        assertNotSame(loader,ext.getClass().getClassLoader());
+    }
+    
+    @Test
+    @DisplayName("Threads generating the same wrap concurrently all get the same wrapper")
+    public void testConcurrentGeneration()
+        throws Exception
+    {
+        List<Class<?>> interfaces=List.of(VendorConnection.class,VendorExtension.class);
+        CountDownLatch start=new CountDownLatch(1);
+        Set<Wrapper<Object>> wrappers=ConcurrentHashMap.newKeySet();
+        List<TestThread> threads=new ArrayList<>();
+        for (int i=0;i<4;i++){
+            threads.add(new TestThread(()->{
+                start.await();
+                wrappers.add(RuntimeWrapGenerator.wrapper(interfaces));
+            }));
+        }
+        for (TestThread thread:threads) thread.start();
+        start.countDown();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        assertEquals(1,wrappers.size());
+        assertTrue(wrappers.contains(RuntimeWrapGenerator.wrapper(interfaces)));
+    }
+    
+    @Test
+    @DisplayName("The method identifiers are passed to a MethodStepSupplier")
+    public void testMethodStepSupplier()
+        throws SQLException
+    {
+        WrapMethod ping=RuntimeWrapGenerator.method(VendorExtension.class,"ping",long.class);
+        assertEquals("VendorExtension.ping(long)",ping.toString());
+        assertSame(ConnectionMethod.commit,RuntimeWrapGenerator.method(Connection.class,"commit"));
+        MethodProgram program=new MethodProgram(Map.of(ping,List.of(new ConstantStep(Long.valueOf(7)))),List.of());
+        VendorExtension ext=RuntimeWrapGenerator.wrapper(VendorExtension.class).wrap(new VendorConnectionImpl(),program);
+        assertEquals(7L,ext.ping(1L));
+        assertEquals(2L,ext.ping(1L));
+    }
+    
+    @Test
+    @DisplayName("Unsupported interfaces are rejected")
+    public void testUnsupported()
+    {
+        assertThrows(IllegalArgumentException.class,()->RuntimeWrapGenerator.wrapper(Generic.class),"generic");
+        assertThrows(IllegalArgumentException.class,()->RuntimeWrapGenerator.wrapper(VendorConnectionImpl.class),"class");
+        assertThrows(IllegalArgumentException.class,()->RuntimeWrapGenerator.wrapper(List.of()),"empty");
+    }
+    
+    @Test
+    @DisplayName("Wrapping an object not implementing all the interfaces throws ClassCastException")
+    public void testWrongClass()
+    {
+        Wrapper<Object> wrapper=RuntimeWrapGenerator.wrapper(List.of(Connection.class,VendorExtension.class));
+        assertThrows(ClassCastException.class,()->wrapper.wrap(NoopConnection.instance(),PassThruStep::instance));
+    }
+    
+    @Test
+    @DisplayName("RecursiveWrapperStepSupplier wraps vendor interfaces")
+    public void testRecursive()
+        throws SQLException
+    {
+        RecursiveWrapperStepSupplier supplier=RecursiveWrapperStepSupplier.with(VendorExtension.class);
+        assertEquals("RecursiveWrapperStepSupplier[VendorExtension]",supplier.toString());
+        Object result=supplier.get().apply(()->new VendorConnectionImpl());
+        assertInstanceOf(Wrap.class,result);
+        assertInstanceOf(Connection.class,result);
+        VendorExtension ext=assertInstanceOf(VendorExtension.class,result);
+        assertEquals(2L,ext.ping(1L));
+        Connection conn=(Connection)result;
+        Object statement=conn.createStatement();
+        assertInstanceOf(Wrap.class,statement,"Statement");
+        Object plain=supplier.get().apply(()->NoopConnection.instance());
+        assertInstanceOf(ConnectionWrap.class,plain);
+        assertFalse(plain instanceof VendorExtension);
+    }
+}
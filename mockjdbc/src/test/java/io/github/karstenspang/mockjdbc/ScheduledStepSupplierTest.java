@@ -0,0 +1,115 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ScheduledStepSupplierTest {
+    // A clock that only moves when told to
+    private static class TestClock extends Clock {
+        private volatile long millis=1_000_000L;
+        void advance(Duration duration){millis+=duration.toMillis();}
+        @Override
+        public long millis(){return millis;}
+        @Override
+        public Instant instant(){return Instant.ofEpochMilli(millis);}
+        @Override
+        public ZoneId getZone(){return ZoneOffset.UTC;}
+        @Override
+        public Clock withZone(ZoneId zone){throw new UnsupportedOperationException();}
+    }
+    
+    private static final Step refused=ExceptionStep.stackless("Connection refused","08001");
+    private static final Step slow=new ConstantStep(null);
+    
+    @AfterEach
+    void resetProgram()
+    {
+        MockDriver.setStepSupplier(null);
+    }
+    
+    @Test
+    @DisplayName("The step of the window containing the current time is returned")
+    public void testWindows()
+    {
+        TestClock clock=new TestClock();
+        ScheduledStepSupplier supplier=new ScheduledStepSupplier(clock,List.of(
+            ScheduledStepSupplier.Window.of(Duration.ofSeconds(45),Duration.ofSeconds(50),slow),
+            ScheduledStepSupplier.Window.of(Duration.ofSeconds(30),Duration.ofSeconds(45),refused)));
+        assertSame(PassThruStep.instance(),supplier.get(),"0s");
+        clock.advance(Duration.ofMillis(29999));
+        assertSame(PassThruStep.instance(),supplier.get(),"29.999s");
+        clock.advance(Duration.ofMillis(1));
+        assertSame(refused,supplier.get(),"30s");
+        clock.advance(Duration.ofSeconds(15));
+        assertSame(slow,supplier.get(),"45s");
+        clock.advance(Duration.ofSeconds(5));
+        assertSame(PassThruStep.instance(),supplier.get(),"50s");
+        clock.advance(Duration.ofDays(365));
+        assertSame(PassThruStep.instance(),supplier.get(),"a year");
+        clock.advance(Duration.ofDays(-365).minusSeconds(10));
+        assertSame(refused,supplier.get(),"backwards to 40s");
+        clock.advance(Duration.ofMinutes(-1));
+        assertSame(PassThruStep.instance(),supplier.get(),"before the start");
+        assertEquals("ScheduledStepSupplier[[PT30S,PT45S):"+refused+",[PT45S,PT50S):ConstantStep: null]",supplier.toString());
+    }
+    
+    @Test
+    @DisplayName("A window can start immediately, and a schedule can be empty")
+    public void testEdges()
+    {
+        TestClock clock=new TestClock();
+        ScheduledStepSupplier supplier=new ScheduledStepSupplier(clock,List.of(
+            ScheduledStepSupplier.Window.of(Duration.ZERO,Duration.ofSeconds(1),refused)));
+        assertSame(refused,supplier.get());
+        clock.advance(Duration.ofSeconds(1));
+        assertSame(PassThruStep.instance(),supplier.get());
+        assertSame(PassThruStep.instance(),new ScheduledStepSupplier(clock,List.of()).get());
+    }
+    
+    @Test
+    @DisplayName("An outage of MockDriver.connect on virtual time")
+    public void testOutage()
+        throws SQLException
+    {
+        TestClock clock=new TestClock();
+        MockDriver.setStepSupplier(new ScheduledStepSupplier(clock,List.of(
+            ScheduledStepSupplier.Window.of(Duration.ofSeconds(30),Duration.ofSeconds(45),refused))));
+        int failures=0;
+        for (int second=0;second<60;second++){
+            try{
+                DriverManager.getConnection("jdbc:mock:noop:").close();
+                assertTrue(second<30||second>=45,"connected at "+second);
+            }
+            catch(SQLException e){
+                assertEquals("08001",e.getSQLState());
+                failures++;
+            }
+            clock.advance(Duration.ofSeconds(1));
+        }
+        assertEquals(15,failures);
+    }
+    
+    @Test
+    @DisplayName("Invalid windows are rejected")
+    public void testInvalid()
+    {
+        TestClock clock=new TestClock();
+        assertThrows(IllegalArgumentException.class,()->ScheduledStepSupplier.Window.of(Duration.ofSeconds(-1),Duration.ofSeconds(1),refused),"negative");
+        assertThrows(IllegalArgumentException.class,()->ScheduledStepSupplier.Window.of(Duration.ofSeconds(1),Duration.ofSeconds(1),refused),"empty");
+        assertThrows(NullPointerException.class,()->ScheduledStepSupplier.Window.of(Duration.ZERO,Duration.ofSeconds(1),null),"step");
+        assertThrows(IllegalArgumentException.class,()->new ScheduledStepSupplier(clock,List.of(
+            ScheduledStepSupplier.Window.of(Duration.ofSeconds(0),Duration.ofSeconds(10),refused),
+            ScheduledStepSupplier.Window.of(Duration.ofSeconds(5),Duration.ofSeconds(15),slow))),"overlap");
+        assertThrows(NullPointerException.class,()->new ScheduledStepSupplier(null,List.of()),"clock");
+    }
+}
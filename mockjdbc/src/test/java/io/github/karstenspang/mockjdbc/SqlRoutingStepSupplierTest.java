@@ -0,0 +1,126 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.StatementMethod;
+import io.github.karstenspang.mockjdbc.wrap.StatementWrap;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SqlRoutingStepSupplierTest {
+    private static final Step locked=ExceptionStep.stackless("Table locked","55P03");
+    
+    @Test
+    @DisplayName("Calls with SQL containing a pattern get the steps of the route")
+    public void testRouting()
+        throws SQLException
+    {
+        SqlRoutingStepSupplier supplier=new SqlRoutingStepSupplier(
+            List.of(SqlRoutingStepSupplier.Route.of("ORDERS",locked)),
+            PassThruStep::instance);
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),supplier);
+        SQLException e=assertThrows(SQLException.class,()->conn.prepareStatement("select * from orders where id=?"));
+        assertEquals("55P03",e.getSQLState());
+        assertNotNull(conn.prepareStatement("select * from customers"));
+        assertThrows(SQLException.class,()->conn.prepareCall("{call Update_Orders(?)}"));
+        assertThrows(SQLException.class,()->conn.nativeSQL("delete from ORDERS"));
+        Statement stmt=new StatementWrap(conn.createStatement(),supplier);
+        assertThrows(SQLException.class,()->stmt.executeQuery("select count(*) from orders"));
+        assertThrows(SQLException.class,()->stmt.executeUpdate("update orders set x=1"));
+        assertThrows(SQLException.class,()->stmt.execute("drop table orders"));
+        assertThrows(SQLException.class,()->stmt.addBatch("insert into orders values (1)"));
+        stmt.addBatch("insert into customers values (1)");
+        stmt.setCursorName("orders");
+        stmt.executeBatch();
+    }
+    
+    @Test
+    @DisplayName("The first route in the list matching the SQL is used")
+    public void testPriority()
+    {
+        Step order=new ConstantStep("order");
+        Step orders=new ConstantStep("orders");
+        Step lines=new ConstantStep("lines");
+        SqlRoutingStepSupplier supplier=new SqlRoutingStepSupplier(List.of(
+            SqlRoutingStepSupplier.Route.of("ORDERS",orders),
+            SqlRoutingStepSupplier.Route.of("ORDER",order),
+            SqlRoutingStepSupplier.Route.of("LINES",lines)),
+            PassThruStep::instance);
+        assertSame(orders,supplier.get(StatementMethod.executeQuery,new Object[]{"select * from order_lines, orders"}));
+        assertSame(order,supplier.get(StatementMethod.executeQuery,new Object[]{"select * from order_lines"}));
+        assertSame(lines,supplier.get(StatementMethod.executeQuery,new Object[]{"select * from lines"}));
+        assertSame(PassThruStep.instance(),supplier.get(StatementMethod.executeQuery,new Object[]{"select 1"}));
+        assertSame(PassThruStep.instance(),supplier.get(StatementMethod.cancel,new Object[0]));
+        assertTrue(supplier.toString().startsWith("SqlRoutingStepSupplier[[ORDERS:ConstantStep: orders,ORDER:ConstantStep: order,LINES:ConstantStep: lines],"),supplier::toString);
+    }
+    
+    @Test
+    @DisplayName("Route suppliers are called for each call, and method step suppliers get the method")
+    public void testSuppliers()
+    {
+        Step fallbackStep=new ConstantStep("fallback");
+        Step cancelStep=new ConstantStep("cancel");
+        SqlRoutingStepSupplier supplier=new SqlRoutingStepSupplier(List.of(
+            new SqlRoutingStepSupplier.Route("ORDERS",new Program(List.of(locked)))),
+            new MethodProgram(Map.of(StatementMethod.cancel,List.of(cancelStep)),List.of(fallbackStep)));
+        assertSame(locked,supplier.get(StatementMethod.execute_String,new Object[]{"delete from orders"}));
+        assertSame(PassThruStep.instance(),supplier.get(StatementMethod.execute_String,new Object[]{"delete from orders"}));
+        assertSame(cancelStep,supplier.get(StatementMethod.cancel,new Object[0]));
+        assertSame(fallbackStep,supplier.get(StatementMethod.execute_String,new Object[]{"delete from customers"}));
+    }
+    
+    @Test
+    @DisplayName("The automaton finds the same matches as String.contains")
+    public void testAutomaton()
+    {
+        // Small alphabet, to get many overlapping and nested patterns
+        Random random=new Random(17);
+        for (int round=0;round<50;round++){
+            List<String> patterns=new ArrayList<>();
+            List<SqlRoutingStepSupplier.Route> routes=new ArrayList<>();
+            for (int i=0;i<10;i++){
+                String pattern=randomString(random,1+random.nextInt(5));
+                patterns.add(pattern);
+                routes.add(SqlRoutingStepSupplier.Route.of(pattern,PassThruStep.instance()));
+            }
+            SqlRoutingStepSupplier supplier=new SqlRoutingStepSupplier(routes,PassThruStep::instance);
+            for (int n=0;n<200;n++){
+                String sql=randomString(random,random.nextInt(30));
+                int expected=-1;
+                for (int i=0;i<patterns.size();i++){
+                    if (sql.toUpperCase(Locale.ROOT).contains(patterns.get(i).toUpperCase(Locale.ROOT))){
+                        expected=i;
+                        break;
+                    }
+                }
+                assertEquals(expected,supplier.route(sql),()->sql+" "+patterns);
+                assertEquals(expected,supplier.route(sql),"cached");
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Invalid routes are rejected")
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class,()->SqlRoutingStepSupplier.Route.of("",locked),"empty");
+        assertThrows(NullPointerException.class,()->SqlRoutingStepSupplier.Route.of(null,locked),"pattern");
+        assertThrows(NullPointerException.class,()->SqlRoutingStepSupplier.Route.of("A",null),"step");
+        assertThrows(NullPointerException.class,()->new SqlRoutingStepSupplier(List.of(),null),"fallback");
+    }
+    
+    private static String randomString(Random random,int length){
+        StringBuilder sb=new StringBuilder();
+        for (int i=0;i<length;i++) sb.append("abAB".charAt(random.nextInt(4)));
+        return sb.toString();
+    }
+}
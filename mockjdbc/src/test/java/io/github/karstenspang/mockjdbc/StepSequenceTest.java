@@ -0,0 +1,112 @@
+package io.github.karstenspang.mockjdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class StepSequenceTest {
+    private static final Step pass=PassThruStep.instance();
+    private static final Step fail=new ExceptionStep(new SQLException("boom"));
+    
+    @Test
+    @DisplayName("A cycle of a repeat and a single step has the expected steps")
+    public void testCycle()
+    {
+        StepSequence sequence=StepSequence.cycle(StepSequence.concat(
+            StepSequence.repeat(pass,10_000),
+            StepSequence.of(fail)));
+        assertEquals(StepSequence.INFINITE,sequence.length());
+        assertSame(pass,sequence.step(0));
+        assertSame(pass,sequence.step(9_999));
+        assertSame(fail,sequence.step(10_000));
+        assertSame(pass,sequence.step(10_001));
+        assertSame(fail,sequence.step(10_001L*1_000_000_000L-1));
+        assertEquals("cycle(concat(repeat([PassThruStep],10000),["+fail+"]))",sequence.toString());
+    }
+    
+    @Test
+    @DisplayName("Finite sequences have the expected length and iterate to the end")
+    public void testFinite()
+    {
+        StepSequence sequence=StepSequence.concat(
+            StepSequence.of(fail,pass),
+            StepSequence.of(),
+            StepSequence.repeat(StepSequence.of(pass,fail),3));
+        assertEquals(8,sequence.length());
+        List<Step> steps=new ArrayList<>();
+        for (Step step:sequence) steps.add(step);
+        assertEquals(List.of(fail,pass,pass,fail,pass,fail,pass,fail),steps);
+        Iterator<Step> it=sequence.iterator();
+        for (int i=0;i<8;i++) it.next();
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class,()->it.next());
+        assertThrows(IndexOutOfBoundsException.class,()->sequence.step(8));
+        assertThrows(IndexOutOfBoundsException.class,()->sequence.step(-1));
+    }
+    
+    @Test
+    @DisplayName("Empty and single repetitions are simplified")
+    public void testSimplify()
+    {
+        StepSequence one=StepSequence.of(fail);
+        assertSame(one,StepSequence.repeat(one,1));
+        assertSame(one,StepSequence.concat(StepSequence.of(),one));
+        assertEquals(0,StepSequence.repeat(one,0).length());
+        assertEquals(0,StepSequence.cycle(StepSequence.of()).length());
+        assertSame(one,StepSequence.of((Iterable<Step>)one));
+        assertThrows(IllegalArgumentException.class,()->StepSequence.repeat(one,-1));
+        assertThrows(NullPointerException.class,()->StepSequence.of(fail,null));
+    }
+    
+    @Test
+    @DisplayName("Lengths saturate at INFINITE, and sequences after an infinite one are ignored")
+    public void testInfinite()
+    {
+        StepSequence huge=StepSequence.repeat(StepSequence.repeat(pass,Long.MAX_VALUE/2),3);
+        assertEquals(StepSequence.INFINITE,huge.length());
+        StepSequence sequence=StepSequence.concat(StepSequence.forever(fail),StepSequence.of(pass));
+        assertEquals(StepSequence.INFINITE,sequence.length());
+        assertEquals("repeat([PassThruStep],"+(StepSequence.INFINITE-1)+")",StepSequence.repeat(pass,StepSequence.INFINITE-1).toString());
+        assertEquals("cycle(["+fail+"])",sequence.toString());
+    }
+    
+    @Test
+    @DisplayName("Generated steps are created on demand")
+    public void testGenerate()
+    {
+        List<Long> requested=new ArrayList<>();
+        StepSequence sequence=StepSequence.generate(i->{
+            requested.add(i);
+            return i%2==0?pass:fail;
+        });
+        assertEquals(StepSequence.INFINITE,sequence.length());
+        assertSame(fail,sequence.step(1_000_000_001L));
+        assertSame(pass,sequence.step(0));
+        assertEquals(List.of(1_000_000_001L,0L),requested);
+    }
+    
+    @Test
+    @DisplayName("Programs take their steps from sequences")
+    public void testPrograms()
+    {
+        StepSequence sequence=StepSequence.concat(StepSequence.repeat(pass,2),StepSequence.of(fail));
+        Program program=new Program(sequence);
+        ConcurrentProgram concurrent=new ConcurrentProgram(StepSequence.cycle(sequence));
+        assertSame(pass,program.get());
+        assertSame(pass,program.get());
+        assertSame(fail,program.get());
+        for (int i=0;i<2;i++){
+            assertSame(pass,concurrent.get());
+            assertSame(pass,concurrent.get());
+            assertSame(fail,concurrent.get());
+        }
+        assertSame(pass,program.get());
+        assertEquals(StepSequence.INFINITE,concurrent.remaining());
+        assertEquals("concat(repeat([PassThruStep],2),["+fail+"])",program.toString());
+    }
+}
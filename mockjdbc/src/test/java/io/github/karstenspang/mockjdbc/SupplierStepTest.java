@@ -72,4 +72,15 @@ public class SupplierStepTest{
         assertThrows(NullPointerException.class,()->new SupplierStep(null));
     }
     
+    
+    @DisplayName("The default primitive variants go through the generic apply")
+    @Test
+    public void testPrimitiveDefaults()
+        throws SQLException
+    {
+        assertEquals(42,new SupplierStep(()->Integer.valueOf(42)).applyAsInt(()->0),"int");
+        assertEquals(42L,new SupplierStep(()->Long.valueOf(42L)).applyAsLong(()->0L),"long");
+        assertEquals(4.2D,new SupplierStep(()->Double.valueOf(4.2D)).applyAsDouble(()->0D),"double");
+        assertTrue(new SupplierStep(()->Boolean.TRUE).applyAsBoolean(()->false),"boolean");
+    }
 }
@@ -0,0 +1,145 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopPreparedStatement;
+import io.github.karstenspang.mockjdbc.wrap.PreparedStatementMethod;
+import io.github.karstenspang.mockjdbc.wrap.PreparedStatementWrap;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ThrottleStepTest {
+    private static final long second=TimeUnit.SECONDS.toNanos(1);
+    
+    @Test
+    @DisplayName("In FAIL mode, the burst is admitted, and then one call per interval")
+    public void testFail()
+        throws SQLException
+    {
+        AtomicLong time=new AtomicLong(1000);
+        ThrottleStep step=new ThrottleStep(10.0,3,ThrottleStep.Mode.FAIL,time::get);
+        for (int i=0;i<3;i++){
+            assertEquals(1,step.applyAsInt(()->1));
+        }
+        SQLTransientException e=assertThrows(SQLTransientException.class,()->step.apply(()->{}));
+        assertEquals(ThrottleStep.throttledState,e.getSQLState());
+        time.addAndGet(second/10);
+        assertTrue(step.applyAsBoolean(()->true));
+        assertThrows(SQLTransientException.class,()->step.applyAsLong(()->1L));
+        time.addAndGet(second);
+        for (int i=0;i<3;i++){
+            assertEquals(1.0,step.applyAsDouble(()->1.0));
+        }
+        assertThrows(SQLTransientException.class,()->step.apply(()->"x"));
+        assertEquals("ThrottleStep[rate=10.0,burst=3,mode=FAIL]",step.toString());
+    }
+    
+    @Test
+    @DisplayName("In QUEUE mode, calls above the limit wait for their turn")
+    public void testQueue()
+        throws SQLException
+    {
+        ThrottleStep step=new ThrottleStep(100.0,1,ThrottleStep.Mode.QUEUE);
+        long start=System.nanoTime();
+        for (int i=0;i<11;i++){
+            step.apply(()->{});
+        }
+        assertTrue(System.nanoTime()-start>=second/10,"waited");
+    }
+    
+    @Test
+    @DisplayName("Threads sharing the step are limited together")
+    public void testShared()
+        throws Exception
+    {
+        AtomicLong time=new AtomicLong(0);
+        ThrottleStep step=new ThrottleStep(1.0,50,ThrottleStep.Mode.FAIL,time::get);
+        PreparedStatement stmt=new PreparedStatementWrap(NoopPreparedStatement.instance(),new MethodProgram(
+            Map.of(PreparedStatementMethod.executeUpdate,StepSequence.forever(step)),
+            StepSequence.forever(PassThruStep.instance())));
+        AtomicInteger admitted=new AtomicInteger();
+        AtomicInteger rejected=new AtomicInteger();
+        List<TestThread> threads=new ArrayList<>();
+        for (int t=0;t<8;t++){
+            threads.add(new TestThread(()->{
+                for (int i=0;i<100;i++){
+                    try{
+                        stmt.executeUpdate();
+                        admitted.incrementAndGet();
+                    }
+                    catch(SQLTransientException e){
+                        rejected.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (TestThread thread:threads) thread.start();
+        for (TestThread thread:threads) thread.joinAndCheck();
+        assertEquals(50,admitted.get());
+        assertEquals(750,rejected.get());
+    }
+    
+    @Test
+    @DisplayName("An interrupted wait throws SQLException with SQLState HY008 and keeps the interrupt status")
+    public void testInterrupt()
+        throws Exception
+    {
+        ThrottleStep step=new ThrottleStep(1.0/3600,1,ThrottleStep.Mode.QUEUE);
+        step.apply(()->{});
+        boolean[] interrupted={false};
+        TestThread thread=new TestThread(()->{
+            SQLException e=assertThrows(SQLException.class,()->step.apply(()->{}));
+            assertEquals(LatencyStep.canceledState,e.getSQLState());
+            interrupted[0]=Thread.currentThread().isInterrupted();
+        });
+        thread.start();
+        Thread.sleep(50);
+        thread.interrupt();
+        thread.joinAndCheck();
+        assertTrue(interrupted[0],"interrupted");
+    }
+    
+    @Test
+    @DisplayName("An interrupted wait gives its slot to the next call")
+    public void testInterruptReleases()
+        throws Exception
+    {
+        AtomicLong time=new AtomicLong(0);
+        ThrottleStep step=new ThrottleStep(10.0,1,ThrottleStep.Mode.QUEUE,time::get);
+        step.apply(()->{});
+        TestThread queued=new TestThread(()->{
+            Thread.currentThread().interrupt();
+            assertThrows(SQLException.class,()->step.apply(()->{}));
+        });
+        queued.start();
+        queued.joinAndCheck();
+        // The interrupted call was due at 100ms. Now the next call is due then, not at 200ms.
+        TestThread next=new TestThread(()->step.apply(()->{}));
+        next.start();
+        next.join(50);
+        assertTrue(next.isAlive(),"not admitted before it is due");
+        time.set(second/10);
+        next.join(5000);
+        if (next.isAlive()) next.interrupt();
+        assertFalse(next.isAlive(),"admitted when the interrupted call was due");
+        next.joinAndCheck();
+    }
+    
+    @Test
+    @DisplayName("Invalid parameters are rejected")
+    public void testInvalid()
+    {
+        assertThrows(IllegalArgumentException.class,()->new ThrottleStep(0.0,1,ThrottleStep.Mode.FAIL),"rate");
+        assertThrows(IllegalArgumentException.class,()->new ThrottleStep(Double.NaN,1,ThrottleStep.Mode.FAIL),"NaN");
+        assertThrows(IllegalArgumentException.class,()->new ThrottleStep(1.0,0,ThrottleStep.Mode.FAIL),"burst");
+        assertThrows(NullPointerException.class,()->new ThrottleStep(1.0,1,null),"mode");
+    }
+}
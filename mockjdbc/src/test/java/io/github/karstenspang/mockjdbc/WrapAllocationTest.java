@@ -0,0 +1,126 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.mockjdbc.noop.NoopResultSet;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionMethod;
+import io.github.karstenspang.mockjdbc.wrap.ConnectionWrap;
+import io.github.karstenspang.mockjdbc.wrap.ResultSetWrap;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class WrapAllocationTest {
+    private static final int iterations=1_000_000;
+    // Allowance for allocations done by the measurement itself
+    private static final long slack=64*1024;
+    private Logger[] loggers;
+    private Level[] savedLevels;
+    
+    @BeforeEach
+    void disableFinest()
+    {
+        loggers=new Logger[]{
+            Logger.getLogger(ResultSetWrap.class.getName()),
+            Logger.getLogger(ConnectionWrap.class.getName())
+        };
+        savedLevels=new Level[loggers.length];
+        for (int i=0;i<loggers.length;i++){
+            savedLevels[i]=loggers[i].getLevel();
+            loggers[i].setLevel(Level.INFO);
+        }
+    }
+    
+    @AfterEach
+    void restoreLevels()
+    {
+        for (int i=0;i<loggers.length;i++){
+            loggers[i].setLevel(savedLevels[i]);
+        }
+    }
+    
+    @Test
+    @DisplayName("ResultSet getters through a pass-through wrap do not allocate when FINEST is off")
+    public void testResultSetGetters()
+        throws SQLException
+    {
+        ResultSet rs=new ResultSetWrap(NoopResultSet.instance(),List.of());
+        long allocated=measure(()->{
+            for (int i=0;i<iterations;i++){
+                rs.next();
+                rs.getInt(1);
+                rs.getString(1);
+                rs.wasNull();
+            }
+        });
+        assertTrue(allocated<slack,()->allocated+" bytes allocated for "+iterations+" iterations");
+    }
+    
+    @Test
+    @DisplayName("void methods through a pass-through wrap do not allocate when FINEST is off")
+    public void testVoidMethods()
+        throws SQLException
+    {
+        Connection conn=new ConnectionWrap(NoopConnection.instance(),List.of());
+        long allocated=measure(()->{
+            for (int i=0;i<iterations;i++){
+                conn.setAutoCommit(false);
+                conn.commit();
+            }
+        });
+        assertTrue(allocated<slack,()->allocated+" bytes allocated for "+iterations+" iterations");
+    }
+    
+    @Test
+    @DisplayName("Creating a wrap does not format the wrapped object or the step supplier when FINE is off")
+    public void testCreation()
+    {
+        int[] toStringCalls={0};
+        Connection counting=new NoopConnection(){
+            @Override
+            public String toString(){
+                toStringCalls[0]++;
+                return "counting";
+            }
+        };
+        Supplier<Step> stepSupplier=new Supplier<Step>(){
+            @Override
+            public Step get(){return PassThruStep.instance();}
+            @Override
+            public String toString(){
+                toStringCalls[0]++;
+                return "counting";
+            }
+        };
+        new ConnectionWrap(counting,stepSupplier);
+        new ConnectionWrap(counting,stepSupplier,Set.of(ConnectionMethod.commit));
+        assertEquals(0,toStringCalls[0]);
+    }
+    
+    private static long measure(SQLRunnable loop)
+        throws SQLException
+    {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,"allocation measurement not available");
+        com.sun.management.ThreadMXBean bean=(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        assumeTrue(bean.isThreadAllocatedMemorySupported(),"allocation measurement not supported");
+        bean.setThreadAllocatedMemoryEnabled(true);
+        long threadId=Thread.currentThread().getId();
+        // Warm up, so that the measurement is not disturbed by class loading etc.
+        loop.run();
+        long before=bean.getThreadAllocatedBytes(threadId);
+        loop.run();
+        long after=bean.getThreadAllocatedBytes(threadId);
+        return after-before;
+    }
+}
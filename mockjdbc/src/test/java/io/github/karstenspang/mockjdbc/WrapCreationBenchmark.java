@@ -0,0 +1,44 @@
+package io.github.karstenspang.mockjdbc;
+
+import io.github.karstenspang.mockjdbc.noop.NoopClob;
+import io.github.karstenspang.mockjdbc.noop.NoopResultSet;
+import io.github.karstenspang.mockjdbc.noop.NoopResultSetMetaData;
+import io.github.karstenspang.mockjdbc.wrap.ClobWrap;
+import io.github.karstenspang.mockjdbc.wrap.ResultSetMetaDataWrap;
+import io.github.karstenspang.mockjdbc.wrap.ResultSetWrap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the number of wraps created per second, with logging off.
+ * Not run as part of the tests. Run with
+ * {@code java -cp <test class path> io.github.karstenspang.mockjdbc.WrapCreationBenchmark [iterations]}.
+ */
+public class WrapCreationBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args)
+    {
+        int iterations=args.length>0?Integer.parseInt(args[0]):2_000_000;
+        Logger.getLogger("io.github.karstenspang.mockjdbc").setLevel(Level.INFO);
+        Supplier<Step> stepSupplier=PassThruStep::instance;
+        String[] names={"ResultSetWrap","ResultSetMetaDataWrap","ClobWrap"};
+        Runnable[] creations={
+            ()->sink=new ResultSetWrap(NoopResultSet.instance(),stepSupplier),
+            ()->sink=new ResultSetMetaDataWrap(NoopResultSetMetaData.instance(),stepSupplier),
+            ()->sink=new ClobWrap(NoopClob.instance(),stepSupplier)
+        };
+        for (int round=0;round<3;round++){
+            for (int c=0;c<creations.length;c++){
+                Runnable creation=creations[c];
+                long start=System.nanoTime();
+                for (int i=0;i<iterations;i++){
+                    creation.run();
+                }
+                long elapsed=System.nanoTime()-start;
+                if (round==2) System.out.printf("%-24s %,14.0f wraps/s%n",names[c],iterations*1e9/elapsed);
+            }
+        }
+    }
+}
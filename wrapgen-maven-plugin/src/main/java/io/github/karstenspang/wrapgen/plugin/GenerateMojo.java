@@ -0,0 +1,92 @@
+package io.github.karstenspang.wrapgen.plugin;
+
+import io.github.karstenspang.wrapgen.WrapGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generate wraps and no-op implementations of interfaces.
+ * The interfaces are loaded from the compile class path of the project,
+ * which must also contain mockjdbc, as the generated classes depend on it.
+ * The output directory is added to the compile source roots, so the generated
+ * classes are compiled with the rest of the project.
+ */
+@Mojo(name="generate",defaultPhase=LifecyclePhase.GENERATE_SOURCES,requiresDependencyResolution=ResolutionScope.COMPILE,threadSafe=true)
+public class GenerateMojo extends AbstractMojo {
+    /** Fully qualified names of the interfaces to generate wraps for. */
+    @Parameter(required=true)
+    private List<String> interfaces;
+
+    /** The package of the generated wraps. */
+    @Parameter(required=true)
+    private String wrapPackage;
+
+    /** The package of the generated no-op implementations. Defaults to {@code wrapPackage}. */
+    @Parameter
+    private String noopPackage;
+
+    /** Where to place the generated sources. */
+    @Parameter(defaultValue="${project.build.directory}/generated-sources/wrapgen",required=true)
+    private File outputDirectory;
+
+    @Parameter(defaultValue="${project}",readonly=true,required=true)
+    private MavenProject project;
+
+    /**
+     * Generate the sources.
+     * @throws MojoExecutionException if an interface cannot be loaded or
+     *         is not supported, or the output cannot be written.
+     */
+    @Override
+    public void execute()
+        throws MojoExecutionException
+    {
+        try(URLClassLoader loader=new URLClassLoader(compileClassPath(),ClassLoader.getPlatformClassLoader())){
+            List<Class<?>> classes=new ArrayList<>();
+            for (String name:interfaces){
+                classes.add(Class.forName(name.trim(),false,loader));
+            }
+            getLog().info("Generating wraps for "+classes.size()+" interfaces in "+outputDirectory);
+            WrapGenerator.generateWraps(outputDirectory.getPath(),wrapPackage,noopPackage==null?wrapPackage:noopPackage,classes);
+        }
+        catch(ClassNotFoundException e){
+            throw new MojoExecutionException("Interface not found on the compile class path: "+e.getMessage(),e);
+        }
+        catch(IllegalArgumentException e){
+            throw new MojoExecutionException(e.getMessage(),e);
+        }
+        catch(IOException e){
+            throw new MojoExecutionException("Cannot write to "+outputDirectory,e);
+        }
+        project.addCompileSourceRoot(outputDirectory.getPath());
+    }
+
+    private URL[] compileClassPath()
+        throws MojoExecutionException
+    {
+        try{
+            List<String> elements=project.getCompileClasspathElements();
+            URL[] urls=new URL[elements.size()];
+            for (int i=0;i<urls.length;i++){
+                urls[i]=new File(elements.get(i)).toURI().toURL();
+            }
+            return urls;
+        }
+        catch(DependencyResolutionRequiredException|MalformedURLException e){
+            throw new MojoExecutionException("Cannot build the compile class path",e);
+        }
+    }
+}
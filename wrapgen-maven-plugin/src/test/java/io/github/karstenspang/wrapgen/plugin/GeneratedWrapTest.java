@@ -0,0 +1,84 @@
+package io.github.karstenspang.wrapgen.plugin;
+
+import io.github.karstenspang.mockjdbc.ExceptionStep;
+import io.github.karstenspang.mockjdbc.Step;
+import io.github.karstenspang.mockjdbc.noop.NoopConnection;
+import io.github.karstenspang.wrapgen.WrapGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class GeneratedWrapTest {
+    /** A vendor connection with methods declaring other checked exceptions than {@link SQLException} */
+    public interface IoConnection extends Connection {
+        void flush() throws IOException;
+        String describe() throws Exception;
+        int code() throws SQLException;
+    }
+    
+    public static class IoConnectionImpl extends NoopConnection implements IoConnection {
+        final List<String> calls=new ArrayList<>();
+        @Override
+        public void flush(){calls.add("flush");}
+        @Override
+        public String describe(){return "io";}
+        @Override
+        public int code(){return 1;}
+    }
+    
+    @Test
+    @DisplayName("Wraps of methods declaring IOException or Exception compile, and call the wrapped object directly")
+    public void testOtherCheckedExceptions(@TempDir Path dir)
+        throws Exception
+    {
+        Path src=dir.resolve("src");
+        Path classes=dir.resolve("classes");
+        Files.createDirectories(classes);
+        WrapGenerator.generateWraps(src.toString(),"generated.wrap","generated.noop",List.of(IoConnection.class));
+        List<String> args=new ArrayList<>(List.of("-d",classes.toString(),"-classpath",location(Step.class)+File.pathSeparator+location(IoConnection.class)));
+        try(Stream<Path> files=Files.walk(src)){
+            args.addAll(files.filter(file->file.toString().endsWith(".java")).map(Path::toString).collect(Collectors.toList()));
+        }
+        JavaCompiler compiler=ToolProvider.getSystemJavaCompiler();
+        ByteArrayOutputStream errors=new ByteArrayOutputStream();
+        int status=compiler.run(null,null,errors,args.toArray(new String[0]));
+        assertEquals(0,status,"compile errors "+errors);
+        
+        try(URLClassLoader loader=new URLClassLoader(new URL[]{classes.toUri().toURL()},getClass().getClassLoader())){
+            Class<?> wrapClass=loader.loadClass("generated.wrap.IoConnectionWrap");
+            SQLException refused=new SQLException("refused");
+            Supplier<Step> steps=()->new ExceptionStep(refused);
+            IoConnectionImpl impl=new IoConnectionImpl();
+            IoConnection wrap=(IoConnection)wrapClass.getConstructor(IoConnection.class,Supplier.class,Set.class).newInstance(impl,steps,null);
+            wrap.flush();
+            assertEquals(List.of("flush"),impl.calls);
+            assertEquals("io",wrap.describe());
+            assertSame(refused,assertThrows(SQLException.class,()->wrap.code()),"steps are applied to the other methods");
+        }
+    }
+    
+    private static String location(Class<?> clazz)
+        throws URISyntaxException
+    {
+        return Path.of(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+}
@@ -7,22 +7,35 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.sql.Wrapper;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 /**
- * Generate wraps around major interfaces in the {@link java.sql} package.<p>
+ * Generate wraps around major interfaces in the {@link java.sql} package,
+ * and the data source interfaces in {@link javax.sql}.<p>
+ * Wraps can also be generated for other interfaces, such as the extension
+ * interfaces of a JDBC driver, using {@link #generateWraps(String,String,String,Collection)}.
+ * The generated classes depend on mockjdbc, and extend the wraps in mockjdbc
+ * if the interfaces extend interfaces in {@link java.sql}.
  */
 public class WrapGenerator {
     private static final Set<Class<?>> specialInterfaces;
@@ -31,7 +44,8 @@ public class WrapGenerator {
     }
     private static final Set<Class<?>> interfaces;
     static{
-        // Interfaces in java.sql as per JDBC 4.2, except Driver, DriverNotification, and Wrapper.
+        // Interfaces in java.sql as per JDBC 4.2, except Driver, DriverNotification, and Wrapper,
+        // and the data source and pooled connection interfaces in javax.sql.
         interfaces=Set.of(
             java.sql.Array.class,java.sql.Blob.class,java.sql.CallableStatement.class,
             java.sql.Clob.class,java.sql.Connection.class,java.sql.DatabaseMetaData.class,
@@ -40,16 +54,28 @@ public class WrapGenerator {
             java.sql.ResultSetMetaData.class,java.sql.RowId.class,java.sql.Savepoint.class,
             java.sql.SQLData.class,java.sql.SQLInput.class,java.sql.SQLOutput.class,
             java.sql.SQLType.class,java.sql.SQLXML.class,java.sql.Statement.class,
-            java.sql.Struct.class);
+            java.sql.Struct.class,
+            javax.sql.CommonDataSource.class,javax.sql.ConnectionPoolDataSource.class,
+            javax.sql.DataSource.class,javax.sql.PooledConnection.class,
+            javax.sql.XAConnection.class,javax.sql.XADataSource.class);
     }
     private static final Set<MethodDesc> objectMethods;
     static{
         objectMethods=Arrays.stream(Object.class.getDeclaredMethods()).filter(method->Modifier.isPublic(method.getModifiers())).map(method->new MethodDesc(method)).collect(Collectors.toUnmodifiableSet());
     }
+    private static final Map<String,String> primitiveApplyMethods=Map.of(
+        "int","applyAsInt",
+        "long","applyAsLong",
+        "double","applyAsDouble",
+        "boolean","applyAsBoolean");
     private static final String basePackageName="io.github.karstenspang.mockjdbc";
+    private static final Comparator<Method> methodOrder=
+        Comparator.comparing(Method::getName)
+                  .thenComparing(method->Arrays.toString(method.getParameterTypes()));
     
     /**
-     * Generate wraps for the interfaces in java.sql, as per JDBC 4.2 (Java 8).
+     * Generate wraps for the interfaces in java.sql, as per JDBC 4.2 (Java 8),
+     * and for the data source and pooled connection interfaces in javax.sql.
      * @param baseDir Where to place the output, such as {@code target/generated-classes/java}.
      * @throws IOException if the output cannot be written.
      * @throws ClassNotFoundException if a specified interface does not exist.
@@ -60,22 +86,76 @@ public class WrapGenerator {
     public static void generateWraps(String baseDir)
         throws IOException,ClassNotFoundException
     {
-        Set<Class<?>> knownInterfaces=new HashSet<>(interfaces);
+        generateWraps(baseDir,basePackageName+".wrap",basePackageName+".noop",interfaces);
+    }
+    
+    /**
+     * Generate wraps for the specified interfaces.
+     * The interfaces may extend the interfaces in java.sql supported by mockjdbc, in which
+     * case the wraps and no-op implementations extend the ones in mockjdbc,
+     * or each other. Methods declaring checked exceptions other than {@link SQLException}
+     * cannot have steps applied, and call the wrapped object directly.
+     * @param baseDir Where to place the output, such as {@code target/generated-classes/java}.
+     * @param wrapPackageName The package of the generated wraps and method enums.
+     * @param noopPackageName The package of the generated no-op implementations.
+     * @param targetInterfaces The interfaces to generate wraps for.
+     * @throws IOException if the output cannot be written.
+     * @throws IllegalArgumentException if one of the interfaces is not an interface,
+     *         extends an interface not in java.sql and not in {@code targetInterfaces},
+     *         or extends more than one such interface.
+     */
+    public static void generateWraps(String baseDir,String wrapPackageName,String noopPackageName,Collection<Class<?>> targetInterfaces)
+        throws IOException
+    {
+        Packages packages=new Packages(wrapPackageName,noopPackageName);
+        for (Class<?> clazz:interfaces){
+            packages.put(clazz,basePackageName+".wrap",basePackageName+".noop");
+        }
+        for (Class<?> clazz:targetInterfaces){
+            packages.put(clazz,wrapPackageName,noopPackageName);
+        }
+        Set<Class<?>> knownInterfaces=new HashSet<>(packages.wrapPackages.keySet());
         knownInterfaces.addAll(specialInterfaces);
-        File wrapDir=new File(new File(new File(baseDir),basePackageName.replace('.',File.separatorChar)),"wrap");
-        File noopDir=new File(new File(new File(baseDir),basePackageName.replace('.',File.separatorChar)),"noop");
+        File wrapDir=new File(new File(baseDir),wrapPackageName.replace('.',File.separatorChar));
+        File noopDir=new File(new File(baseDir),noopPackageName.replace('.',File.separatorChar));
         wrapDir.mkdirs();
         noopDir.mkdirs();
-        for (Class<?> clazz:interfaces){
-            generateWrap(clazz,wrapDir,noopDir,knownInterfaces);
+        for (Class<?> clazz:targetInterfaces){
+            generateWrap(clazz,wrapDir,noopDir,knownInterfaces,packages);
+        }
+    }
+    
+    // Where the wraps and no-op implementations of the known interfaces are
+    private static class Packages {
+        final String wrapPackageName;
+        final String noopPackageName;
+        final Map<Class<?>,String> wrapPackages=new HashMap<>();
+        final Map<Class<?>,String> noopPackages=new HashMap<>();
+        Packages(String wrapPackageName,String noopPackageName){
+            this.wrapPackageName=wrapPackageName;
+            this.noopPackageName=noopPackageName;
+        }
+        void put(Class<?> ifClass,String wrapPackage,String noopPackage){
+            wrapPackages.put(ifClass,wrapPackage);
+            noopPackages.put(ifClass,noopPackage);
+        }
+        // The name of the wrap class, qualified if not in the generated package
+        String wrapName(Class<?> ifClass){
+            String packageName=wrapPackages.get(ifClass);
+            String name=ifClass.getSimpleName()+"Wrap";
+            return packageName.equals(wrapPackageName)?name:packageName+"."+name;
+        }
+        // The name of the no-op class, qualified if not in the generated package
+        String noopName(Class<?> ifClass){
+            String packageName=noopPackages.get(ifClass);
+            String name="Noop"+ifClass.getSimpleName();
+            return packageName.equals(noopPackageName)?name:packageName+"."+name;
         }
     }
     
-    private static void generateWrap(Class<?> ifClass,File wrapDir,File noopDir,Set<Class<?>> knownInterfaces)
+    private static void generateWrap(Class<?> ifClass,File wrapDir,File noopDir,Set<Class<?>> knownInterfaces,Packages packages)
         throws IOException
     {
-        String wrapPackageName=basePackageName+".wrap";
-        String noopPackageName=basePackageName+".noop";
         if (!ifClass.isInterface()) throw new IllegalArgumentException("Class "+ifClass.getName()+" is not an interface");
         if (ifClass.isAnnotation()) throw new IllegalArgumentException("Class "+ifClass.getName()+" is an annotation");
         Set<Class<?>> extendedInterfaces=Set.of(ifClass.getInterfaces());
@@ -85,268 +165,453 @@ public class WrapGenerator {
         Set<Class<?>> extendedSpecialInterfaces=new HashSet<>(extendedInterfaces);
         extendedSpecialInterfaces.removeAll(notSpecialInterfaces);
         if (notSpecialInterfaces.size()>1) throw new IllegalArgumentException("Class "+ifClass.getName()+" extends more than one interface");
-        File wrapJavaFile=new File(wrapDir,ifClass.getSimpleName()+"Wrap.java");
-        File noopJavaFile=new File(noopDir,"Noop"+ifClass.getSimpleName()+".java");
-        try(OutputStream wos=new FileOutputStream(wrapJavaFile);Writer wrapWriter=new BufferedWriter(new OutputStreamWriter(wos,StandardCharsets.UTF_8));
-            OutputStream nos=new FileOutputStream(noopJavaFile);Writer noopWriter=new BufferedWriter(new OutputStreamWriter(nos,StandardCharsets.UTF_8)))
-        {
-            wrapWriter.write("package "+wrapPackageName+";\n");
-            wrapWriter.write("\n");
-            wrapWriter.write("import "+basePackageName+".Program;\n");
-            wrapWriter.write("import "+basePackageName+".Step;\n");
-            wrapWriter.write("import "+basePackageName+".Wrap;\n");
-            wrapWriter.write("import "+basePackageName+".Wrapper;\n");
-            wrapWriter.write("import "+ifClass.getCanonicalName()+";\n");
-            wrapWriter.write("import java.util.Arrays;\n");
-            wrapWriter.write("import java.util.function.Supplier;\n");
-            wrapWriter.write("import java.util.logging.Logger;\n");
-            wrapWriter.write("\n");
-            wrapWriter.write("/**\n");
-            wrapWriter.write(" * Auto-generated wrap of {@link "+ifClass.getSimpleName()+"} with a {@link Supplier}{@code <}{@link Step}{@code >} (the program).\n");
-            wrapWriter.write(" * Every method call will have a step from the program applied, in the order they are returned.\n");
-            wrapWriter.write(" */\n");
-            wrapWriter.write("public class "+ifClass.getSimpleName()+"Wrap extends "+(notSpecialInterfaces.isEmpty()?"":notSpecialInterfaces.toArray(new Class<?>[1])[0].getSimpleName())+"Wrap implements "+ifClass.getSimpleName()+" {\n");
-            wrapWriter.write("    private static final String className=\""+wrapPackageName+"."+ifClass.getSimpleName()+"Wrap\";\n");
-            wrapWriter.write("    private static final Logger logger=Logger.getLogger(className);\n");
-            wrapWriter.write("    /**\n");
-            wrapWriter.write("     * Wrap a {@link "+ifClass.getSimpleName()+"}.\n");
-            wrapWriter.write("     * Note that this constructor can be used as a target for {@link Wrapper}{@code <}{@link "+ifClass.getSimpleName()+"}{@code >}.\n");
-            wrapWriter.write("     * @param wrapped {@link "+ifClass.getSimpleName()+"} to wrap\n");
-            wrapWriter.write("     * @param stepSupplier {@link Supplier}{@code <}{@link Step}{@code >} to wrap the object with\n");
-            wrapWriter.write("     */\n");
-            wrapWriter.write("    public "+ifClass.getSimpleName()+"Wrap("+ifClass.getSimpleName()+" wrapped,Supplier<Step> stepSupplier){\n");
-            wrapWriter.write("        this(className,wrapped,stepSupplier);\n");
-            wrapWriter.write("    }\n");
-            wrapWriter.write("    /**\n");
-            wrapWriter.write("     * Wrap a {@link "+ifClass.getSimpleName()+"}.\n");
-            wrapWriter.write("     * Convenience constructor that uses a {@link Program} to provide the steps.\n");
-            wrapWriter.write("     * @param wrapped {@link "+ifClass.getSimpleName()+"} to wrap\n");
-            wrapWriter.write("     * @param steps {@link Step}s to wrap the object with\n");
-            wrapWriter.write("     */\n");
-            wrapWriter.write("    public "+ifClass.getSimpleName()+"Wrap("+ifClass.getSimpleName()+" wrapped,Iterable<Step> steps){\n");
-            wrapWriter.write("        this(wrapped,new Program(steps));\n");
-            wrapWriter.write("    }\n");
-            wrapWriter.write("    protected "+ifClass.getSimpleName()+"Wrap(String className,"+ifClass.getSimpleName()+" wrapped,Supplier<Step> stepSupplier){\n");
-            wrapWriter.write("        super(className,wrapped,stepSupplier);\n");
+        Class<?> parent=notSpecialInterfaces.isEmpty()?null:notSpecialInterfaces.toArray(new Class<?>[1])[0];
+        List<Method> methods=new ArrayList<>();
+        for (Method method:ifClass.getDeclaredMethods()){
+            int modifiers=method.getModifiers();
+            if (Modifier.isStatic(modifiers)) continue;
+            if (!Modifier.isPublic(modifiers)) continue;
+            if (objectMethods.contains(new MethodDesc(method))) continue;
+            methods.add(method);
+        }
+        methods.sort(methodOrder);
+        // The methods of Wrapper are intercepted by the wraps of the interfaces extending it directly.
+        List<Method> wrapMethods=new ArrayList<>(methods);
+        if (extendedSpecialInterfaces.contains(Wrapper.class)){
+            wrapMethods.addAll(Arrays.asList(Wrapper.class.getDeclaredMethods()));
+        }
+        wrapMethods.sort(methodOrder);
+        try(Writer wrapWriter=openJavaFile(wrapDir,ifClass.getSimpleName()+"Wrap")){
+            writeWrap(wrapWriter,ifClass,parent,wrapMethods,packages);
+        }
+        if (!wrapMethods.isEmpty()){
+            try(Writer enumWriter=openJavaFile(wrapDir,ifClass.getSimpleName()+"Method")){
+                writeMethodEnum(enumWriter,ifClass,wrapMethods,packages);
+            }
+        }
+        try(Writer noopWriter=openJavaFile(noopDir,"Noop"+ifClass.getSimpleName())){
+            writeNoop(noopWriter,ifClass,parent,methods,packages);
+        }
+    }
+    
+    private static Writer openJavaFile(File dir,String className)
+        throws IOException
+    {
+        OutputStream os=new FileOutputStream(new File(dir,className+".java"));
+        return new BufferedWriter(new OutputStreamWriter(os,StandardCharsets.UTF_8));
+    }
+    
+    private static void writeWrap(Writer wrapWriter,Class<?> ifClass,Class<?> parent,List<Method> wrapMethods,Packages packages)
+        throws IOException
+    {
+        String wrapPackageName=packages.wrapPackageName;
+        String name=ifClass.getSimpleName();
+        String enumName=name+"Method";
+        String maskName="intercepted"+name+"Methods";
+        boolean hasMethods=!wrapMethods.isEmpty();
+        Map<Method,String> constantNames=constantNames(ifClass,wrapMethods);
+        wrapWriter.write("package "+wrapPackageName+";\n");
+        wrapWriter.write("\n");
+        wrapWriter.write("import "+basePackageName+".PassThruStep;\n");
+        wrapWriter.write("import "+basePackageName+".Program;\n");
+        wrapWriter.write("import "+basePackageName+".Step;\n");
+        wrapWriter.write("import "+basePackageName+".Wrap;\n");
+        wrapWriter.write("import "+basePackageName+".WrapMethod;\n");
+        wrapWriter.write("import "+basePackageName+".Wrapper;\n");
+        wrapWriter.write("import "+ifClass.getCanonicalName()+";\n");
+        wrapWriter.write("import java.util.Arrays;\n");
+        wrapWriter.write("import java.util.Set;\n");
+        wrapWriter.write("import java.util.function.Supplier;\n");
+        wrapWriter.write("import java.util.logging.Level;\n");
+        wrapWriter.write("import java.util.logging.Logger;\n");
+        wrapWriter.write("\n");
+        wrapWriter.write("/**\n");
+        wrapWriter.write(" * Auto-generated wrap of {@link "+name+"} with a {@link Supplier}{@code <}{@link Step}{@code >} (the program).\n");
+        wrapWriter.write(" * Every method call will have a step from the program applied, in the order they are returned.\n");
+        wrapWriter.write(" * If a set of intercepted methods is passed to the constructor, only calls to those methods\n");
+        wrapWriter.write(" * will have a step applied, the others call the wrapped object directly.\n");
+        if (hasMethods){
+            wrapWriter.write(" * The methods declared by {@link "+name+"} are identified by {@link "+enumName+"}.\n");
+        }
+        wrapWriter.write(" */\n");
+        wrapWriter.write("public class "+name+"Wrap extends "+(parent==null?"Wrap":packages.wrapName(parent))+" implements "+name+" {\n");
+        wrapWriter.write("    private static final Logger logger=Logger.getLogger(\""+wrapPackageName+"."+name+"Wrap\");\n");
+        if (hasMethods){
+            wrapWriter.write("    private static final boolean[] all"+enumName+"s=interceptionMask("+enumName+".values(),null);\n");
+            wrapWriter.write("    private final boolean[] "+maskName+";\n");
+        }
+        wrapWriter.write("    /**\n");
+        wrapWriter.write("     * Wrap a {@link "+name+"}.\n");
+        wrapWriter.write("     * Note that this constructor can be used as a target for {@link Wrapper}{@code <}{@link "+name+"}{@code >}.\n");
+        wrapWriter.write("     * @param wrapped {@link "+name+"} to wrap\n");
+        wrapWriter.write("     * @param stepSupplier {@link Supplier}{@code <}{@link Step}{@code >} to wrap the object with\n");
+        wrapWriter.write("     */\n");
+        wrapWriter.write("    public "+name+"Wrap("+name+" wrapped,Supplier<Step> stepSupplier){\n");
+        wrapWriter.write("        this(logger,wrapped,stepSupplier,null);\n");
+        wrapWriter.write("    }\n");
+        wrapWriter.write("    /**\n");
+        wrapWriter.write("     * Wrap a {@link "+name+"}.\n");
+        wrapWriter.write("     * Convenience constructor that uses a {@link Program} to provide the steps.\n");
+        wrapWriter.write("     * @param wrapped {@link "+name+"} to wrap\n");
+        wrapWriter.write("     * @param steps {@link Step}s to wrap the object with\n");
+        wrapWriter.write("     */\n");
+        wrapWriter.write("    public "+name+"Wrap("+name+" wrapped,Iterable<Step> steps){\n");
+        wrapWriter.write("        this(wrapped,new Program(steps));\n");
+        wrapWriter.write("    }\n");
+        wrapWriter.write("    /**\n");
+        wrapWriter.write("     * Wrap a {@link "+name+"}, intercepting only some of the methods.\n");
+        wrapWriter.write("     * Calls to the other methods go directly to the wrapped object,\n");
+        wrapWriter.write("     * without a step being supplied or applied, and without logging.\n");
+        wrapWriter.write("     * @param wrapped {@link "+name+"} to wrap\n");
+        wrapWriter.write("     * @param stepSupplier {@link Supplier}{@code <}{@link Step}{@code >} to wrap the object with\n");
+        wrapWriter.write("     * @param intercepted The methods to apply steps to. This may include methods of\n");
+        wrapWriter.write("     *        the interfaces extended by {@link "+name+"}.\n");
+        wrapWriter.write("     *        If {@code null}, all methods are intercepted.\n");
+        wrapWriter.write("     */\n");
+        wrapWriter.write("    public "+name+"Wrap("+name+" wrapped,Supplier<Step> stepSupplier,Set<? extends WrapMethod> intercepted){\n");
+        wrapWriter.write("        this(logger,wrapped,stepSupplier,intercepted);\n");
+        wrapWriter.write("    }\n");
+        wrapWriter.write("    protected "+name+"Wrap(String className,"+name+" wrapped,Supplier<Step> stepSupplier){\n");
+        wrapWriter.write("        this(Logger.getLogger(className),wrapped,stepSupplier,null);\n");
+        wrapWriter.write("    }\n");
+        wrapWriter.write("    protected "+name+"Wrap(String className,"+name+" wrapped,Supplier<Step> stepSupplier,Set<? extends WrapMethod> intercepted){\n");
+        wrapWriter.write("        this(Logger.getLogger(className),wrapped,stepSupplier,intercepted);\n");
+        wrapWriter.write("    }\n");
+        wrapWriter.write("    /**\n");
+        wrapWriter.write("     * Wrap a {@link "+name+"}, for subclasses.\n");
+        wrapWriter.write("     * @param logger Logger of the subclass, used for logging the creation of the wrap\n");
+        wrapWriter.write("     * @param wrapped {@link "+name+"} to wrap\n");
+        wrapWriter.write("     * @param stepSupplier {@link Supplier}{@code <}{@link Step}{@code >} to wrap the object with\n");
+        wrapWriter.write("     * @param intercepted The methods to apply steps to, or {@code null} for all methods.\n");
+        wrapWriter.write("     */\n");
+        wrapWriter.write("    protected "+name+"Wrap(Logger logger,"+name+" wrapped,Supplier<Step> stepSupplier,Set<? extends WrapMethod> intercepted){\n");
+        if (parent==null){
+            wrapWriter.write("        super(logger,wrapped,stepSupplier);\n");
+        }
+        else{
+            wrapWriter.write("        super(logger,wrapped,stepSupplier,intercepted);\n");
+        }
+        if (hasMethods){
+            wrapWriter.write("        "+maskName+"=intercepted==null?all"+enumName+"s:interceptionMask("+enumName+".values(),intercepted);\n");
+        }
+        wrapWriter.write("    }\n");
+        wrapWriter.write("\n");
+        if (hasMethods){
+            wrapWriter.write("    @SuppressWarnings(\"unchecked\")\n");
+            wrapWriter.write("    private final "+name+" getWrapped"+name+"(){\n");
+            wrapWriter.write("        return ("+name+")wrapped;\n");
             wrapWriter.write("    }\n");
             wrapWriter.write("\n");
-            
-            noopWriter.write("package "+noopPackageName+";\n");
-            noopWriter.write("\n");
-            noopWriter.write("import "+ifClass.getCanonicalName()+";\n");
-            noopWriter.write("\n");
-            noopWriter.write("/**\n");
-            noopWriter.write(" * No-op implementaion of {@link "+ifClass.getSimpleName()+"}.\n");
-            noopWriter.write(" */\n");
-            noopWriter.write("public class Noop"+ifClass.getSimpleName());
-            if (!notSpecialInterfaces.isEmpty()){
-                noopWriter.write(" extends Noop"+notSpecialInterfaces.toArray(new Class<?>[1])[0].getSimpleName());
-            }
-            noopWriter.write(" implements "+ifClass.getSimpleName()+" {\n");
-            noopWriter.write("    private static Noop"+ifClass.getSimpleName()+" instance=new Noop"+ifClass.getSimpleName()+"();\n");
-            noopWriter.write("    /**\n");
-            noopWriter.write("     * Access to the instance.\n");
-            noopWriter.write("     * @return the only instance of {@link Noop"+ifClass.getSimpleName()+"}\n");
-            noopWriter.write("     */\n");
-            noopWriter.write("    public static Noop"+ifClass.getSimpleName()+" instance(){return instance;}\n");
-            noopWriter.write("    protected Noop"+ifClass.getSimpleName()+"(){}\n");
-            Method[] methods=ifClass.getDeclaredMethods();
-            if (methods.length>0||extendedSpecialInterfaces.contains(Wrapper.class)){
-                wrapWriter.write("    @SuppressWarnings(\"unchecked\")\n");
-                wrapWriter.write("    private final "+ifClass.getSimpleName()+" getWrapped"+ifClass.getSimpleName()+"(){\n");
-                wrapWriter.write("        return ("+ifClass.getSimpleName()+")wrapped;\n");
-                wrapWriter.write("    }\n");
+        }
+        int index=0;
+        for (Method method:wrapMethods){
+            writeMethodHeader(wrapWriter,method);
+            Set<Class<?>> exceptions=Set.of(method.getExceptionTypes());
+            if (!exceptions.isEmpty()){
+                wrapWriter.write("        throws ");
+                int i=0;
+                for (Class<?> exception:exceptions){
+                    if (i!=0) wrapWriter.write(",");
+                    wrapWriter.write(exception.getCanonicalName());
+                    i++;
+                }
                 wrapWriter.write("\n");
             }
-            if (extendedSpecialInterfaces.contains(Wrapper.class)){
-                wrapWriter.write("    @Override\n");
-                wrapWriter.write("    public boolean isWrapperFor​(Class<?> iface)\n");
-                wrapWriter.write("        throws java.sql.SQLException\n");
-                wrapWriter.write("    {\n");
-                wrapWriter.write("        Step step=stepSupplier.get();\n");
-                wrapWriter.write("        logger.finest(\"Apply \"+String.valueOf(step)+\" to "+ifClass.getSimpleName()+".isWrapperFor​(\"+String.valueOf(iface)+\")\");\n");
-                wrapWriter.write("        boolean result=step.apply(()->getWrapped"+ifClass.getSimpleName()+"().isWrapperFor​(iface));\n");
-                wrapWriter.write("        logger.finest(\"Result: \"+String.valueOf(result));\n");
-                wrapWriter.write("        return result;\n");
-                wrapWriter.write("    }\n");
-                wrapWriter.write("    @Override\n");
-                wrapWriter.write("    public <T> T unwrap​(Class<T> iface)\n");
-                wrapWriter.write("        throws java.sql.SQLException\n");
-                wrapWriter.write("    {\n");
-                wrapWriter.write("        Step step=stepSupplier.get();\n");
-                wrapWriter.write("        logger.finest(\"Apply \"+String.valueOf(step)+\" to "+ifClass.getSimpleName()+".unWrap(\"+String.valueOf(iface)+\")\");\n");
-                wrapWriter.write("        T result=stepSupplier.get().apply(()->getWrapped"+ifClass.getSimpleName()+"().unwrap(iface));\n");
-                wrapWriter.write("        logger.finest(\"Result: \"+String.valueOf(result));\n");
-                wrapWriter.write("        return result;\n");
+            wrapWriter.write("    {\n");
+            StringBuilder call=new StringBuilder("getWrapped"+name+"()."+method.getName()+"(");
+            for (int a=0;a<method.getParameterCount();a++){
+                if (a!=0){
+                    call.append(",");
+                }
+                call.append("p"+String.valueOf(a));
+            }
+            call.append(")");
+            String returnType=typeName(method.getGenericReturnType());
+            if ("void".equals(returnType)){
+                wrapWriter.write("        if (!"+maskName+"["+index+"]){\n");
+                wrapWriter.write("            "+call+";\n");
+                wrapWriter.write("            return;\n");
+                wrapWriter.write("        }\n");
+            }
+            else{
+                wrapWriter.write("        if (!"+maskName+"["+index+"]) return "+call+";\n");
+            }
+            // The step can only throw SQLException, so methods declaring other checked exceptions are called directly.
+            boolean declaresOtherChecked=false;
+            List<Class<?>> sqlExceptions=new ArrayList<>();
+            for (Class<?> exception:exceptions){
+                if (exception==SQLException.class) continue;
+                if (SQLException.class.isAssignableFrom(exception)) sqlExceptions.add(exception);
+                else if (!RuntimeException.class.isAssignableFrom(exception)&&!Error.class.isAssignableFrom(exception)) declaresOtherChecked=true;
+            }
+            if (declaresOtherChecked){
+                wrapWriter.write("        "+("void".equals(returnType)?"":"return ")+call+";\n");
                 wrapWriter.write("    }\n");
+                index++;
+                continue;
             }
-            if (getAllInterfaces(ifClass).contains(Wrapper.class)){
-                noopWriter.write("    /**\n");
-                noopWriter.write("     * Checks whether the the specified class or interface is a superclass of {@link Noop"+ifClass.getSimpleName()+"}.\n");
-                noopWriter.write("     * @param iface Class or interface to check\n");
-                noopWriter.write("     * @return {@code true} if {@code iface} is a superclass of\n");
-                noopWriter.write("     *         {@link Noop"+ifClass.getSimpleName()+"}, otherwise {@code false}.\n");
-                noopWriter.write("     */\n");
-                noopWriter.write("    @Override\n");
-                noopWriter.write("    public boolean isWrapperFor​(Class<?> iface)\n");
-                noopWriter.write("    {\n");
-                noopWriter.write("        try{\n");
-                noopWriter.write("            Noop"+ifClass.getSimpleName()+".class.asSubclass(iface);\n");
-                noopWriter.write("            return true;\n");
-                noopWriter.write("        }\n");
-                noopWriter.write("        catch(ClassCastException e){\n");
-                noopWriter.write("            return false;\n");
-                noopWriter.write("        }\n");
-                noopWriter.write("    }\n");
-                noopWriter.write("    /**\n");
-                noopWriter.write("     * Casts {@code this} to {@code T}\n");
-                noopWriter.write("     * @param <T> class to cast to\n");
-                noopWriter.write("     * @param iface {@link Class} to cast to\n");
-                noopWriter.write("     * @return {@code (T)this}\n");
-                noopWriter.write("     * @throws java.sql.SQLException if {@code T} is not a superclass of {@link Noop"+ifClass.getSimpleName()+"}.\n");
-                noopWriter.write("     *         The cause is a {@link ClassCastException}.\n");
-                noopWriter.write("     */\n");
-                noopWriter.write("    @Override\n");
-                noopWriter.write("    public <T> T unwrap​(Class<T> iface)\n");
-                noopWriter.write("        throws java.sql.SQLException\n");
-                noopWriter.write("    {\n");
-                noopWriter.write("        try{\n");
-                noopWriter.write("            return iface.cast(this);\n");
-                noopWriter.write("        }\n");
-                noopWriter.write("        catch(ClassCastException e){\n");
-                noopWriter.write("            throw new java.sql.SQLException(e);\n");
-                noopWriter.write("        }\n");
-                noopWriter.write("    }\n");
+            // Subclasses of exceptions already in the list cannot be in the same multi-catch
+            sqlExceptions.removeIf(exception->sqlExceptions.stream().anyMatch(other->other!=exception&&other.isAssignableFrom(exception)));
+            if (!exceptions.contains(SQLException.class)){
+                wrapWriter.write("        try{\n");
             }
-            for (Method method:methods){
-                int modifiers=method.getModifiers();
-                if (Modifier.isStatic(modifiers)) continue;
-                if (!Modifier.isPublic(modifiers)) continue;
-                if (objectMethods.contains(new MethodDesc(method))) continue;
-                writeMethodHeader(wrapWriter,method);
-                writeMethodHeader(noopWriter,method);
-                
-                Set<Class<?>> exceptions=Set.of(method.getExceptionTypes());
-                if (!exceptions.isEmpty()){
-                    wrapWriter.write("        throws ");
-                    int i=0;
-                    for (Class<?> exception:exceptions){
-                        if (i!=0) wrapWriter.write(",");
-                        wrapWriter.write(exception.getCanonicalName());
-                        i++;
-                    }
-                    wrapWriter.write("\n");
-                }
-                wrapWriter.write("    {\n");
-                if (!exceptions.contains(SQLException.class)){
-                    wrapWriter.write("        try{\n");
-                }
-                wrapWriter.write("        Step step=stepSupplier.get();\n");
-                wrapWriter.write("        logger.finest(\"Apply \"+String.valueOf(step)+\" to "+ifClass.getSimpleName()+"."+method.getName()+"(\"");
-                int pno=0;
-                for (Class<?> param:method.getParameterTypes()){
-                    if (pno!=0){
-                        wrapWriter.write("+\",\"");
-                    }
-                    if (param.isArray()){
-                        wrapWriter.write("+Arrays.toString(p"+String.valueOf(pno)+")");
-                    }
-                    else{
-                        wrapWriter.write("+String.valueOf(p"+String.valueOf(pno)+")");
-                    }
-                    pno++;
-                }
-                wrapWriter.write("+\")\");\n");
-                wrapWriter.write("        ");
-                if (!"void".equals(method.getGenericReturnType().getTypeName())){
-                    wrapWriter.write(method.getGenericReturnType().getTypeName()+" result=");
-                }
-                wrapWriter.write("step.apply(()->getWrapped"+ifClass.getSimpleName()+"()."+method.getName()+"(");
+            wrapWriter.write("        Step step=methodStepSupplier==null?stepSupplier.get():methodStepSupplier.get("+enumName+"."+constantNames.get(method)+",");
+            if (method.getParameterCount()==0){
+                wrapWriter.write("noArgs");
+            }
+            else{
+                wrapWriter.write("new Object[]{");
                 for (int a=0;a<method.getParameterCount();a++){
-                    if (a!=0){
-                        wrapWriter.write(",");
-                    }
+                    if (a!=0) wrapWriter.write(",");
                     wrapWriter.write("p"+String.valueOf(a));
                 }
-                wrapWriter.write("));\n");
-                if (!"void".equals(method.getGenericReturnType().getTypeName())){
-                    wrapWriter.write("        logger.finest(\"Result: \"+");
-                    if (method.getReturnType().isArray()){
-                        wrapWriter.write("Arrays.toString(result)");
-                    }
-                    else{
-                        wrapWriter.write("String.valueOf(result)");
-                    }
-                    wrapWriter.write(");\n");
-                    wrapWriter.write("        return result;\n");
-                }
-                if (!exceptions.contains(SQLException.class)){
-                    wrapWriter.write("        }\n");
-                    if (!exceptions.isEmpty()){
-                        wrapWriter.write("        catch(");
-                        int i=0;
-                        for (Class<?> exception:exceptions){
-                            if (i!=0) wrapWriter.write("|");
-                            wrapWriter.write(exception.getCanonicalName());
-                            i++;
-                        }
-                        wrapWriter.write(" e){\n");
-                        wrapWriter.write("            throw e;\n");
-                        wrapWriter.write("        }\n");
-                    }
-                    wrapWriter.write("        catch(java.sql.SQLException e){\n");
-                    wrapWriter.write("            throw new UnsupportedOperationException(\"unsupported exception\",e);\n");
-                    wrapWriter.write("        }\n");
-                }
-                wrapWriter.write("    }\n");
-                
-                noopWriter.write("    {\n");
-                Class<?> returnType=method.getReturnType();
-                if (returnType==Void.TYPE){
-                    // Nothing
-                }
-                else if (interfaces.contains(returnType)){
-                    noopWriter.write("        return Noop"+returnType.getSimpleName()+".instance();\n");
+                wrapWriter.write("}");
+            }
+            wrapWriter.write(");\n");
+            wrapWriter.write("        if (logger.isLoggable(Level.FINEST)) logger.finest(\"Apply \"+String.valueOf(step)+\" to "+name+"."+method.getName()+"(\"");
+            int pno=0;
+            for (Class<?> param:method.getParameterTypes()){
+                if (pno!=0){
+                    wrapWriter.write("+\",\"");
                 }
-                else if (returnType==Integer.TYPE){
-                    noopWriter.write("        return 0;\n");
+                if (param.isArray()){
+                    wrapWriter.write("+Arrays.toString(p"+String.valueOf(pno)+")");
                 }
-                else if (returnType==Long.TYPE){
-                    noopWriter.write("        return 0L;\n");
+                else{
+                    wrapWriter.write("+String.valueOf(p"+String.valueOf(pno)+")");
                 }
-                else if (returnType==Short.TYPE){
-                    noopWriter.write("        return 0;\n");
+                pno++;
+            }
+            wrapWriter.write("+\")\");\n");
+            writeStepCall(wrapWriter,returnType,call.toString());
+            if (!"void".equals(returnType)){
+                wrapWriter.write("        if (logger.isLoggable(Level.FINEST)) logger.finest(\"Result: \"+");
+                if (method.getReturnType().isArray()){
+                    wrapWriter.write("Arrays.toString(result)");
                 }
-                else if (returnType==Byte.TYPE){
-                    noopWriter.write("        return 0;\n");
+                else{
+                    wrapWriter.write("String.valueOf(result)");
                 }
-                else if (returnType==Double.TYPE){
-                    noopWriter.write("        return 0D;\n");
+                wrapWriter.write(");\n");
+                wrapWriter.write("        return result;\n");
+            }
+            if (!exceptions.contains(SQLException.class)){
+                wrapWriter.write("        }\n");
+                if (!sqlExceptions.isEmpty()){
+                    wrapWriter.write("        catch(");
+                    int i=0;
+                    for (Class<?> exception:sqlExceptions){
+                        if (i!=0) wrapWriter.write("|");
+                        wrapWriter.write(exception.getCanonicalName());
+                        i++;
+                    }
+                    wrapWriter.write(" e){\n");
+                    wrapWriter.write("            throw e;\n");
+                    wrapWriter.write("        }\n");
                 }
-                else if (returnType==Float.TYPE){
-                    noopWriter.write("        return 0F;\n");
+                wrapWriter.write("        catch(java.sql.SQLException e){\n");
+                wrapWriter.write("            throw new UnsupportedOperationException(\"unsupported exception\",e);\n");
+                wrapWriter.write("        }\n");
+            }
+            wrapWriter.write("    }\n");
+            index++;
+        }
+        wrapWriter.write("}\n");
+    }
+    
+    private static void writeMethodEnum(Writer enumWriter,Class<?> ifClass,List<Method> wrapMethods,Packages packages)
+        throws IOException
+    {
+        String name=ifClass.getSimpleName();
+        String enumName=name+"Method";
+        Map<Method,String> constantNames=constantNames(ifClass,wrapMethods);
+        enumWriter.write("package "+packages.wrapPackageName+";\n");
+        enumWriter.write("\n");
+        enumWriter.write("import "+basePackageName+".WrapMethod;\n");
+        enumWriter.write("import "+ifClass.getCanonicalName()+";\n");
+        enumWriter.write("\n");
+        enumWriter.write("/**\n");
+        enumWriter.write(" * Auto-generated identifiers of the methods of {@link "+name+"} intercepted by {@link "+name+"Wrap}.\n");
+        enumWriter.write(" * The constants are named after the methods. If a method name is overloaded,\n");
+        enumWriter.write(" * the simple names of the parameter types are appended to the names of the\n");
+        enumWriter.write(" * overloads with parameters, separated by underscores.\n");
+        enumWriter.write(" */\n");
+        enumWriter.write("public enum "+enumName+" implements WrapMethod {\n");
+        int i=0;
+        for (Method method:wrapMethods){
+            StringBuilder link=new StringBuilder(name+"#"+method.getName()+"(");
+            StringBuilder args=new StringBuilder("\""+method.getName()+"\"");
+            int pno=0;
+            for (Class<?> param:method.getParameterTypes()){
+                if (pno!=0) link.append(",");
+                link.append(param.getCanonicalName());
+                args.append(","+param.getCanonicalName()+".class");
+                pno++;
+            }
+            link.append(")");
+            enumWriter.write("    /** {@link "+link+"} */\n");
+            enumWriter.write("    "+constantNames.get(method)+"("+args+")"+(i==wrapMethods.size()-1?";":",")+"\n");
+            i++;
+        }
+        enumWriter.write("    private final String methodName;\n");
+        enumWriter.write("    private final Class<?>[] parameterTypes;\n");
+        enumWriter.write("    private "+enumName+"(String methodName,Class<?>... parameterTypes){\n");
+        enumWriter.write("        this.methodName=methodName;\n");
+        enumWriter.write("        this.parameterTypes=parameterTypes;\n");
+        enumWriter.write("    }\n");
+        enumWriter.write("    @Override\n");
+        enumWriter.write("    public Class<?> declaringInterface(){return "+name+".class;}\n");
+        enumWriter.write("    @Override\n");
+        enumWriter.write("    public String methodName(){return methodName;}\n");
+        enumWriter.write("    @Override\n");
+        enumWriter.write("    public Class<?>[] parameterTypes(){return parameterTypes.clone();}\n");
+        enumWriter.write("}\n");
+    }
+    
+    // Method names, with the parameter types appended to overloads with parameters.
+    private static Map<Method,String> constantNames(Class<?> ifClass,List<Method> methods){
+        Map<String,Long> nameCounts=methods.stream().collect(Collectors.groupingBy(Method::getName,Collectors.counting()));
+        Map<Method,String> constantNames=new HashMap<>();
+        Set<String> used=new HashSet<>();
+        for (Method method:methods){
+            StringBuilder constantName=new StringBuilder(method.getName());
+            if (nameCounts.get(method.getName())>1){
+                for (Class<?> param:method.getParameterTypes()){
+                    constantName.append("_"+param.getSimpleName().replace("[]","Array"));
                 }
-                else if (returnType==Boolean.TYPE){
-                    if (method.getName().equals("wasNull")){
-                        noopWriter.write("        return true;\n");
-                    }
-                    else{
-                        noopWriter.write("        return false;\n");
-                    }
+            }
+            if (!used.add(constantName.toString())) throw new IllegalArgumentException("Class "+ifClass.getName()+" has more than one method named "+constantName);
+            constantNames.put(method,constantName.toString());
+        }
+        return constantNames;
+    }
+    
+    private static void writeNoop(Writer noopWriter,Class<?> ifClass,Class<?> parent,List<Method> methods,Packages packages)
+        throws IOException
+    {
+        String noopPackageName=packages.noopPackageName;
+        noopWriter.write("package "+noopPackageName+";\n");
+        noopWriter.write("\n");
+        noopWriter.write("import "+ifClass.getCanonicalName()+";\n");
+        noopWriter.write("\n");
+        noopWriter.write("/**\n");
+        noopWriter.write(" * No-op implementaion of {@link "+ifClass.getSimpleName()+"}.\n");
+        noopWriter.write(" */\n");
+        noopWriter.write("public class Noop"+ifClass.getSimpleName());
+        if (parent!=null){
+            noopWriter.write(" extends "+packages.noopName(parent));
+        }
+        noopWriter.write(" implements "+ifClass.getSimpleName()+" {\n");
+        noopWriter.write("    private static Noop"+ifClass.getSimpleName()+" instance=new Noop"+ifClass.getSimpleName()+"();\n");
+        noopWriter.write("    /**\n");
+        noopWriter.write("     * Access to the instance.\n");
+        noopWriter.write("     * @return the only instance of {@link Noop"+ifClass.getSimpleName()+"}\n");
+        noopWriter.write("     */\n");
+        noopWriter.write("    public static Noop"+ifClass.getSimpleName()+" instance(){return instance;}\n");
+        noopWriter.write("    protected Noop"+ifClass.getSimpleName()+"(){}\n");
+        if (getAllInterfaces(ifClass).contains(Wrapper.class)){
+            noopWriter.write("    /**\n");
+            noopWriter.write("     * Checks whether the the specified class or interface is a superclass of {@link Noop"+ifClass.getSimpleName()+"}.\n");
+            noopWriter.write("     * @param iface Class or interface to check\n");
+            noopWriter.write("     * @return {@code true} if {@code iface} is a superclass of\n");
+            noopWriter.write("     *         {@link Noop"+ifClass.getSimpleName()+"}, otherwise {@code false}.\n");
+            noopWriter.write("     */\n");
+            noopWriter.write("    @Override\n");
+            noopWriter.write("    public boolean isWrapperFor(Class<?> iface)\n");
+            noopWriter.write("    {\n");
+            noopWriter.write("        try{\n");
+            noopWriter.write("            Noop"+ifClass.getSimpleName()+".class.asSubclass(iface);\n");
+            noopWriter.write("            return true;\n");
+            noopWriter.write("        }\n");
+            noopWriter.write("        catch(ClassCastException e){\n");
+            noopWriter.write("            return false;\n");
+            noopWriter.write("        }\n");
+            noopWriter.write("    }\n");
+            noopWriter.write("    /**\n");
+            noopWriter.write("     * Casts {@code this} to {@code T}\n");
+            noopWriter.write("     * @param <T> class to cast to\n");
+            noopWriter.write("     * @param iface {@link Class} to cast to\n");
+            noopWriter.write("     * @return {@code (T)this}\n");
+            noopWriter.write("     * @throws java.sql.SQLException if {@code T} is not a superclass of {@link Noop"+ifClass.getSimpleName()+"}.\n");
+            noopWriter.write("     *         The cause is a {@link ClassCastException}.\n");
+            noopWriter.write("     */\n");
+            noopWriter.write("    @Override\n");
+            noopWriter.write("    public <T> T unwrap(Class<T> iface)\n");
+            noopWriter.write("        throws java.sql.SQLException\n");
+            noopWriter.write("    {\n");
+            noopWriter.write("        try{\n");
+            noopWriter.write("            return iface.cast(this);\n");
+            noopWriter.write("        }\n");
+            noopWriter.write("        catch(ClassCastException e){\n");
+            noopWriter.write("            throw new java.sql.SQLException(e);\n");
+            noopWriter.write("        }\n");
+            noopWriter.write("    }\n");
+        }
+        for (Method method:methods){
+            writeMethodHeader(noopWriter,method);
+            noopWriter.write("    {\n");
+            Class<?> returnType=method.getReturnType();
+            if (returnType==Void.TYPE){
+                // Nothing
+            }
+            else if (packages.noopPackages.containsKey(returnType)){
+                noopWriter.write("        return "+packages.noopName(returnType)+".instance();\n");
+            }
+            else if (returnType==Integer.TYPE){
+                noopWriter.write("        return 0;\n");
+            }
+            else if (returnType==Long.TYPE){
+                noopWriter.write("        return 0L;\n");
+            }
+            else if (returnType==Short.TYPE){
+                noopWriter.write("        return 0;\n");
+            }
+            else if (returnType==Byte.TYPE){
+                noopWriter.write("        return 0;\n");
+            }
+            else if (returnType==Double.TYPE){
+                noopWriter.write("        return 0D;\n");
+            }
+            else if (returnType==Float.TYPE){
+                noopWriter.write("        return 0F;\n");
+            }
+            else if (returnType==Boolean.TYPE){
+                if (method.getName().equals("wasNull")){
+                    noopWriter.write("        return true;\n");
                 }
                 else{
-                    noopWriter.write("        return null;\n");
+                    noopWriter.write("        return false;\n");
                 }
-                noopWriter.write("    }\n");
             }
-            noopWriter.write("    /** @return {@code \"Noop"+ifClass.getSimpleName()+"\"} */\n");
-            noopWriter.write("    @Override\n");
-            noopWriter.write("    public String toString(){\n");
-            noopWriter.write("        return \"Noop"+ifClass.getSimpleName()+"\";\n");
+            else{
+                noopWriter.write("        return null;\n");
+            }
             noopWriter.write("    }\n");
-            
-            wrapWriter.write("}\n");
-            noopWriter.write("}\n");
+        }
+        noopWriter.write("    /** @return {@code \"Noop"+ifClass.getSimpleName()+"\"} */\n");
+        noopWriter.write("    @Override\n");
+        noopWriter.write("    public String toString(){\n");
+        noopWriter.write("        return \"Noop"+ifClass.getSimpleName()+"\";\n");
+        noopWriter.write("    }\n");
+        noopWriter.write("}\n");
+    }
+    
+    // The PassThruStep instance is applied by calling the wrapped object directly,
+    // so that no lambda is allocated per call.
+    // The primitive types with their own apply variants are passed to those,
+    // so that the result is not boxed.
+    private static void writeStepCall(Writer writer,String returnType,String call)
+        throws IOException
+    {
+        if ("void".equals(returnType)){
+            writer.write("        if (step==PassThruStep.instance()) "+call+";\n");
+            writer.write("        else step.apply(()->"+call+");\n");
+        }
+        else{
+            String apply=primitiveApplyMethods.getOrDefault(returnType,"apply");
+            writer.write("        "+returnType+" result;\n");
+            writer.write("        if (step==PassThruStep.instance()) result="+call+";\n");
+            writer.write("        else result=step."+apply+"(()->"+call+");\n");
         }
     }
     
@@ -371,24 +636,55 @@ public class WrapGenerator {
                     int y=0;
                     for (Type bound:bounds){
                         if (y!=0) writer.write("&");
-                        writer.write(bound.getTypeName());
+                        writer.write(typeName(bound));
+                        y++;
                     }
                 }
+                x++;
             }
             writer.write("> ");
         }
-        writer.write(method.getGenericReturnType().getTypeName()+" "+method.getName()+"(");
+        writer.write(typeName(method.getGenericReturnType())+" "+method.getName()+"(");
         int pno=0;
         for (Type param:method.getGenericParameterTypes()){
             if (pno!=0){
                 writer.write(",");
             }
-            writer.write(param.getTypeName()+" p"+String.valueOf(pno));
+            writer.write(typeName(param)+" p"+String.valueOf(pno));
             pno++;
         }
         writer.write(")\n");
     }
     
+    // The name of a type as written in source. Unlike Type.getTypeName(), nested classes are separated by dots.
+    private static String typeName(Type type){
+        if (type instanceof Class){
+            Class<?> clazz=(Class<?>)type;
+            if (clazz.isArray()) return typeName(clazz.getComponentType())+"[]";
+            return clazz.getCanonicalName();
+        }
+        if (type instanceof ParameterizedType){
+            ParameterizedType parameterized=(ParameterizedType)type;
+            Class<?> raw=(Class<?>)parameterized.getRawType();
+            String rawName=parameterized.getOwnerType() instanceof ParameterizedType?
+                typeName(parameterized.getOwnerType())+"."+raw.getSimpleName():
+                typeName(raw);
+            return rawName+Arrays.stream(parameterized.getActualTypeArguments()).map(WrapGenerator::typeName).collect(Collectors.joining(", ","<",">"));
+        }
+        if (type instanceof WildcardType){
+            WildcardType wildcard=(WildcardType)type;
+            if (wildcard.getLowerBounds().length>0) return "? super "+typeName(wildcard.getLowerBounds()[0]);
+            Type[] upper=wildcard.getUpperBounds();
+            if (upper.length==0 || upper[0]==Object.class) return "?";
+            return "? extends "+typeName(upper[0]);
+        }
+        if (type instanceof GenericArrayType){
+            return typeName(((GenericArrayType)type).getGenericComponentType())+"[]";
+        }
+        // Type variables
+        return type.getTypeName();
+    }
+    
     private static Set<Class<?>> getAllInterfaces(Class<?> type) {
         return Stream.of(type.getInterfaces())
                      .flatMap(interfaceType -> Stream.concat(Stream.of(interfaceType), getAllInterfaces(interfaceType).stream()))